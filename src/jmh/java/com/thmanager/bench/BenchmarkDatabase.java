@@ -0,0 +1,253 @@
+package com.thmanager.bench;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.thmanager.dao.GameDAO;
+import com.thmanager.dao.PlaySessionDAO;
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.dao.SchemaMigrator;
+import com.thmanager.mapper.GameMapper;
+import com.thmanager.mapper.PlaySessionMapper;
+import com.thmanager.mapper.PlayTimeRollupMapper;
+import com.thmanager.mapper.ReplayMapper;
+import com.thmanager.mapper.ReplayStageMapper;
+import com.thmanager.mapper.ScoreSketchMapper;
+import com.thmanager.model.Replay;
+import com.thmanager.model.ReplayStage;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.apache.ibatis.type.ByteArrayTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的临时数据库
+ *
+ * 在临时目录中按应用的迁移脚本建表，写入指定数量的合成Replay（含 replay_stages 关卡行，1千到1百万行均可），
+ * 并以与应用相同的方式（MyBatis-Plus + BLOB按byte[]读写）构建 SqlSessionFactory。
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    private static final String[] CHARACTERS = {"Reimu", "Marisa", "Sakuya", "Youmu", "Sanae"};
+    private static final String[] SHOT_TYPES = {"A", "B", "C"};
+    private static final String[] DIFFICULTIES = {"Easy", "Normal", "Hard", "Lunatic", "Extra"};
+    private static final String[] STAGES = {"Stage 1", "Stage 2", "Stage 3", "Stage 4", "Stage 5", "Stage 6",
+            "All Clear"};
+    private static final LocalDateTime BASE_DATE = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    private final Path file;
+    private final SQLiteDataSource dataSource;
+    private final SqlSessionFactory sessionFactory;
+
+    private BenchmarkDatabase(Path file, Class<? extends Log> logImpl) {
+        this.file = file;
+        this.dataSource = new SQLiteDataSource();
+        this.dataSource.setUrl("jdbc:sqlite:" + file);
+
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        if (logImpl != null) {
+            // 语句日志在注册 Mapper 时创建，必须先于 addMapper 设置
+            configuration.setLogImpl(logImpl);
+        }
+        configuration.getTypeHandlerRegistry().register(byte[].class, JdbcType.BLOB, new ByteArrayTypeHandler());
+        configuration.setEnvironment(new Environment("bench", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(GameMapper.class);
+        configuration.addMapper(PlaySessionMapper.class);
+        configuration.addMapper(PlayTimeRollupMapper.class);
+        configuration.addMapper(ReplayMapper.class);
+        configuration.addMapper(ReplayStageMapper.class);
+        configuration.addMapper(ScoreSketchMapper.class);
+        this.sessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+    }
+
+    /**
+     * 创建数据库并写入合成数据
+     *
+     * @param replayCount Replay数量
+     * @param seed        随机种子，相同种子生成相同数据
+     */
+    public static BenchmarkDatabase create(int replayCount, long seed) throws IOException, SQLException {
+        return create(replayCount, seed, null);
+    }
+
+    /**
+     * 创建数据库并写入合成数据，MyBatis 语句日志使用指定实现
+     *
+     * @param replayCount Replay数量
+     * @param seed        随机种子，相同种子生成相同数据
+     * @param logImpl     MyBatis 日志实现，为null时自动选择
+     */
+    public static BenchmarkDatabase create(int replayCount, long seed, Class<? extends Log> logImpl)
+            throws IOException, SQLException {
+        BenchmarkDatabase db = new BenchmarkDatabase(Files.createTempFile("thmanager-bench", ".db"), logImpl);
+        try (Connection conn = db.dataSource.getConnection()) {
+            SchemaMigrator.migrate(conn);
+            insertReplays(conn, replayCount, new Random(seed));
+        }
+        return db;
+    }
+
+    public SqlSessionFactory sessionFactory() {
+        return sessionFactory;
+    }
+
+    /**
+     * 与应用相同的 ReplayDAO，Mapper 每次调用自动打开并提交会话
+     */
+    public ReplayDAO replayDAO() {
+        return new ReplayDAO(mapper(ReplayMapper.class), mapper(ReplayStageMapper.class),
+                mapper(ScoreSketchMapper.class));
+    }
+
+    public GameDAO gameDAO() {
+        return new GameDAO(mapper(GameMapper.class));
+    }
+
+    public PlaySessionDAO playSessionDAO() {
+        return new PlaySessionDAO(mapper(PlaySessionMapper.class), mapper(PlayTimeRollupMapper.class));
+    }
+
+    private <T> T mapper(Class<T> type) {
+        return SqlSessionManager.newInstance(sessionFactory).getMapper(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * 生成一条合成Replay（已完成深度分析：包含关卡得分表与按关卡炸弹统计）
+     *
+     * @param index  序号，决定文件名、路径与时间，序号不同则路径不同
+     * @param random 随机源
+     */
+    public static Replay syntheticReplay(int index, Random random) {
+        int gameId = 1 + random.nextInt(14);
+        String difficulty = DIFFICULTIES[random.nextInt(DIFFICULTIES.length)];
+        int stageCount = difficulty.equals("Extra") ? 1 : 1 + random.nextInt(6);
+        boolean cleared = stageCount == 6 && random.nextBoolean();
+
+        List<Long> scores = new ArrayList<>(stageCount);
+        List<Replay.StageBombStats> bombs = new ArrayList<>(stageCount);
+        long score = 0;
+        int frame = 0;
+        int totalX = 0;
+        for (int s = 1; s <= stageCount; s++) {
+            score += 50_000_000L + random.nextInt(150_000_000);
+            scores.add(score);
+            Replay.StageBombStats stats = new Replay.StageBombStats();
+            stats.stageNum = s;
+            stats.xCount = random.nextInt(4);
+            stats.startFrame = frame;
+            frame += 20_000 + random.nextInt(20_000);
+            stats.endFrame = frame;
+            bombs.add(stats);
+            totalX += stats.xCount;
+        }
+
+        Replay replay = new Replay();
+        replay.setGameId(gameId);
+        replay.setFileName("th_ud" + index + ".rpy");
+        replay.setFilePath("/replays/th_ud" + index + ".rpy");
+        replay.setFileSize(40_000 + random.nextInt(60_000));
+        replay.setFileModifiedTime(1_600_000_000_000L + index * 60_000L);
+        replay.setGameVersion("1.00a");
+        replay.setCharacter(CHARACTERS[random.nextInt(CHARACTERS.length)]);
+        replay.setShotType(SHOT_TYPES[random.nextInt(SHOT_TYPES.length)]);
+        replay.setDifficulty(difficulty);
+        replay.setStage(cleared ? "All Clear" : STAGES[stageCount - 1]);
+        replay.setCleared(cleared);
+        replay.setTotalScore(score);
+        replay.setGameDate(BASE_DATE.plusMinutes(index * 37L));
+        replay.setPlayerName("Player");
+        replay.setSlowRate(random.nextFloat());
+        replay.setTotalFrames(frame);
+        replay.setStageScoresList(scores);
+        replay.setBombStatsList(bombs);
+        replay.setTotalXBombs(totalX);
+        replay.setRawJson("{\"player\":\"Player\",\"totalScore\":" + score + "}");
+        replay.setAnalysisStatus(Replay.ANALYSIS_FULL);
+        return replay;
+    }
+
+    private static void insertReplays(Connection conn, int count, Random random) throws SQLException {
+        conn.setAutoCommit(false);
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO replays (id, game_id, file_name, file_path, file_size, file_modified_time, " +
+                        "game_version, character, shot_type, difficulty, stage, cleared, total_score, game_date, " +
+                        "player_name, slow_rate, total_frames, stage_scores_bin, bomb_stats_bin, total_z_bombs, " +
+                        "total_x_bombs, total_c_bombs, raw_json_compressed, analysis_status) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement insertStage = conn.prepareStatement(
+                     "INSERT INTO replay_stages (replay_id, stage_num, score, z_bombs, x_bombs, start_frame, " +
+                             "end_frame) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < count; i++) {
+                Replay replay = syntheticReplay(i, random);
+                replay.setId(i + 1);
+
+                int p = 1;
+                insert.setInt(p++, replay.getId());
+                insert.setInt(p++, replay.getGameId());
+                insert.setString(p++, replay.getFileName());
+                insert.setString(p++, replay.getFilePath());
+                insert.setLong(p++, replay.getFileSize());
+                insert.setLong(p++, replay.getFileModifiedTime());
+                insert.setString(p++, replay.getGameVersion());
+                insert.setString(p++, replay.getCharacter());
+                insert.setString(p++, replay.getShotType());
+                insert.setString(p++, replay.getDifficulty());
+                insert.setString(p++, replay.getStage());
+                insert.setBoolean(p++, replay.isCleared());
+                insert.setLong(p++, replay.getTotalScore());
+                insert.setObject(p++, replay.getGameDate());
+                insert.setString(p++, replay.getPlayerName());
+                insert.setFloat(p++, replay.getSlowRate());
+                insert.setInt(p++, replay.getTotalFrames());
+                insert.setBytes(p++, replay.getStageScoresBin());
+                insert.setBytes(p++, replay.getBombStatsBin());
+                insert.setInt(p++, replay.getTotalZBombs());
+                insert.setInt(p++, replay.getTotalXBombs());
+                insert.setInt(p++, replay.getTotalCBombs());
+                insert.setBytes(p++, replay.getRawJsonCompressed());
+                insert.setString(p, replay.getAnalysisStatus());
+                insert.addBatch();
+
+                for (ReplayStage stage : ReplayStage.listOf(replay)) {
+                    insertStage.setInt(1, stage.getReplayId());
+                    insertStage.setInt(2, stage.getStageNum());
+                    insertStage.setLong(3, stage.getScore());
+                    insertStage.setInt(4, stage.getZBombs());
+                    insertStage.setInt(5, stage.getXBombs());
+                    insertStage.setInt(6, stage.getStartFrame());
+                    insertStage.setInt(7, stage.getEndFrame());
+                    insertStage.addBatch();
+                }
+                if ((i + 1) % 1000 == 0) {
+                    insert.executeBatch();
+                    insertStage.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            insertStage.executeBatch();
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.thmanager.bench;
+
+import com.thmanager.service.ReplayColumnStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 列式存储上的汇总：顺序循环与 fork/join 并行对比
+ *
+ * parallel=false 时把并行阈值设为 Integer.MAX_VALUE，始终在调用线程上顺序累加。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnStoreAggregationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int replayCount;
+
+    @Param({"true", "false"})
+    public boolean parallel;
+
+    private BenchmarkDatabase database;
+    private ReplayColumnStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(replayCount, 42L);
+        System.setProperty("thmanager.statistics.parallel-threshold",
+                parallel ? "32768" : String.valueOf(Integer.MAX_VALUE));
+        store = new ReplayColumnStore(database.replayDAO());
+        store.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    /**
+     * 全部Replay按游戏分组（/api/statistics/playtime）
+     */
+    @Benchmark
+    public Map<Integer, ReplayColumnStore.Summary> summarizeByGame() {
+        return store.summarizeByGame(ReplayColumnStore.Filter.all());
+    }
+
+    /**
+     * 单个游戏难度的汇总（难度报告中的总数与通关率）
+     */
+    @Benchmark
+    public ReplayColumnStore.Summary summarizeGameDifficulty() {
+        return store.summarize(ReplayColumnStore.Filter.of(3, "Lunatic"));
+    }
+
+    /**
+     * 多条件组合筛选（/api/statistics/query）
+     */
+    @Benchmark
+    public ReplayColumnStore.Summary summarizeFiltered() {
+        return store.summarize(new ReplayColumnStore.Filter(null, "Hard", "Marisa B", true, 500_000_000L, null));
+    }
+}
@@ -0,0 +1,91 @@
+package com.thmanager.bench;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.model.Replay;
+import org.apache.ibatis.logging.slf4j.Slf4jImpl;
+import org.apache.ibatis.logging.stdout.StdOutImpl;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志方式对导入吞吐的影响：每次导入一个新Replay（ReplayDAO.saveOrUpdate）并输出一行导入状态
+ *
+ * stdout 还原改动前的输出：MyBatis StdOutImpl 逐条打印SQL与结果行，DAO 与监听服务直接 println；
+ * slf4j-async 使用 logback-spring.xml 的配置（异步控制台输出，Mapper 日志为WARN），MyBatis 使用 Slf4jImpl。
+ * 两种方式的标准输出都重定向到同一临时文件，模拟同步写控制台的开销而不刷屏。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportLoggingBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger("com.thmanager.service.ReplayWatcherService");
+
+    @Param({"stdout", "slf4j-async"})
+    public String mode;
+
+    @Param({"10000"})
+    public int replayCount;
+
+    private BenchmarkDatabase database;
+    private ReplayDAO replayDAO;
+    private Random random;
+    private int nextIndex;
+    private PrintStream stdout;
+    private Path output;
+    private boolean printToStdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stdout = System.out;
+        output = Files.createTempFile("thmanager-bench", ".log");
+        System.setOut(new PrintStream(new FileOutputStream(output.toFile()), true, StandardCharsets.UTF_8));
+
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(context);
+        configurator.doConfigure(ImportLoggingBenchmark.class.getResource("/logback-spring.xml"));
+
+        printToStdout = "stdout".equals(mode);
+        database = BenchmarkDatabase.create(replayCount, 42L, printToStdout ? StdOutImpl.class : Slf4jImpl.class);
+        replayDAO = database.replayDAO();
+        random = new Random(7L);
+        nextIndex = replayCount;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+        System.setOut(stdout);
+        database.close();
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public boolean importReplay() {
+        Replay replay = BenchmarkDatabase.syntheticReplay(nextIndex++, random);
+        boolean saved = replayDAO.saveOrUpdate(replay);
+        if (printToStdout) {
+            System.out.println("✓ Replay已保存: " + replay.getFileName());
+            System.out.println("[ReplayWatcher] ✓ 已导入: " + replay.getFileName());
+        } else {
+            log.info("✓ 已导入: {}", replay.getFileName());
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,64 @@
+package com.thmanager.bench;
+
+import com.thmanager.mapper.ReplayMapper;
+import com.thmanager.model.Replay;
+import org.apache.ibatis.session.SqlSession;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replay列表查询的对象物化开销
+ *
+ * 通过与应用相同的 ReplayMapper 查询全部Replay，配合 -prof gc 观察每次查询的分配量（gc.alloc.rate.norm）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayMaterializationBenchmark {
+
+    @Param({"50000"})
+    public int replayCount;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(replayCount, 42L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    /**
+     * 仅物化：查询全部Replay
+     */
+    @Benchmark
+    public List<Replay> findAll() {
+        try (SqlSession session = database.sessionFactory().openSession()) {
+            return session.getMapper(ReplayMapper.class).findAllWithGameTitle();
+        }
+    }
+
+    /**
+     * 物化后按统计服务的方式访问常用字段
+     */
+    @Benchmark
+    public void findAllAndGroup(Blackhole bh) {
+        try (SqlSession session = database.sessionFactory().openSession()) {
+            for (Replay replay : session.getMapper(ReplayMapper.class).findAllWithGameTitle()) {
+                bh.consume(replay.getFullShotType());
+                bh.consume(replay.getDifficulty());
+                bh.consume(replay.getStageScore(1));
+                bh.consume(replay.hasErrors());
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.thmanager.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.thmanager.model.Replay;
+import com.thmanager.service.ReplayParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析器输出JSON到Replay的转换开销（不含外部Python解析进程）
+ *
+ * 头部解析 = readTree + parseJsonToReplay；深度分析填充关卡得分表与炸弹统计；
+ * 关卡得分表的写入与读取走二进制编码（setStageScoresList / getStageScoresList）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayParserBenchmark {
+
+    private static final int SAMPLES = 256;
+    private static final Path FILE = Path.of("th_bench.rpy");
+
+    private final ReplayParser parser = new ReplayParser();
+    private String[] jsons;
+    private JsonNode[] roots;
+    private List<List<Long>> stageScores;
+    private byte[][] stageScoreBins;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42L);
+        jsons = new String[SAMPLES];
+        roots = new JsonNode[SAMPLES];
+        stageScores = new ArrayList<>(SAMPLES);
+        stageScoreBins = new byte[SAMPLES][];
+        for (int i = 0; i < SAMPLES; i++) {
+            jsons[i] = parserOutput(random);
+            roots[i] = parser.readTree(jsons[i]).orElseThrow();
+            Replay replay = BenchmarkDatabase.syntheticReplay(i, random);
+            stageScores.add(replay.getStageScoresList());
+            stageScoreBins[i] = replay.getStageScoresBin();
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (SAMPLES - 1);
+        return next;
+    }
+
+    /**
+     * 头部解析：JSON文本 → JSON树 → Replay
+     */
+    @Benchmark
+    public Replay parseJsonToReplay() {
+        JsonNode root = parser.readTree(jsons[nextIndex()]).orElseThrow();
+        return parser.parseJsonToReplay(root, FILE, 1);
+    }
+
+    /**
+     * 深度分析：在已解析的JSON树上填充关卡得分表与炸弹统计
+     */
+    @Benchmark
+    public Replay applyDeepAnalysis() {
+        int i = nextIndex();
+        Replay replay = parser.parseJsonToReplay(roots[i], FILE, 1);
+        parser.applyDeepAnalysis(replay, roots[i]);
+        return replay;
+    }
+
+    /**
+     * 写入关卡得分表（编码为二进制列）
+     */
+    @Benchmark
+    public byte[] setStageScores() {
+        Replay replay = new Replay();
+        replay.setStageScoresList(stageScores.get(nextIndex()));
+        return replay.getStageScoresBin();
+    }
+
+    /**
+     * 读取关卡得分表（由二进制列解码）
+     */
+    @Benchmark
+    public List<Long> getStageScores() {
+        Replay replay = new Replay();
+        replay.setStageScoresBin(stageScoreBins[nextIndex()]);
+        return replay.getStageScoresList();
+    }
+
+    /**
+     * 与 threp 解析脚本输出结构相同的JSON
+     */
+    private static String parserOutput(Random random) {
+        int stages = 1 + random.nextInt(6);
+        StringBuilder scores = new StringBuilder();
+        StringBuilder byStage = new StringBuilder();
+        long score = 0;
+        int frame = 0;
+        for (int s = 1; s <= stages; s++) {
+            score += 50_000_000L + random.nextInt(150_000_000);
+            int end = frame + 20_000 + random.nextInt(20_000);
+            if (s > 1) {
+                scores.append(',');
+                byStage.append(',');
+            }
+            scores.append(score);
+            byStage.append("{\"stage\":").append(s).append(",\"z_count\":").append(random.nextInt(3))
+                    .append(",\"x_count\":").append(random.nextInt(4)).append(",\"start_frame\":").append(frame)
+                    .append(",\"end_frame\":").append(end).append('}');
+            frame = end;
+        }
+        return "{\"baseInfoDic\":{\"character\":\"Reimu\",\"shottype\":\"A\",\"rank\":\"Lunatic\",\"stage\":\""
+                + (stages == 6 ? "All Clear" : "Stage " + stages) + "\"},"
+                + "\"stageScore\":[" + scores + "],\"totalScore\":" + score + ",\"frameCount\":" + frame
+                + ",\"cleared\":" + (stages == 6) + ",\"date\":\"2024/05/01 21:30\",\"player\":\"Player\","
+                + "\"slowRate\":0.42,\"bombAnalysis\":{\"totalZ\":3,\"totalX\":5,\"totalC\":0,"
+                + "\"byStage\":[" + byStage + "]}}";
+    }
+}
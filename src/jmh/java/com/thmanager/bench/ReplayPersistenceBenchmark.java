@@ -0,0 +1,60 @@
+package com.thmanager.bench;
+
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.model.Replay;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReplayDAO.saveOrUpdate 在临时SQLite文件上的写入开销（每次调用单独提交）
+ *
+ * insert 写入新路径的Replay，update 覆盖已有路径的Replay，两者都先按路径查重。
+ * DAO 每次保存都会打印日志，测量期间临时关闭标准输出，避免控制台输出计入耗时。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayPersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int replayCount;
+
+    private BenchmarkDatabase database;
+    private ReplayDAO replayDAO;
+    private Random random;
+    private int nextIndex;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(replayCount, 42L);
+        replayDAO = database.replayDAO();
+        random = new Random(7L);
+        nextIndex = replayCount;
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.setOut(stdout);
+        database.close();
+    }
+
+    @Benchmark
+    public boolean insert() {
+        return replayDAO.saveOrUpdate(BenchmarkDatabase.syntheticReplay(nextIndex++, random));
+    }
+
+    @Benchmark
+    public boolean update() {
+        return replayDAO.saveOrUpdate(BenchmarkDatabase.syntheticReplay(random.nextInt(replayCount), random));
+    }
+}
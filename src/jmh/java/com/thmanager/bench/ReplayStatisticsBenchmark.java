@@ -0,0 +1,144 @@
+package com.thmanager.bench;
+
+import com.thmanager.controller.StatisticsController;
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.model.Replay;
+import com.thmanager.model.StageScoreStat;
+import com.thmanager.service.ReplayColumnStore;
+import com.thmanager.service.ReplayStatisticsService;
+import com.thmanager.service.ScoreSketchService;
+import com.thmanager.service.StatisticsStreamService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReplayStatisticsService 各统计方法与 StatisticsController.getScoreStats 的耗时随Replay数量的变化
+ *
+ * 统计服务、列式存储和分数摘要按应用中的方式组装在合成数据库上，查询固定为 游戏3 / Lunatic。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayStatisticsBenchmark {
+
+    private static final int GAME_ID = 3;
+    private static final String DIFFICULTY = "Lunatic";
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int replayCount;
+
+    private BenchmarkDatabase database;
+    private ReplayStatisticsService statisticsService;
+    private StatisticsController controller;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(replayCount, 42L);
+        ReplayDAO replayDAO = database.replayDAO();
+        ReplayColumnStore columnStore = new ReplayColumnStore(replayDAO);
+        columnStore.load();
+        statisticsService = new ReplayStatisticsService(replayDAO, database.gameDAO(), columnStore,
+                new ScoreSketchService(replayDAO, columnStore, new SimpleMeterRegistry()));
+        controller = new StatisticsController(replayDAO, database.gameDAO(), database.playSessionDAO(),
+                statisticsService, new StatisticsStreamService(replayDAO));
+        // 首次查询时重建分数摘要，不计入测量
+        statisticsService.getScoreDistribution(GAME_ID, DIFFICULTY, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<Replay> getBestScore() {
+        return statisticsService.getBestScore(GAME_ID, DIFFICULTY);
+    }
+
+    @Benchmark
+    public Map<String, Replay> getBestScoresByDifficulty() {
+        return statisticsService.getBestScoresByDifficulty(GAME_ID);
+    }
+
+    @Benchmark
+    public ReplayStatisticsService.HighScoreCheck checkHighScore() {
+        return statisticsService.checkHighScore(GAME_ID, DIFFICULTY, 900_000_000L);
+    }
+
+    @Benchmark
+    public List<ReplayStatisticsService.ShotTypeUsage> getShotTypeUsage() {
+        return statisticsService.getShotTypeUsage(GAME_ID, DIFFICULTY);
+    }
+
+    @Benchmark
+    public List<ReplayStatisticsService.StageReachStat> getStageReachStats() {
+        return statisticsService.getStageReachStats(GAME_ID, DIFFICULTY);
+    }
+
+    @Benchmark
+    public double getClearRate() {
+        return statisticsService.getClearRate(GAME_ID, DIFFICULTY);
+    }
+
+    @Benchmark
+    public ReplayColumnStore.Summary query() {
+        return statisticsService.query(new ReplayColumnStore.Filter(null, "Hard", "Marisa B", true, null, null));
+    }
+
+    @Benchmark
+    public List<ReplayStatisticsService.StageBombStat> getStageBombStats() {
+        return statisticsService.getStageBombStats(GAME_ID, DIFFICULTY);
+    }
+
+    @Benchmark
+    public Map<String, List<ReplayStatisticsService.StageBombStat>> getBombStatsByShotType() {
+        return statisticsService.getBombStatsByShotType(GAME_ID, DIFFICULTY);
+    }
+
+    @Benchmark
+    public List<StageScoreStat> getStageScoreStats() {
+        return statisticsService.getStageScoreStats(GAME_ID, DIFFICULTY);
+    }
+
+    @Benchmark
+    public double getAverageStageScoreGain() {
+        return statisticsService.getAverageStageScoreGain(GAME_ID, DIFFICULTY, 3);
+    }
+
+    @Benchmark
+    public ReplayStatisticsService.DifficultyFullReport generateDifficultyReport() {
+        return statisticsService.generateDifficultyReport(GAME_ID, DIFFICULTY);
+    }
+
+    @Benchmark
+    public ReplayColumnStore.Summary getOverallSummary() {
+        return statisticsService.getOverallSummary();
+    }
+
+    @Benchmark
+    public SortedMap<Integer, ReplayColumnStore.Summary> getSummaryByGame() {
+        return statisticsService.getSummaryByGame();
+    }
+
+    @Benchmark
+    public ReplayStatisticsService.ScoreDistribution getScoreDistribution() {
+        return statisticsService.getScoreDistribution(GAME_ID, DIFFICULTY, null, 900_000_000L);
+    }
+
+    /**
+     * 最高分TOP 20（/api/statistics/scores）
+     */
+    @Benchmark
+    public List<Map<String, Object>> getScoreStats() {
+        return controller.getScoreStats();
+    }
+}
@@ -0,0 +1,72 @@
+package com.thmanager.bench;
+
+import com.thmanager.ThManagerApplication;
+import com.thmanager.config.StartupTimeline;
+import com.thmanager.dao.SchemaMigrator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 应用冷启动耗时：从创建 SpringApplication 到 ApplicationReadyEvent 处理完毕（监控已启动、统计已按配置预加载）
+ *
+ * 每次测量在新的JVM中进行，不做预热；default 为默认配置，fast-start 为快速启动模式。
+ * 数据库在测量前已按最新结构创建于临时的 user.home 下，不计入迁移耗时。
+ * 各阶段耗时（StartupTimeline）打印在每个fork的输出中，可与总耗时对照。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+
+    @Param({"default", "fast-start"})
+    public String profile;
+
+    private Path home;
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        home = Files.createTempDirectory("thmanager-startup");
+        System.setProperty("user.home", home.toString());
+        Path dataDir = Files.createDirectories(home.resolve(".touhou-manager"));
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dataDir.resolve("touhou_manager.db"))) {
+            SchemaMigrator.migrate(conn);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.println("Startup phases (" + profile + "): " + StartupTimeline.summary());
+        if (context != null) {
+            context.close();
+        }
+        try (Stream<Path> files = Files.walk(home)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        StartupTimeline.begin();
+        SpringApplication application = new SpringApplication(ThManagerApplication.class);
+        application.addListeners(StartupTimeline.listener());
+        String[] args = profile.equals("default")
+                ? new String[]{"--server.port=0"}
+                : new String[]{"--server.port=0", "--spring.profiles.active=" + profile};
+        context = application.run(args);
+        return context;
+    }
+}
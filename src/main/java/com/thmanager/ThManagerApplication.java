@@ -1,5 +1,6 @@
 package com.thmanager;
 
+import com.thmanager.config.StartupTimeline;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
@@ -13,6 +14,8 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * 
  * @SpringBootApplication 注解表示这是一个Spring Boot应用程序，
  *                        它会自动配置Spring框架并扫描当前包及其子包下的组件。
+ *
+ * 启动各阶段的耗时由 {@link StartupTimeline} 记录，开始监控Replay目录后输出到日志。
  */
 @SpringBootApplication
 public class ThManagerApplication {
@@ -23,6 +26,9 @@ public class ThManagerApplication {
      * @param args 命令行参数
      */
     public static void main(String[] args) {
-        SpringApplication.run(ThManagerApplication.class, args);
+        StartupTimeline.begin();
+        SpringApplication application = new SpringApplication(ThManagerApplication.class);
+        application.addListeners(StartupTimeline.listener());
+        application.run(args);
     }
 }
@@ -0,0 +1,43 @@
+package com.thmanager.config;
+
+import com.thmanager.util.StringPool;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 运行指标配置
+ *
+ * 各服务通过注入的 MeterRegistry 自行注册计时器与计数器（导入流水线、线程池队列），
+ * 这里注册不属于某个服务的指标：每条SQL语句的耗时，以及共享字符串池的命中率。
+ * HTTP 接口耗时由 Actuator 自动记录为 http.server.requests。
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * 按 Mapper 方法记录语句耗时（thmanager.db.statement）
+     */
+    @Bean
+    public StatementMetricsInterceptor statementMetricsInterceptor(MeterRegistry registry) {
+        return new StatementMetricsInterceptor(registry);
+    }
+
+    @Bean
+    public MeterBinder stringPoolMetrics() {
+        return registry -> {
+            FunctionCounter.builder("thmanager.cache.requests", StringPool.class, pool -> StringPool.hits())
+                    .tag("cache", "string-pool").tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("thmanager.cache.requests", StringPool.class, pool -> StringPool.misses())
+                    .tag("cache", "string-pool").tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("thmanager.cache.size", StringPool::size)
+                    .tag("cache", "string-pool")
+                    .register(registry);
+        };
+    }
+}
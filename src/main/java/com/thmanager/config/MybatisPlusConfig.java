@@ -0,0 +1,23 @@
+package com.thmanager.config;
+
+import com.baomidou.mybatisplus.autoconfigure.ConfigurationCustomizer;
+import org.apache.ibatis.type.ByteArrayTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * MyBatis Plus 配置类
+ */
+@Configuration
+public class MybatisPlusConfig {
+
+    /**
+     * SQLite JDBC 驱动未实现 ResultSet.getBlob，BLOB 列统一按 byte[] 读写（getBytes/setBytes）
+     */
+    @Bean
+    public ConfigurationCustomizer blobTypeHandlerCustomizer() {
+        return configuration -> configuration.getTypeHandlerRegistry()
+                .register(byte[].class, JdbcType.BLOB, new ByteArrayTypeHandler());
+    }
+}
@@ -1,31 +1,52 @@
 package com.thmanager.config;
 
+import com.thmanager.service.ReplayColumnStore;
 import com.thmanager.service.ReplayWatcherService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 
 /**
  * Replay监控服务配置类
- * 在应用启动时自动启动Replay文件夹监控服务
+ * 在应用就绪（Web服务器已开始监听）后启动Replay文件夹监控服务，并预加载统计用的列式存储
+ *
+ * 监控注册和初始扫描不再占用启动时间，界面可以先打开；只做上下文刷新的运行
+ * （如 AppCDS 训练运行的 -Dspring.context.exit=onRefresh）也不会启动后台线程或扫描目录。
+ * thmanager.startup.preload-statistics=false 时不预加载，首次统计查询时再加载。
  */
 @Configuration
 public class ReplayWatcherConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(ReplayWatcherConfig.class);
+
     private final ReplayWatcherService replayWatcherService;
+    private final ReplayColumnStore columnStore;
+    private final boolean preloadStatistics;
 
     @Autowired
-    public ReplayWatcherConfig(ReplayWatcherService replayWatcherService) {
+    public ReplayWatcherConfig(ReplayWatcherService replayWatcherService, ReplayColumnStore columnStore,
+                               @Value("${thmanager.startup.preload-statistics:true}") boolean preloadStatistics) {
         this.replayWatcherService = replayWatcherService;
+        this.columnStore = columnStore;
+        this.preloadStatistics = preloadStatistics;
     }
 
     /**
-     * 应用启动完成后触发
+     * 应用就绪后触发
      */
-    @EventListener(ContextRefreshedEvent.class)
+    @EventListener(ApplicationReadyEvent.class)
     public void startReplayWatcher() {
         // 启动Replay文件夹监控服务
         replayWatcherService.startWatching();
+        StartupTimeline.mark("watchers");
+        if (preloadStatistics) {
+            columnStore.load();
+            StartupTimeline.mark("statistics");
+        }
+        log.info("启动耗时: {}", StartupTimeline.summary());
     }
 }
@@ -0,0 +1,101 @@
+package com.thmanager.config;
+
+import org.springframework.boot.context.event.*;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * 启动各阶段的耗时
+ *
+ * 从 main 调用 {@link #begin()} 开始计时，Spring Boot 的启动事件与 {@link #mark(String)} 依次记录阶段：
+ * environment（读取配置）、prepared（加载Bean定义）、database（创建内嵌Web服务器、连接数据库并执行迁移）、web_server（端口已监听）、
+ * refreshed（单例Bean创建完毕）、ready（可以处理请求）、watchers（开始监控Replay目录）等。
+ * 不依赖 JMX（加载 java.lang.management 本身就要几十毫秒），在应用与启动基准测试中共用。
+ */
+public final class StartupTimeline {
+
+    private static final List<Phase> PHASES = new CopyOnWriteArrayList<>();
+    private static volatile long origin = System.nanoTime();
+
+    private StartupTimeline() {
+    }
+
+    /**
+     * 开始计时（清空之前的记录）
+     */
+    public static void begin() {
+        PHASES.clear();
+        origin = System.nanoTime();
+    }
+
+    /**
+     * 记录一个阶段在此刻结束
+     *
+     * @param name 阶段名称
+     */
+    public static void mark(String name) {
+        long offset = (System.nanoTime() - origin) / 1_000_000;
+        long previous = PHASES.isEmpty() ? 0 : PHASES.get(PHASES.size() - 1).offsetMillis();
+        PHASES.add(new Phase(name, offset, offset - previous));
+    }
+
+    /**
+     * @return 已记录的阶段，按时间顺序
+     */
+    public static List<Phase> phases() {
+        return List.copyOf(PHASES);
+    }
+
+    /**
+     * @return 一行摘要，如 "environment 180 ms, prepared 95 ms, ... (total 2350 ms, JVM before main 140 ms)"
+     */
+    public static String summary() {
+        List<Phase> phases = phases();
+        String steps = phases.stream()
+                .map(p -> p.name() + " " + p.durationMillis() + " ms")
+                .collect(Collectors.joining(", "));
+        long total = phases.isEmpty() ? 0 : phases.get(phases.size() - 1).offsetMillis();
+        long beforeMain = ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis()
+                        - (System.nanoTime() - origin) / 1_000_000)
+                .orElse(-1L);
+        return steps + " (total " + total + " ms, JVM before main " + beforeMain + " ms)";
+    }
+
+    /**
+     * @return 记录 Spring Boot 启动事件的监听器（通过 SpringApplication.addListeners 注册，才能收到上下文创建前的事件）
+     */
+    public static ApplicationListener<ApplicationEvent> listener() {
+        return event -> {
+            if (event instanceof ApplicationEnvironmentPreparedEvent) {
+                mark("environment");
+            } else if (event instanceof ApplicationPreparedEvent) {
+                mark("prepared");
+            } else if (event instanceof WebServerInitializedEvent) {
+                mark("web_server");
+            } else if (event instanceof ContextRefreshedEvent) {
+                mark("refreshed");
+            } else if (event instanceof ApplicationReadyEvent) {
+                mark("ready");
+            }
+        };
+    }
+
+    /**
+     * 一个启动阶段
+     *
+     * @param name           阶段名称
+     * @param offsetMillis   阶段结束时距 {@link #begin()} 的毫秒数
+     * @param durationMillis 阶段耗时（距上一阶段结束）
+     */
+    public record Phase(String name, long offsetMillis, long durationMillis) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.thmanager.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyBatis 语句耗时拦截器
+ *
+ * 拦截 Executor 的 query / update，按 Mapper 方法（如 ReplayMapper.findByPathWithGameTitle）
+ * 与语句类型记录到 thmanager.db.statement 计时器，包含结果映射时间。
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class,
+                        CacheKey.class, BoundSql.class})
+})
+public class StatementMetricsInterceptor implements Interceptor {
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public StatementMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            timer(statement).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(MappedStatement statement) {
+        return timers.computeIfAbsent(statement.getId(), id -> Timer.builder("thmanager.db.statement")
+                .description("MyBatis 语句耗时")
+                .tag("statement", shortName(id))
+                .tag("type", statement.getSqlCommandType().name())
+                .register(registry));
+    }
+
+    /**
+     * com.thmanager.mapper.ReplayMapper.findAll → ReplayMapper.findAll
+     */
+    private static String shortName(String id) {
+        int method = id.lastIndexOf('.');
+        int type = method > 0 ? id.lastIndexOf('.', method - 1) : -1;
+        return id.substring(type + 1);
+    }
+}
@@ -0,0 +1,49 @@
+package com.thmanager.config;
+
+import com.thmanager.dao.GameDAO;
+import com.thmanager.dao.PlaySessionDAO;
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.service.ReplayColumnStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 统计接口的条件GET
+ *
+ * 统计结果只取决于 replays、games、play_sessions 三组表和由它们维护的列式存储，
+ * 因此用各自的修改版本号拼成弱ETag，在执行控制器之前比较 If-None-Match：
+ * 数据没有变化时直接返回304，不再计算统计。ETag 带进程启动时间，重启后旧的ETag全部失效。
+ * 响应带 Cache-Control: no-cache，浏览器每次都会携带ETag重新验证。
+ */
+public class StatisticsEtagInterceptor implements HandlerInterceptor {
+
+    private final long epoch = System.currentTimeMillis();
+    private final ReplayDAO replayDAO;
+    private final GameDAO gameDAO;
+    private final PlaySessionDAO playSessionDAO;
+    private final ReplayColumnStore columnStore;
+
+    public StatisticsEtagInterceptor(ReplayDAO replayDAO, GameDAO gameDAO, PlaySessionDAO playSessionDAO,
+            ReplayColumnStore columnStore) {
+        this.replayDAO = replayDAO;
+        this.gameDAO = gameDAO;
+        this.playSessionDAO = playSessionDAO;
+        this.columnStore = columnStore;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        // 先读版本号再计算统计：计算期间发生的修改只会让下一次请求重新计算
+        String etag = "W/\"" + Long.toString(epoch, 36) + "-" + replayDAO.version() + "-" + columnStore.version()
+                + "-" + gameDAO.version() + "-" + playSessionDAO.version() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        return !new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+}
@@ -1,19 +1,56 @@
 package com.thmanager.config;
 
+import com.thmanager.dao.GameDAO;
+import com.thmanager.dao.PlaySessionDAO;
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.service.ReplayColumnStore;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Web配置：跨域、静态资源与统计接口的条件GET
+ *
+ * 静态资源的缓存策略：
+ * - /assets/**：Vite 构建产物，文件名带内容哈希，缓存一年且标记 immutable
+ * - /image/**、/music/**：文件名不变但内容可能被替换，每次用 ETag / Last-Modified 重新验证；
+ *   音乐文件支持 Range 请求（ResourceHttpRequestHandler 内置），可以边下边播和拖动进度
+ * JSON 响应的 gzip 压缩见 application.properties 中的 server.compression.*
+ */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private static final Path FRONTEND_ROOT = Paths.get(System.getProperty("user.dir"), "thmanager-frontend");
+
+    private final ReplayDAO replayDAO;
+    private final GameDAO gameDAO;
+    private final PlaySessionDAO playSessionDAO;
+    private final ReplayColumnStore columnStore;
+
+    public WebConfig(ReplayDAO replayDAO, GameDAO gameDAO, PlaySessionDAO playSessionDAO,
+            ReplayColumnStore columnStore) {
+        this.replayDAO = replayDAO;
+        this.gameDAO = gameDAO;
+        this.playSessionDAO = playSessionDAO;
+        this.columnStore = columnStore;
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**")
                 .allowedOrigins("http://localhost:3001", "http://localhost:3000", "http://127.0.0.1:3001", "http://127.0.0.1:3000")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("ETag")
                 .allowCredentials(true);
 
         registry.addMapping("/ws/**")
@@ -24,14 +61,49 @@ public class WebConfig implements WebMvcConfigurer {
 
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        // 构建产物（文件名带哈希）
+        registry.addResourceHandler("/assets/**")
+                .addResourceLocations("classpath:/static/assets/")
+                .setCacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable());
+
         // 配置图片资源路径
-        String imageDir = System.getProperty("user.dir") + "\\thmanager-frontend\\image\\";
         registry.addResourceHandler("/image/**")
-                .addResourceLocations("file:" + imageDir);
+                .addResourceLocations(directoryLocation(FRONTEND_ROOT.resolve("image")))
+                .setCacheControl(CacheControl.noCache().cachePublic())
+                .setEtagGenerator(WebConfig::fileEtag);
 
-        // 配置音乐资源路径
-        String musicDir = System.getProperty("user.dir") + "\\thmanager-frontend\\public\\music\\";
+        // 配置音乐资源路径（BGM 文件放在 thmanager-frontend/music，public/music 中的同名文件优先）
         registry.addResourceHandler("/music/**")
-                .addResourceLocations("file:" + musicDir);
+                .addResourceLocations(directoryLocation(FRONTEND_ROOT.resolve("public").resolve("music")),
+                        directoryLocation(FRONTEND_ROOT.resolve("music")))
+                .setCacheControl(CacheControl.noCache().cachePublic())
+                .setEtagGenerator(WebConfig::fileEtag);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StatisticsEtagInterceptor(replayDAO, gameDAO, playSessionDAO, columnStore))
+                .addPathPatterns("/api/statistics", "/api/statistics/**")
+                .excludePathPatterns("/api/statistics/stream");
+    }
+
+    /**
+     * @return 目录的 file: 地址（以 / 结尾，否则 Spring 会把最后一级当作文件名）
+     */
+    private static String directoryLocation(Path dir) {
+        String uri = dir.toUri().toString();
+        return uri.endsWith("/") ? uri : uri + "/";
+    }
+
+    /**
+     * 按文件大小与修改时间生成ETag，不读取文件内容
+     */
+    private static String fileEtag(Resource resource) {
+        try {
+            return "\"" + Long.toString(resource.contentLength(), 36) + "-"
+                    + Long.toString(resource.lastModified(), 36) + "\"";
+        } catch (IOException e) {
+            return null;
+        }
     }
 }
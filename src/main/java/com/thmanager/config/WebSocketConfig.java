@@ -0,0 +1,29 @@
+package com.thmanager.config;
+
+import com.thmanager.websocket.NotificationService;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * WebSocket 配置类
+ *
+ * /ws/events：导入、扫描进度、游戏启动/结束、倒计时等事件的推送通道
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final NotificationService notificationService;
+
+    public WebSocketConfig(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(notificationService, "/ws/events")
+                .setAllowedOrigins("http://localhost:3001", "http://localhost:3000", "http://127.0.0.1:3001", "http://127.0.0.1:3000");
+    }
+}
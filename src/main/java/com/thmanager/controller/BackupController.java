@@ -0,0 +1,93 @@
+package com.thmanager.controller;
+
+import com.thmanager.service.BackupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * 备份REST API控制器
+ *
+ * 提供备份与恢复接口：
+ * - 备份Replay归档与数据库快照到打包文件
+ * - 从打包文件恢复
+ * - 压缩打包文件，删除旧的数据库快照与旧索引
+ *
+ * 打包文件位于 ~/.touhou-manager/backup，name 参数只能是文件名（以 .thpack 结尾）。
+ * 所有接口都映射在 /api/backup 路径下。
+ */
+@RestController
+@RequestMapping("/api/backup")
+public class BackupController {
+
+    /**
+     * 备份服务
+     */
+    private final BackupService backupService;
+
+    /**
+     * 构造函数，依赖注入
+     *
+     * @param backupService 备份服务
+     */
+    @Autowired
+    public BackupController(BackupService backupService) {
+        this.backupService = backupService;
+    }
+
+    /**
+     * 备份（追加到已有的打包文件）
+     *
+     * POST /api/backup
+     *
+     * @param name 打包文件名，默认为 touhou-manager.thpack
+     * @return 备份结果
+     */
+    @PostMapping
+    public BackupService.BackupResult backup(@RequestParam(required = false) String name)
+            throws IOException, SQLException {
+        try {
+            return backupService.backup(name);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * 从打包文件恢复（数据库在重启后生效）
+     *
+     * POST /api/backup/restore
+     *
+     * @param name 打包文件名，默认为 touhou-manager.thpack
+     * @return 恢复结果
+     */
+    @PostMapping("/restore")
+    public BackupService.RestoreResult restore(@RequestParam(required = false) String name) throws IOException {
+        try {
+            return backupService.restore(name);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * 压缩打包文件（删除超出保留份数的旧数据库快照与旧索引）
+     *
+     * POST /api/backup/compact
+     *
+     * @param name 打包文件名，默认为 touhou-manager.thpack
+     * @return 压缩结果
+     */
+    @PostMapping("/compact")
+    public BackupService.CompactResult compact(@RequestParam(required = false) String name) throws IOException {
+        try {
+            return backupService.compact(name);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
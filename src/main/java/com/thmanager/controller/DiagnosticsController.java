@@ -0,0 +1,52 @@
+package com.thmanager.controller;
+
+import com.thmanager.service.ImportTraceRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 诊断信息REST API控制器
+ *
+ * 提供排查导入性能问题的接口：
+ * - 最近导入中最慢的若干次及各阶段耗时
+ *
+ * 所有接口都映射在 /api/diagnostics 路径下。
+ */
+@RestController
+@RequestMapping("/api/diagnostics")
+public class DiagnosticsController {
+
+    /**
+     * 导入阶段耗时记录
+     */
+    private final ImportTraceRecorder importTraceRecorder;
+
+    /**
+     * 构造函数，依赖注入
+     *
+     * @param importTraceRecorder 导入阶段耗时记录
+     */
+    @Autowired
+    public DiagnosticsController(ImportTraceRecorder importTraceRecorder) {
+        this.importTraceRecorder = importTraceRecorder;
+    }
+
+    /**
+     * 获取最近导入中最慢的若干次
+     *
+     * GET /api/diagnostics/slow-imports
+     *
+     * 阶段依次为 queue（目录事件到开始处理）、file_ready（等待写入完成）、change_check（按修改时间判断是否变化）、
+     * archive（复制到归档）、parse（其中 parse.subprocess、parse.json）、attribute（归入游玩会话）、
+     * persist（其中 persist.lookup、persist.insert / persist.update）、publish（推送导入事件并提交深度分析）。
+     *
+     * @param limit 返回数量，默认为10
+     * @return 按总耗时降序排列的导入记录
+     */
+    @GetMapping("/slow-imports")
+    public List<ImportTraceRecorder.SlowImport> getSlowImports(@RequestParam(defaultValue = "10") int limit) {
+        return importTraceRecorder.slowest(limit);
+    }
+}
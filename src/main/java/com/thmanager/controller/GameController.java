@@ -2,9 +2,13 @@ package com.thmanager.controller;
 
 import com.thmanager.model.Game;
 import com.thmanager.dao.GameDAO;
+import com.thmanager.event.GameCountdownEvent;
 import com.thmanager.service.GameLauncher;
 import com.thmanager.util.GameCoverResolver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -21,6 +25,9 @@ import java.util.Optional;
  * - 启动和停止游戏
  * - 查询游戏运行状态
  * 
+ * 游戏列表在 games 表与封面映射都未变化时直接返回缓存
+ * （thmanager.cache.requests{cache=games}）。
+ * 
  * 所有接口都映射在 /api/games 路径下。
  */
 @RestController
@@ -37,16 +44,35 @@ public class GameController {
      */
     private final GameLauncher gameLauncher;
 
+    /**
+     * 事件发布器（倒计时经 /ws/events 推送给前端）
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 游戏列表缓存，为null时需要重新查询
+     */
+    private volatile CachedGames cachedGames;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
     /**
      * 构造函数，依赖注入
      * 
-     * @param gameDAO      游戏数据访问对象
-     * @param gameLauncher 游戏启动器服务
+     * @param gameDAO        游戏数据访问对象
+     * @param gameLauncher   游戏启动器服务
+     * @param eventPublisher 事件发布器
+     * @param meterRegistry  指标注册表
      */
     @Autowired
-    public GameController(GameDAO gameDAO, GameLauncher gameLauncher) {
+    public GameController(GameDAO gameDAO, GameLauncher gameLauncher, ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry) {
         this.gameDAO = gameDAO;
         this.gameLauncher = gameLauncher;
+        this.eventPublisher = eventPublisher;
+        this.cacheHits = meterRegistry.counter("thmanager.cache.requests", "cache", "games", "result", "hit");
+        this.cacheMisses = meterRegistry.counter("thmanager.cache.requests", "cache", "games", "result", "miss");
     }
 
     /**
@@ -117,13 +143,27 @@ public class GameController {
      */
     @GetMapping
     public List<Game> getGames() {
+        // 先读版本号再查询，查询期间发生的修改会使下次请求重新查询
+        long daoVersion = gameDAO.version();
+        long coverVersion = GameCoverResolver.version();
+        CachedGames cached = cachedGames;
+        if (cached != null && cached.daoVersion() == daoVersion && cached.coverVersion() == coverVersion) {
+            cacheHits.increment();
+            return cached.games();
+        }
+        cacheMisses.increment();
         List<Game> games = gameDAO.findAll();
         for (Game game : games) {
             enrichGame(game);
         }
+        games = List.copyOf(games);
+        cachedGames = new CachedGames(daoVersion, coverVersion, games);
         return games;
     }
 
+    private record CachedGames(long daoVersion, long coverVersion, List<Game> games) {
+    }
+
     private void enrichGame(Game game) {
         String installPath = game.getInstallPath();
         game.setInstalled(installPath != null && !installPath.trim().isEmpty());
@@ -147,10 +187,12 @@ public class GameController {
             gameLauncher.launchWithCountdown(game, countdown, new GameLauncher.CountdownCallback() {
                 @Override
                 public void onTick(int seconds) {
+                    eventPublisher.publishEvent(new GameCountdownEvent(game, seconds));
                 }
 
                 @Override
                 public void onFinish() {
+                    eventPublisher.publishEvent(new GameCountdownEvent(game, 0));
                 }
             });
         }
@@ -0,0 +1,81 @@
+package com.thmanager.controller;
+
+import com.thmanager.service.ImageVariantService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.util.Optional;
+
+/**
+ * 图片缩略图控制器
+ *
+ * GET /image/w{宽度}/{原图路径}，例如 /image/w320/main/th06.jpg 返回 image/main/th06.jpg 缩小到320像素宽的版本。
+ * 其余 /image/** 路径仍由静态资源处理器返回原图（见 WebConfig）。
+ * 缩略图以原图哈希与宽度为ETag，浏览器每次重新验证，原图未变化时返回304。
+ */
+@RestController
+public class ImageController {
+
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    /**
+     * 缩略图服务
+     */
+    private final ImageVariantService imageVariantService;
+
+    /**
+     * 构造函数，依赖注入
+     *
+     * @param imageVariantService 缩略图服务
+     */
+    @Autowired
+    public ImageController(ImageVariantService imageVariantService) {
+        this.imageVariantService = imageVariantService;
+    }
+
+    /**
+     * 获取图片缩略图
+     *
+     * GET /image/{variant}/**
+     *
+     * @param variant 宽度，格式为 w + 像素数（160、320、640、1280）
+     * @return 缩略图，原图不存在或宽度不支持时返回404
+     */
+    @GetMapping("/image/{variant:w\\d+}/**")
+    public ResponseEntity<Resource> getVariant(@PathVariable String variant, HttpServletRequest request) {
+        String prefix = "/image/" + variant + "/";
+        String path = PATH_HELPER.getPathWithinApplication(request);
+        int width;
+        try {
+            width = Integer.parseInt(variant.substring(1));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<ImageVariantService.Variant> found = path.startsWith(prefix)
+                ? imageVariantService.getVariant(path.substring(prefix.length()), width)
+                : Optional.empty();
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        ImageVariantService.Variant image = found.get();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(image.png() ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG);
+        if (image.etag() != null) {
+            response.eTag(image.etag()).cacheControl(CacheControl.noCache().cachePublic());
+        } else {
+            // 缩略图尚未生成，返回的是原图，不允许缓存
+            response.cacheControl(CacheControl.noStore());
+        }
+        return response.body(new FileSystemResource(image.file()));
+    }
+}
@@ -1,11 +1,27 @@
 package com.thmanager.controller;
 
 import com.thmanager.dao.ReplayDAO;
+import com.thmanager.event.ReplayDeletedEvent;
 import com.thmanager.model.Replay;
+import com.thmanager.model.ReplayFacetCount;
+import com.thmanager.model.ReplaySearchQuery;
+import com.thmanager.service.ReplayArchiveService;
 import com.thmanager.service.ReplayScanner;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -15,8 +31,10 @@ import java.util.Optional;
  * 
  * 提供Replay管理相关的REST接口，包括：
  * - 获取Replay列表（支持分页）
+ * - 搜索Replay（全文检索与分维度计数）
  * - 按游戏ID获取Replay
  * - 获取单个Replay详情
+ * - 下载Replay文件
  * - 删除Replay
  * - 扫描新Replay
  * 
@@ -36,16 +54,31 @@ public class ReplayController {
      */
     private final ReplayScanner replayScanner;
 
+    /**
+     * Replay归档
+     */
+    private final ReplayArchiveService archiveService;
+
+    /**
+     * 事件发布器（删除Replay后通知统计存储）
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
     /**
      * 构造函数，依赖注入
      * 
-     * @param replayDAO     Replay数据访问对象
-     * @param replayScanner Replay扫描器服务
+     * @param replayDAO      Replay数据访问对象
+     * @param replayScanner  Replay扫描器服务
+     * @param archiveService Replay归档
+     * @param eventPublisher 事件发布器
      */
     @Autowired
-    public ReplayController(ReplayDAO replayDAO, ReplayScanner replayScanner) {
+    public ReplayController(ReplayDAO replayDAO, ReplayScanner replayScanner,
+            ReplayArchiveService archiveService, ApplicationEventPublisher eventPublisher) {
         this.replayDAO = replayDAO;
         this.replayScanner = replayScanner;
+        this.archiveService = archiveService;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -77,6 +110,71 @@ public class ReplayController {
                 "pageSize", pageSize);
     }
 
+    /**
+     * 搜索Replay
+     *
+     * GET /api/replays/search
+     *
+     * 关键词匹配玩家名、机体、机体类型、文件名和游戏标题，多个词以空格分隔；其余参数为精确筛选。
+     * facets 为当前结果按 game、difficulty、shot、cleared 的计数，取值可直接作为对应的筛选参数。
+     *
+     * @param q          关键词
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @param character  机体
+     * @param shot       自机（如 "Marisa B"）
+     * @param cleared    是否通关
+     * @param year       录制年份
+     * @param page       页码，默认为1
+     * @param pageSize   每页数量，默认为20，最大200
+     * @return 包含数据、总数、当前页、每页数量和各维度计数的Map
+     */
+    @GetMapping("/search")
+    public Map<String, Object> searchReplays(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer gameId,
+            @RequestParam(required = false) String difficulty,
+            @RequestParam(required = false) String character,
+            @RequestParam(required = false) String shot,
+            @RequestParam(required = false) Boolean cleared,
+            @RequestParam(required = false) String year,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "20") int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, 200));
+        int currentPage = Math.max(1, page);
+        ReplaySearchQuery query = new ReplaySearchQuery();
+        query.setText(q);
+        query.setGameId(gameId);
+        query.setDifficulty(difficulty);
+        query.setCharacter(character);
+        query.setShot(shot);
+        query.setCleared(cleared);
+        query.setYear(year);
+        query.setOffset((currentPage - 1) * size);
+        query.setLimit(size);
+
+        long total = 0;
+        Map<String, List<ReplayFacetCount>> facets = new LinkedHashMap<>();
+        for (String facet : List.of("game", "difficulty", "shot", "cleared")) {
+            facets.put(facet, new ArrayList<>());
+        }
+        for (ReplayFacetCount count : replayDAO.searchFacets(query)) {
+            if (count.getFacet().equals("total")) {
+                total = count.getCount();
+            } else {
+                facets.get(count.getFacet()).add(count);
+            }
+        }
+        List<Replay> replays = total == 0 ? List.of() : replayDAO.search(query);
+
+        return Map.of(
+                "data", replays,
+                "total", total,
+                "page", currentPage,
+                "pageSize", size,
+                "facets", facets);
+    }
+
     /**
      * 按游戏ID获取Replay列表
      * 
@@ -90,6 +188,19 @@ public class ReplayController {
         return replayDAO.findByGame(gameId);
     }
 
+    /**
+     * 按游玩会话ID获取Replay列表
+     *
+     * GET /api/replays/session/{sessionId}
+     *
+     * @param sessionId 游玩会话ID
+     * @return 该会话中录制的Replay列表
+     */
+    @GetMapping("/session/{sessionId}")
+    public List<Replay> getReplaysBySession(@PathVariable int sessionId) {
+        return replayDAO.findBySession(sessionId);
+    }
+
     /**
      * 按ID获取单个Replay详情
      * 
@@ -104,6 +215,36 @@ public class ReplayController {
         return replay.orElse(null);
     }
 
+    /**
+     * 下载Replay文件
+     *
+     * GET /api/replays/{id}/file
+     *
+     * 优先返回归档副本（槽位被覆盖后原文件已是另一局），没有归档时返回原文件。
+     *
+     * @param id Replay ID
+     * @return .rpy 文件，记录或文件不存在时返回404
+     */
+    @GetMapping("/{id}/file")
+    public ResponseEntity<Resource> downloadReplay(@PathVariable int id) {
+        Optional<Replay> replay = replayDAO.findById(id);
+        if (replay.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file = archiveService.find(replay.get().getArchiveHash())
+                .orElseGet(() -> Paths.get(replay.get().getFilePath()));
+        if (!Files.isRegularFile(file)) {
+            return ResponseEntity.notFound().build();
+        }
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(replay.get().getFileName())
+                .build();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(file));
+    }
+
     /**
      * 删除指定的Replay
      * 
@@ -113,7 +254,10 @@ public class ReplayController {
      */
     @DeleteMapping("/{id}")
     public void deleteReplay(@PathVariable int id) {
-        replayDAO.delete(id);
+        Optional<Replay> replay = replayDAO.findById(id);
+        if (replay.isPresent() && replayDAO.delete(id)) {
+            eventPublisher.publishEvent(new ReplayDeletedEvent(id, replay.get()));
+        }
     }
 
     /**
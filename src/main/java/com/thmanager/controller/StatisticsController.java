@@ -1,13 +1,24 @@
 package com.thmanager.controller;
 
 import com.thmanager.dao.GameDAO;
+import com.thmanager.dao.PlaySessionDAO;
 import com.thmanager.dao.ReplayDAO;
 import com.thmanager.model.Game;
+import com.thmanager.model.PlayTimeRollup;
 import com.thmanager.model.Replay;
+import com.thmanager.model.StageScoreStat;
+import com.thmanager.service.ReplayColumnStore;
 import com.thmanager.service.ReplayStatisticsService;
+import com.thmanager.service.StatisticsStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -21,8 +32,13 @@ import java.util.stream.Collectors;
  * - 总体统计概览
  * - 特定游戏的统计数据
  * - 各游戏游玩时间排行
+ * - 按日/周/月的游玩时间汇总
  * - 最高分排行
  * - 特定难度的详细统计报告
+ * - 任意条件组合的Replay汇总
+ * - 分数分布（分位数与百分位排名）
+ * - 新纪录判定（含百分位排名）
+ * - 导入新Replay后的统计增量推送（SSE）
  * 
  * 所有接口都映射在 /api/statistics 路径下。
  */
@@ -40,23 +56,54 @@ public class StatisticsController {
      */
     private final GameDAO gameDAO;
 
+    /**
+     * 游玩会话数据访问对象
+     */
+    private final PlaySessionDAO playSessionDAO;
+
     /**
      * Replay统计服务
      */
     private final ReplayStatisticsService statisticsService;
 
+    /**
+     * 统计增量推送服务
+     */
+    private final StatisticsStreamService statisticsStreamService;
+
     /**
      * 构造函数，依赖注入
      * 
-     * @param replayDAO         Replay数据访问对象
-     * @param gameDAO           游戏数据访问对象
-     * @param statisticsService Replay统计服务
+     * @param replayDAO               Replay数据访问对象
+     * @param gameDAO                 游戏数据访问对象
+     * @param playSessionDAO          游玩会话数据访问对象
+     * @param statisticsService       Replay统计服务
+     * @param statisticsStreamService 统计增量推送服务
      */
     @Autowired
-    public StatisticsController(ReplayDAO replayDAO, GameDAO gameDAO, ReplayStatisticsService statisticsService) {
+    public StatisticsController(ReplayDAO replayDAO, GameDAO gameDAO, PlaySessionDAO playSessionDAO,
+            ReplayStatisticsService statisticsService, StatisticsStreamService statisticsStreamService) {
         this.replayDAO = replayDAO;
         this.gameDAO = gameDAO;
+        this.playSessionDAO = playSessionDAO;
         this.statisticsService = statisticsService;
+        this.statisticsStreamService = statisticsStreamService;
+    }
+
+    /**
+     * 订阅统计增量（Server-Sent Events）
+     * 
+     * GET /api/statistics/stream
+     * 
+     * 事件类型：delta（统计增量）、sync（首次连接时的当前位置）、reset（无法续传，需重新获取完整报告）。
+     * 浏览器 EventSource 重连时会自动携带 Last-Event-ID，服务端据此补发错过的增量。
+     * 
+     * @param lastEventId 最后收到的事件ID
+     * @return SSE连接
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDeltas(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return statisticsStreamService.subscribe(lastEventId);
     }
 
     /**
@@ -68,14 +115,14 @@ public class StatisticsController {
      */
     @GetMapping
     public Map<String, Object> getStatistics() {
-        List<Replay> allReplays = replayDAO.findAll();
+        ReplayColumnStore.Summary summary = statisticsService.getOverallSummary();
         List<Game> allGames = gameDAO.findAll();
 
         long totalGames = allGames.size();
-        long totalReplays = allReplays.size();
-        long clearedCount = allReplays.stream().filter(Replay::isCleared).count();
+        long totalReplays = summary.getCount();
+        long clearedCount = summary.getClearCount();
 
-        long totalFrames = allReplays.stream().mapToLong(Replay::getTotalFrames).sum();
+        long totalFrames = summary.getTotalFrames();
         long totalPlayTimeMinutes = totalFrames / 60 / 60;
 
         Map<String, Object> stats = new HashMap<>();
@@ -117,16 +164,13 @@ public class StatisticsController {
      */
     @GetMapping("/playtime")
     public List<Map<String, Object>> getPlayTimeStats() {
-        List<Replay> allReplays = replayDAO.findAll();
-        Map<Integer, List<Replay>> byGame = allReplays.stream().collect(Collectors.groupingBy(Replay::getGameId));
         List<Map<String, Object>> result = new ArrayList<>();
 
-        for (Map.Entry<Integer, List<Replay>> entry : byGame.entrySet()) {
+        for (Map.Entry<Integer, ReplayColumnStore.Summary> entry : statisticsService.getSummaryByGame().entrySet()) {
             int gameId = entry.getKey();
-            List<Replay> gameReplays = entry.getValue();
+            ReplayColumnStore.Summary gameSummary = entry.getValue();
 
-            long totalFrames = gameReplays.stream().mapToLong(Replay::getTotalFrames).sum();
-            long playTimeMinutes = totalFrames / 60 / 60;
+            long playTimeMinutes = gameSummary.getTotalFrames() / 60 / 60;
 
             Game game = gameDAO.findById(gameId).orElse(null);
 
@@ -134,7 +178,7 @@ public class StatisticsController {
             item.put("gameId", gameId);
             item.put("gameName", game != null ? game.getDisplayName() : "未知游戏");
             item.put("playTime", playTimeMinutes);
-            item.put("replayCount", gameReplays.size());
+            item.put("replayCount", gameSummary.getCount());
 
             result.add(item);
         }
@@ -144,6 +188,33 @@ public class StatisticsController {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 按日/周/月获取游玩时间汇总（用于热力图与趋势图）
+     * 
+     * GET /api/statistics/playtime/rollups?granularity=day&from=2024-01-01&to=2024-12-31&gameId=1
+     * 
+     * 数据来自会话结束时增量维护的汇总表，查询开销只与时间范围有关。
+     * 
+     * @param granularity 粒度：day（默认）、week、month
+     * @param from        起始日期（含），默认为结束日期前一年
+     * @param to          结束日期（含），默认为今天
+     * @param gameId      游戏ID，省略时合计所有游戏（gameId 为0）
+     * @return 按时间桶升序排列的汇总，每项包含时间桶起始日期、游玩秒数和会话数
+     */
+    @GetMapping("/playtime/rollups")
+    public List<PlayTimeRollup> getPlayTimeRollups(
+            @RequestParam(defaultValue = PlayTimeRollup.DAY) String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Integer gameId) {
+        if (!PlayTimeRollup.isGranularity(granularity)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的粒度: " + granularity);
+        }
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusYears(1);
+        return playSessionDAO.findRollups(gameId, granularity, start, end);
+    }
+
     /**
      * 获取最高分TOP 20排行
      * 
@@ -153,20 +224,17 @@ public class StatisticsController {
      */
     @GetMapping("/scores")
     public List<Map<String, Object>> getScoreStats() {
-        List<Replay> allReplays = replayDAO.findAll();
-
-        return allReplays.stream().sorted(
-                (a, b) -> Long.compare(b.getTotalScore(), a.getTotalScore())).limit(20).map(replay -> {
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("id", replay.getId());
-                    item.put("gameTitle", replay.getGameTitle());
-                    item.put("PlayerName", replay.getPlayerName());
-                    item.put("difficulty", replay.getDifficulty());
-                    item.put("totalScore", replay.getTotalScore());
-                    item.put("date", replay.getGameDate() != null ? replay.getGameDate().toString() : null);
-
-                    return item;
-                }).collect(Collectors.toList());
+        return replayDAO.findTopScores(20).stream().map(replay -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", replay.getId());
+            item.put("gameTitle", replay.getGameTitle());
+            item.put("PlayerName", replay.getPlayerName());
+            item.put("difficulty", replay.getDifficulty());
+            item.put("totalScore", replay.getTotalScore());
+            item.put("date", replay.getGameDate() != null ? replay.getGameDate().toString() : null);
+
+            return item;
+        }).collect(Collectors.toList());
     }
 
     /**
@@ -184,4 +252,104 @@ public class StatisticsController {
             @PathVariable String difficulty) {
         return statisticsService.generateDifficultyReport(gameId, difficulty);
     }
+
+    /**
+     * 按任意条件组合汇总Replay（在内存列式存储上计算，不访问数据库）
+     * 
+     * GET /api/statistics/query?gameId=1&difficulty=Lunatic&shotType=Reimu A&cleared=true&minScore=&maxScore=
+     * 
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @param shotType   自机（角色+机体，如 "Reimu A"）
+     * @param cleared    是否通关
+     * @param minScore   最低分数（含）
+     * @param maxScore   最高分数（含）
+     * @return 包含数量、通关数、通关率、平均/最高分、总帧数与炸弹数的汇总
+     */
+    @GetMapping("/query")
+    public ReplayColumnStore.Summary query(
+            @RequestParam(required = false) Integer gameId,
+            @RequestParam(required = false) String difficulty,
+            @RequestParam(required = false) String shotType,
+            @RequestParam(required = false) Boolean cleared,
+            @RequestParam(required = false) Long minScore,
+            @RequestParam(required = false) Long maxScore) {
+        return statisticsService.query(
+                new ReplayColumnStore.Filter(gameId, difficulty, shotType, cleared, minScore, maxScore));
+    }
+
+    /**
+     * 获取特定游戏特定难度的分数分布
+     * 
+     * GET /api/statistics/distribution/{gameId}/{difficulty}?shotType=Reimu A&score=
+     * 
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @param shotType   自机（角色+机体），省略时包含所有自机
+     * @param score      分数，给出时返回其百分位排名
+     * @return 包含数量、最小/最大值、p25/中位数/p75/p90/p99的分布
+     */
+    @GetMapping("/distribution/{gameId}/{difficulty}")
+    public ReplayStatisticsService.ScoreDistribution getScoreDistribution(
+            @PathVariable int gameId,
+            @PathVariable String difficulty,
+            @RequestParam(required = false) String shotType,
+            @RequestParam(required = false) Long score) {
+        return statisticsService.getScoreDistribution(gameId, difficulty, shotType, score);
+    }
+
+    /**
+     * 判断分数是否为新的最高分，并给出其在已有记录中的百分位排名
+     * 
+     * GET /api/statistics/high-score/{gameId}/{difficulty}?score=
+     * 
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @param score      分数
+     * @return 是否新纪录、此前最高分与百分位排名（0~100，没有记录时为null）
+     */
+    @GetMapping("/high-score/{gameId}/{difficulty}")
+    public ReplayStatisticsService.HighScoreCheck checkHighScore(
+            @PathVariable int gameId,
+            @PathVariable String difficulty,
+            @RequestParam long score) {
+        return statisticsService.checkHighScore(gameId, difficulty, score);
+    }
+
+    /**
+     * 获取特定游戏特定难度各关卡的得分增量与炸弹使用汇总
+     * 
+     * GET /api/statistics/stages/{gameId}/{difficulty}
+     * 
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @return 按关卡编号排序的汇总统计
+     */
+    @GetMapping("/stages/{gameId}/{difficulty}")
+    public List<StageScoreStat> getStageScoreStats(
+            @PathVariable int gameId,
+            @PathVariable String difficulty) {
+        return statisticsService.getStageScoreStats(gameId, difficulty);
+    }
+
+    /**
+     * 获取特定游戏特定难度指定关卡的平均得分增量
+     * 
+     * GET /api/statistics/stages/{gameId}/{difficulty}/{stageNum}
+     * 
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @param stageNum   关卡编号
+     * @return 包含关卡编号和平均得分增量的Map
+     */
+    @GetMapping("/stages/{gameId}/{difficulty}/{stageNum}")
+    public Map<String, Object> getStageScoreGain(
+            @PathVariable int gameId,
+            @PathVariable String difficulty,
+            @PathVariable int stageNum) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("stageNumber", stageNum);
+        result.put("avgScoreGain", statisticsService.getAverageStageScoreGain(gameId, difficulty, stageNum));
+        return result;
+    }
 }
@@ -1,19 +1,40 @@
 package com.thmanager.dao;
 
+import com.thmanager.config.StartupTimeline;
 import jakarta.annotation.PostConstruct;
-import org.springframework.core.io.ClassPathResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.sql.*;
-
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * 数据库文件的定位与初始化：启动时执行 {@link SchemaMigrator} 中尚未执行的迁移
+ *
+ * 没有其他Bean依赖本类，快速启动模式（全局延迟初始化）下也必须立即创建。
+ */
 @Component
+@Lazy(false)
 public class DatabaseManager {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseManager.class);
     private static final String DB_NAME = "touhou_manager.db";
+    private static final String RESTORE_SUFFIX = ".restore";
+
+    /**
+     * @return 待恢复的数据库文件路径（下次启动时替换当前数据库）
+     */
+    public static Path stagedRestorePath() {
+        return Paths.get(System.getProperty("user.home"), ".touhou-manager", DB_NAME + RESTORE_SUFFIX);
+    }
 
     @PostConstruct
     public void init() {
@@ -29,7 +50,7 @@ public class DatabaseManager {
                 Files.createDirectories(appDir);
             }
         } catch (IOException e) {
-            System.err.println("无法创建目标目录" + e.getMessage());
+            log.error("无法创建目标目录: {}", e.getMessage());
             return DB_NAME;
         }
 
@@ -40,78 +61,37 @@ public class DatabaseManager {
         String dbPath = getDatabasePath();
         String dbUrl = "jdbc:sqlite:" + dbPath;
 
-        System.out.println("Database path: " + dbPath);
+        log.info("Database path: {}", dbPath);
+        applyStagedRestore(Paths.get(dbPath));
 
         try (Connection conn = DriverManager.getConnection(dbUrl)) {
             if (conn != null) {
-                System.out.println("Database connection successful");
-                executeInitScript(conn);
-                executeMigrationScript(conn);
+                log.info("Database connection successful");
+                long start = System.nanoTime();
+                SchemaMigrator.migrate(conn);
+                log.info("Database schema ready in {} ms", (System.nanoTime() - start) / 1_000_000);
             }
         } catch (SQLException e) {
-            System.out.println("Failed to initialize database: " + e.getMessage());
+            log.error("Failed to initialize database: {}", e.getMessage());
         }
+        StartupTimeline.mark("database");
     }
 
-    private void executeInitScript(Connection conn) {
-        try {
-            ClassPathResource resource = new ClassPathResource("database/init.sql");
-            InputStream is = resource.getInputStream();
-            if (is == null) {
-                System.err.println("找不到初始文件!,请检查resources/database/init.sql文件是否存在");
-                return;
-            }
-
-            String sql = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-            String[] statements = sql.split(";");
-
-            for (String stmt : statements) {
-                String trimmed = stmt.trim();
-                if (!trimmed.isEmpty()) {
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(trimmed);
-                    }
-                }
-            }
-
-            System.out.println("Database initialization successful");
-        } catch (Exception e) {
-            System.err.println("Failed to run initialization script: " + e.getMessage());
-            e.printStackTrace();
+    /**
+     * 用备份恢复时暂存的数据库替换当前数据库（在建立任何连接之前）
+     */
+    private void applyStagedRestore(Path dbPath) {
+        Path staged = dbPath.resolveSibling(DB_NAME + RESTORE_SUFFIX);
+        if (!Files.isRegularFile(staged)) {
+            return;
         }
-    }
-
-    private void executeMigrationScript(Connection conn) {
         try {
-            DatabaseMetaData metaData = conn.getMetaData();
-            ResultSet columns = metaData.getColumns(null, null, "replays", "file_modified_time");
-
-            if (!columns.next()) {
-                System.out.println("Executing database migration: adding file_modified_time column");
-
-                ClassPathResource resource = new ClassPathResource("database/migration_add_file_modified_time.sql");
-                InputStream is = resource.getInputStream();
-                if (is == null) {
-                    System.err.println("Migration script not found");
-                    return;
-                }
-
-                String sql = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-
-                try (Statement s = conn.createStatement()) {
-                    s.execute(sql);
-                    System.out.println("Database migration successful");
-                }
-            } else {
-                System.out.println("Database migration already applied");
-            }
-        } catch (SQLException e) {
-            if (!e.getMessage().contains("duplicate column name")) {
-                System.err.println("Migration error: " + e.getMessage());
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to run migration script: " + e.getMessage());
-            e.printStackTrace();
+            // 旧数据库的回滚日志不能应用到恢复后的数据库上
+            Files.deleteIfExists(dbPath.resolveSibling(DB_NAME + "-journal"));
+            Files.move(staged, dbPath, StandardCopyOption.REPLACE_EXISTING);
+            log.info("已从备份恢复数据库");
+        } catch (IOException e) {
+            log.error("恢复数据库失败: {}", e.getMessage());
         }
     }
 }
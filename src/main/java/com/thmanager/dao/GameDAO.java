@@ -11,6 +11,10 @@ import java.util.Optional;
 @Repository
 public class GameDAO {
     private final GameMapper gameMapper;
+    /**
+     * games 表的修改版本号，每次通过本DAO修改后递增，供游戏列表缓存判断是否失效
+     */
+    private final TableVersion version = new TableVersion();
 
     @Autowired
     public GameDAO(GameMapper gameMapper) {
@@ -26,16 +30,31 @@ public class GameDAO {
     }
 
     public boolean update(Game game) {
-        return gameMapper.updateGame(game) > 0;
+        try {
+            return gameMapper.updateGame(game) > 0;
+        } finally {
+            version.markChanged();
+        }
     }
 
     public boolean Delete(int id) {
-        return gameMapper.deleteById(id) > 0;
+        try {
+            return gameMapper.deleteById(id) > 0;
+        } finally {
+            version.markChanged();
+        }
     }
 
     public List<Game> findInstalled() {
         return gameMapper.findInstalled();
     }
+
+    /**
+     * @return games 表的修改版本号
+     */
+    public long version() {
+        return version.get();
+    }
 }
 
 
@@ -1,35 +1,71 @@
 package com.thmanager.dao;
 
 import com.thmanager.mapper.PlaySessionMapper;
+import com.thmanager.mapper.PlayTimeRollupMapper;
 import com.thmanager.model.PlaySession;
+import com.thmanager.model.PlayTimeRollup;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
 public class PlaySessionDAO {
     private final PlaySessionMapper playSessionMapper;
+    private final PlayTimeRollupMapper playTimeRollupMapper;
+    /**
+     * play_sessions 与 play_time_rollups 的修改版本号
+     */
+    private final TableVersion version = new TableVersion();
 
     @Autowired
-    public PlaySessionDAO(PlaySessionMapper playSessionMapper) {
+    public PlaySessionDAO(PlaySessionMapper playSessionMapper, PlayTimeRollupMapper playTimeRollupMapper) {
         this.playSessionMapper = playSessionMapper;
+        this.playTimeRollupMapper = playTimeRollupMapper;
     }
 
     public boolean create(PlaySession session) {
         int result = playSessionMapper.insertSession(session);
+        version.markChanged();
         return result > 0;
     }
 
-    public boolean endSession(int sessionId, LocalDateTime endTime, long durationSeconds) {
-        return playSessionMapper.endSession(sessionId, endTime, durationSeconds) > 0;
+    /**
+     * 写入会话结束时间，并在同一事务中把时长累加到日/周/月汇总
+     *
+     * @param session 已结束的会话（必须包含id、开始与结束时间）
+     * @return 更新是否成功
+     */
+    @Transactional
+    public boolean endSession(PlaySession session) {
+        if (playSessionMapper.endSession(session.getId(), session.getEndTime(), session.getDurationSeconds()) == 0) {
+            return false;
+        }
+        List<PlayTimeRollup> rollups = PlayTimeRollup.listOf(session);
+        if (!rollups.isEmpty()) {
+            playTimeRollupMapper.addRollups(rollups);
+        }
+        version.markChanged();
+        return true;
+    }
+
+    /**
+     * @return play_sessions 与 play_time_rollups 的修改版本号，每次通过本DAO修改后递增
+     */
+    public long version() {
+        return version.get();
     }
 
     public List<PlaySession> findByGameId(int gameId) {
         return playSessionMapper.findByGameId(gameId);
     }
 
+    public List<PlaySession> findAllOrderByGame() {
+        return playSessionMapper.findAllOrderByGame();
+    }
+
     public List<PlaySession> findRecent(int limit) {
         return playSessionMapper.findRecent(limit);
     }
@@ -37,4 +73,21 @@ public class PlaySessionDAO {
     public long getToTotalPlayTimeByGame(int gameId) {
         return playSessionMapper.getTotalPlayTimeByGame(gameId);
     }
+
+    /**
+     * 查询时间范围内的游玩时间汇总
+     *
+     * @param gameId      游戏ID，为null时合计所有游戏
+     * @param granularity 粒度（day、week、month）
+     * @param from        起始日期（含），会对齐到所在时间桶的起始日期
+     * @param to          结束日期（含）
+     * @return 按时间桶升序排列的汇总，没有游玩记录的时间桶不返回
+     */
+    public List<PlayTimeRollup> findRollups(Integer gameId, String granularity, LocalDate from, LocalDate to) {
+        String fromBucket = PlayTimeRollup.bucketOf(from, granularity).toString();
+        if (gameId == null) {
+            return playTimeRollupMapper.sumRange(granularity, fromBucket, to.toString());
+        }
+        return playTimeRollupMapper.findRange(gameId, granularity, fromBucket, to.toString());
+    }
 }
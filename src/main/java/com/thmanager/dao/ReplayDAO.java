@@ -1,9 +1,22 @@
 package com.thmanager.dao;
 
 import com.thmanager.mapper.ReplayMapper;
+import com.thmanager.mapper.ReplayStageMapper;
+import com.thmanager.mapper.ScoreSketchMapper;
 import com.thmanager.model.Replay;
+import com.thmanager.model.ReplayFacetCount;
+import com.thmanager.model.ReplaySearchQuery;
+import com.thmanager.model.ReplayStage;
+import com.thmanager.model.ScoreSketch;
+import com.thmanager.model.StageScoreStat;
+import com.thmanager.model.StatisticsDelta;
+import com.thmanager.util.ImportTrace;
+import org.apache.ibatis.session.ResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -22,37 +35,75 @@ import java.util.Optional;
 @Repository
 public class ReplayDAO {
 
+    private static final Logger log = LoggerFactory.getLogger(ReplayDAO.class);
+
     /**
      * Replay MyBatis Mapper
      */
     private final ReplayMapper replayMapper;
 
+    /**
+     * 单关卡数据 MyBatis Mapper
+     */
+    private final ReplayStageMapper replayStageMapper;
+
+    /**
+     * 分数分布摘要 MyBatis Mapper
+     */
+    private final ScoreSketchMapper scoreSketchMapper;
+
+    /**
+     * replays 与 replay_stages 的修改版本号
+     */
+    private final TableVersion version = new TableVersion();
+
     /**
      * 构造函数，依赖注入ReplayMapper
      * 
-     * @param replayMapper Replay数据库映射器
+     * @param replayMapper      Replay数据库映射器
+     * @param replayStageMapper 单关卡数据映射器
+     * @param scoreSketchMapper 分数分布摘要映射器
      */
     @Autowired
-    public ReplayDAO(ReplayMapper replayMapper) {
+    public ReplayDAO(ReplayMapper replayMapper, ReplayStageMapper replayStageMapper,
+            ScoreSketchMapper scoreSketchMapper) {
         this.replayMapper = replayMapper;
+        this.replayStageMapper = replayStageMapper;
+        this.scoreSketchMapper = scoreSketchMapper;
     }
 
     /**
      * 保存或更新Replay
      * 
-     * 如果Replay文件路径已存在，则更新现有记录；否则创建新记录
+     * 如果Replay文件路径已存在，则更新现有记录；否则创建新记录。
+     * 已完成深度分析的Replay同时重建其单关卡行。
      * 
      * @param replay 要保存或更新的Replay对象
      * @return 操作是否成功
      */
     public boolean saveOrUpdate(Replay replay) {
-        Optional<Replay> existing = findByPath(replay.getFilePath());
+        Optional<Replay> existing;
+        try (ImportTrace.Span span = ImportTrace.span("persist.lookup")) {
+            existing = findByPath(replay.getFilePath());
+        }
+        boolean saved;
         if (existing.isPresent()) {
-            System.out.println("Replay已存在，更新: " + replay.getFilePath());
+            log.debug("Replay已存在，更新: {}", replay.getFilePath());
             replay.setId(existing.get().getId());
-            return update(replay);
+            try (ImportTrace.Span span = ImportTrace.span("persist.update")) {
+                saved = update(replay);
+            }
+        } else {
+            try (ImportTrace.Span span = ImportTrace.span("persist.insert")) {
+                saved = create(replay);
+            }
+        }
+        if (saved && replay.isFullyAnalyzed()) {
+            try (ImportTrace.Span span = ImportTrace.span("persist.stages")) {
+                replaceStages(replay);
+            }
         }
-        return create(replay);
+        return saved;
     }
 
     /**
@@ -64,12 +115,122 @@ public class ReplayDAO {
     public boolean update(Replay replay) {
         int result = replayMapper.updateReplay(replay);
         if (result > 0) {
-            System.out.println("✓ Replay已更新: " + replay.getFileName());
+            version.markChanged();
+            log.debug("Replay已更新: {}", replay.getFileName());
             return true;
         }
         return false;
     }
 
+    /**
+     * 把记录转为指向归档副本（原文件已被同名的新Replay覆盖），释放原路径给新记录
+     *
+     * @param id           Replay ID
+     * @param archivedPath 归档副本路径
+     * @return 更新是否成功
+     */
+    public boolean detachToArchive(int id, String archivedPath) {
+        if (replayMapper.updateFilePath(id, archivedPath) == 0) {
+            return false;
+        }
+        version.markChanged();
+        return true;
+    }
+
+    /**
+     * 补记归档副本的内容哈希
+     *
+     * @param id          Replay ID
+     * @param archiveHash 归档副本的SHA-256
+     */
+    public void updateArchiveHash(int id, String archiveHash) {
+        replayMapper.updateArchiveHash(id, archiveHash);
+    }
+
+    /**
+     * 写入深度分析结果，并在同一事务中重建该Replay的单关卡行
+     * 
+     * @param replay 已完成深度分析的Replay对象（必须包含id）
+     * @return 更新是否成功
+     */
+    @Transactional
+    public boolean updateAnalysis(Replay replay) {
+        if (replayMapper.updateAnalysis(replay) == 0) {
+            return false;
+        }
+        version.markChanged();
+        replaceStages(replay);
+        return true;
+    }
+
+    /**
+     * 用Replay当前的各关卡数据替换 replay_stages 中的对应行
+     * 
+     * @param replay 已完成深度分析的Replay对象（必须包含id）
+     */
+    public void replaceStages(Replay replay) {
+        replayStageMapper.deleteByReplayId(replay.getId());
+        List<ReplayStage> stages = ReplayStage.listOf(replay);
+        if (!stages.isEmpty()) {
+            replayStageMapper.insertStages(stages);
+        }
+        version.markChanged();
+    }
+
+    /**
+     * 某游戏某难度各关卡的得分增量与炸弹使用汇总
+     * 
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @return 按关卡编号排序的汇总统计
+     */
+    public List<StageScoreStat> findStageStats(int gameId, String difficulty) {
+        return replayStageMapper.findStageStats(gameId, difficulty);
+    }
+
+    /**
+     * 某游戏某难度指定关卡的平均得分增量
+     * 
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @param stageNum   关卡编号
+     * @return 平均得分增量，没有数据时返回0
+     */
+    public double averageStageScoreGain(int gameId, String difficulty, int stageNum) {
+        Double avg = replayStageMapper.averageStageScoreGain(gameId, difficulty, stageNum);
+        return avg != null ? avg : 0.0;
+    }
+
+    /**
+     * 计算导入指定Replay后其所在游戏难度的统计增量
+     * 
+     * @param replay 刚导入的Replay（必须包含id）
+     * @return 统计增量，seq 未设置
+     */
+    public StatisticsDelta summarizeDifficulty(Replay replay) {
+        StatisticsDelta delta = replayMapper.summarizeDifficulty(replay);
+        delta.setReplayId(replay.getId());
+        delta.setGameId(replay.getGameId());
+        delta.setDifficulty(replay.getDifficulty());
+        delta.setTotalScore(replay.getTotalScore());
+        delta.setShotType(replay.getFullShotType());
+        delta.setNewBest(delta.getPreviousBest() == null || replay.getTotalScore() > delta.getPreviousBest());
+        delta.setClearRate(delta.getReplayCount() > 0
+                ? (double) delta.getClearCount() / delta.getReplayCount() * 100 : 0.0);
+        return delta;
+    }
+
+    /**
+     * 查找仍处于头部导入阶段、等待深度分析的Replay
+     * 
+     * @param afterId 只返回ID大于该值的记录
+     * @param limit   返回的最大数量
+     * @return 待分析的Replay列表，按ID升序排列
+     */
+    public List<Replay> findPendingAnalysis(int afterId, int limit) {
+        return replayMapper.findByAnalysisStatusWithGameTitle(Replay.ANALYSIS_HEADER, afterId, limit);
+    }
+
     /**
      * 创建新的Replay记录
      * 
@@ -80,15 +241,15 @@ public class ReplayDAO {
         try {
             int result = replayMapper.insertReplay(replay);
             if (result > 0) {
-                System.out.println("✓ Replay已保存: " + replay.getFileName());
+                version.markChanged();
+                log.debug("Replay已保存: {}", replay.getFileName());
                 return true;
             }
         } catch (Exception e) {
             if (e.getMessage() != null && e.getMessage().contains("UNIQUE constraint failed")) {
                 return false;
             }
-            System.err.println("保存Replay失败: " + e.getMessage());
-            e.printStackTrace();
+            log.error("保存Replay失败: {}", replay.getFilePath(), e);
         }
         return false;
     }
@@ -113,6 +274,36 @@ public class ReplayDAO {
         return replayMapper.findByGameIdWithGameTitle(gameId);
     }
 
+    /**
+     * 按游戏ID和难度查找Replay
+     * 
+     * @param gameId     游戏ID
+     * @param difficulty 难度（不区分大小写）
+     * @return 该游戏该难度的Replay列表
+     */
+    public List<Replay> findByGameAndDifficulty(int gameId, String difficulty) {
+        return replayMapper.findByGameAndDifficultyWithGameTitle(gameId, difficulty);
+    }
+
+    /**
+     * 逐行读取统计用的列，供列式存储加载
+     * 
+     * @param handler 每行回调（回调中的Replay只包含统计用的列）
+     */
+    public void scanStatisticsColumns(ResultHandler<Replay> handler) {
+        replayMapper.scanStatisticsColumns(handler);
+    }
+
+    /**
+     * 按游玩会话ID查找Replay
+     * 
+     * @param sessionId 游玩会话ID
+     * @return 该会话中录制的Replay列表
+     */
+    public List<Replay> findBySession(int sessionId) {
+        return replayMapper.findBySessionIdWithGameTitle(sessionId);
+    }
+
     /**
      * 查找指定游戏和难度的最高分Replay
      * 
@@ -134,6 +325,16 @@ public class ReplayDAO {
         return replayMapper.findRecentWithGameTitle(limit);
     }
 
+    /**
+     * 查找全部游戏中分数最高的Replay
+     * 
+     * @param limit 返回的最大数量
+     * @return 按分数降序排列的Replay列表
+     */
+    public List<Replay> findTopScores(int limit) {
+        return replayMapper.findTopScoresWithGameTitle(limit);
+    }
+
     /**
      * 获取所有Replay
      * 
@@ -155,6 +356,26 @@ public class ReplayDAO {
         return replayMapper.findAllWithGameTitlePaged(offset, pageSize);
     }
 
+    /**
+     * 搜索Replay
+     *
+     * @param query 搜索条件与分页
+     * @return 一页搜索结果
+     */
+    public List<Replay> search(ReplaySearchQuery query) {
+        return replayMapper.search(query);
+    }
+
+    /**
+     * 统计搜索结果在各维度上的分布
+     *
+     * @param query 搜索条件
+     * @return 各维度的计数（含 facet 为 total 的总数）
+     */
+    public List<ReplayFacetCount> searchFacets(ReplaySearchQuery query) {
+        return replayMapper.facets(query);
+    }
+
     /**
      * 获取Replay总数
      * 
@@ -180,7 +401,59 @@ public class ReplayDAO {
      * @param id Replay ID
      * @return 删除是否成功
      */
+    @Transactional
     public boolean delete(int id) {
+        replayStageMapper.deleteByReplayId(id);
+        version.markChanged();
         return replayMapper.deleteReplayById(id) > 0;
     }
+
+    /**
+     * @return replays 与 replay_stages 的修改版本号，每次通过本DAO修改后递增
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * 获取全部分数分布摘要
+     * 
+     * @return 摘要列表
+     */
+    public List<ScoreSketch> findAllScoreSketches() {
+        return scoreSketchMapper.findAll();
+    }
+
+    /**
+     * 保存单个分数分布摘要（已存在时覆盖）
+     * 
+     * @param sketch 摘要
+     */
+    public void saveScoreSketch(ScoreSketch sketch) {
+        scoreSketchMapper.upsert(sketch);
+    }
+
+    /**
+     * 删除单个分数分布摘要
+     * 
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @param shotType   自机
+     */
+    public void deleteScoreSketch(int gameId, String difficulty, String shotType) {
+        scoreSketchMapper.delete(gameId, difficulty, shotType);
+    }
+
+    /**
+     * 用新的摘要集合替换全部已保存的摘要
+     * 
+     * @param sketches 摘要列表
+     */
+    @Transactional
+    public void replaceScoreSketches(List<ScoreSketch> sketches) {
+        scoreSketchMapper.deleteAll();
+        for (ScoreSketch sketch : sketches) {
+            scoreSketchMapper.upsert(sketch);
+        }
+    }
 }
@@ -0,0 +1,196 @@
+package com.thmanager.dao;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thmanager.model.Replay;
+import com.thmanager.model.ReplayStage;
+import com.thmanager.model.StageBombView;
+import com.thmanager.model.StageScoreView;
+import com.thmanager.util.JsonCompression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * replays 表存储格式的一次性数据迁移
+ *
+ * 作为 {@link SchemaMigrator} 中对应迁移的Java步骤，在迁移事务中执行，只处理尚未转换的旧数据。
+ */
+final class ReplayStorageMigrations {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayStorageMigrations.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private ReplayStorageMigrations() {
+    }
+
+    /**
+     * 将 raw_json 明文压缩写入 raw_json_compressed 并清空旧列，输出转换前后的JSON体积
+     * （数据库文件由 {@link SchemaMigrator} 在迁移完成后整理）
+     */
+    static void compressRawJson(Connection conn) throws SQLException {
+        long bytesBefore = queryLong(conn, "SELECT COALESCE(SUM(LENGTH(raw_json)), 0) FROM replays");
+        int converted = 0;
+        try (PreparedStatement select = conn.prepareStatement(
+                "SELECT id, raw_json FROM replays WHERE raw_json IS NOT NULL AND id > ? ORDER BY id LIMIT " + BATCH_SIZE);
+             PreparedStatement update = conn.prepareStatement(
+                     "UPDATE replays SET raw_json_compressed = ?, raw_json = NULL WHERE id = ?")) {
+            int lastId = 0;
+            int batch;
+            do {
+                batch = 0;
+                select.setInt(1, lastId);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getInt(1);
+                        update.setBytes(1, JsonCompression.compress(rs.getString(2)));
+                        update.setInt(2, lastId);
+                        update.addBatch();
+                        batch++;
+                    }
+                }
+                update.executeBatch();
+                converted += batch;
+            } while (batch == BATCH_SIZE);
+        }
+
+        if (converted == 0) {
+            return;
+        }
+
+        long bytesAfter = queryLong(conn, "SELECT COALESCE(SUM(LENGTH(raw_json_compressed)), 0) FROM replays");
+        log.info("raw_json compression: {} rows, JSON {} -> {} bytes", converted, bytesBefore, bytesAfter);
+    }
+
+    /**
+     * 将 stage_scores_json / bomb_stats_json 转换为定长二进制编码并清空旧列
+     */
+    static void encodeStageData(Connection conn) throws SQLException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        int converted = 0;
+        try (PreparedStatement select = conn.prepareStatement(
+                "SELECT id, stage_scores_json, bomb_stats_json FROM replays " +
+                        "WHERE (stage_scores_json IS NOT NULL OR bomb_stats_json IS NOT NULL) AND id > ? " +
+                        "ORDER BY id LIMIT " + BATCH_SIZE);
+             PreparedStatement update = conn.prepareStatement(
+                     "UPDATE replays SET stage_scores_bin = ?, bomb_stats_bin = ?, " +
+                             "stage_scores_json = NULL, bomb_stats_json = NULL WHERE id = ?")) {
+            int lastId = 0;
+            int batch;
+            do {
+                batch = 0;
+                select.setInt(1, lastId);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getInt(1);
+                        update.setBytes(1, StageScoreView.encode(readStageScores(objectMapper, rs.getString(2))));
+                        update.setBytes(2, StageBombView.encode(readBombStats(objectMapper, rs.getString(3))));
+                        update.setInt(3, lastId);
+                        update.addBatch();
+                        batch++;
+                    }
+                }
+                update.executeBatch();
+                converted += batch;
+            } while (batch == BATCH_SIZE);
+        }
+
+        if (converted > 0) {
+            log.info("Stage data encoding: {} rows converted to binary", converted);
+        }
+    }
+
+    /**
+     * replay_stages 为空而 replays 中已有关卡数据时，从二进制列展开填充关卡行
+     */
+    static void populateReplayStages(Connection conn) throws SQLException {
+        if (queryLong(conn, "SELECT EXISTS (SELECT 1 FROM replay_stages)") != 0
+                || queryLong(conn, "SELECT EXISTS (SELECT 1 FROM replays WHERE stage_scores_bin IS NOT NULL " +
+                "OR bomb_stats_bin IS NOT NULL)") == 0) {
+            return;
+        }
+
+        int replays = 0;
+        try (Statement select = conn.createStatement();
+             PreparedStatement insert = conn.prepareStatement(
+                     "INSERT OR REPLACE INTO replay_stages (replay_id, stage_num, score, z_bombs, x_bombs, " +
+                             "start_frame, end_frame) VALUES (?, ?, ?, ?, ?, ?, ?)");
+             ResultSet rs = select.executeQuery("SELECT id, stage_scores_bin, bomb_stats_bin FROM replays " +
+                     "WHERE stage_scores_bin IS NOT NULL OR bomb_stats_bin IS NOT NULL")) {
+            Replay replay = new Replay();
+            while (rs.next()) {
+                replay.setId(rs.getInt(1));
+                replay.setStageScoresBin(rs.getBytes(2));
+                replay.setBombStatsBin(rs.getBytes(3));
+                for (ReplayStage stage : ReplayStage.listOf(replay)) {
+                    insert.setInt(1, stage.getReplayId());
+                    insert.setInt(2, stage.getStageNum());
+                    insert.setObject(3, stage.getScore());
+                    insert.setInt(4, stage.getZBombs());
+                    insert.setInt(5, stage.getXBombs());
+                    insert.setInt(6, stage.getStartFrame());
+                    insert.setInt(7, stage.getEndFrame());
+                    insert.addBatch();
+                }
+                if (++replays % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+
+        log.info("Replay stages populated for {} replays", replays);
+    }
+
+    private static List<Long> readStageScores(ObjectMapper objectMapper, String json) {
+        JsonNode node = readTree(objectMapper, json);
+        if (node == null || !node.isArray()) {
+            return null;
+        }
+        List<Long> scores = new ArrayList<>(node.size());
+        for (JsonNode score : node) {
+            scores.add(score.asLong());
+        }
+        return scores;
+    }
+
+    private static List<Replay.StageBombStats> readBombStats(ObjectMapper objectMapper, String json) {
+        JsonNode node = readTree(objectMapper, json);
+        if (node == null || !node.isArray()) {
+            return null;
+        }
+        List<Replay.StageBombStats> list = new ArrayList<>(node.size());
+        for (JsonNode stageNode : node) {
+            Replay.StageBombStats stats = new Replay.StageBombStats();
+            stats.stageNum = stageNode.path("stage").asInt(0);
+            stats.zCount = stageNode.path("z_count").asInt(0);
+            stats.xCount = stageNode.path("x_count").asInt(0);
+            stats.startFrame = stageNode.path("start_frame").asInt(0);
+            stats.endFrame = stageNode.path("end_frame").asInt(0);
+            list.add(stats);
+        }
+        return list;
+    }
+
+    private static JsonNode readTree(ObjectMapper objectMapper, String json) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static long queryLong(Connection conn, String sql) throws SQLException {
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.thmanager.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 数据库结构迁移
+ *
+ * 迁移脚本位于 classpath:database/migrations，文件名为 V{版本}__{名称}.sql，按 {@link #MIGRATIONS} 中的版本依次执行；
+ * 部分迁移在脚本之后还有一步Java数据转换（或只有Java步骤）。每个迁移连同 schema_version 记录在同一事务中提交，
+ * 失败则回滚并停止执行后续迁移。
+ *
+ * 启动时只查询 schema_version 的最大版本号，已是最新时不读取任何脚本，启动耗时与迁移数量无关。
+ * 有待执行的迁移时（升级后首次启动）先核对已执行脚本的SHA-256，内容被修改过的记录警告。
+ *
+ * 引入本机制之前创建的数据库没有 schema_version：基线脚本全部为 IF NOT EXISTS，重新执行一次；
+ * 以前按 replays 列是否存在来判断的迁移，列已存在时只执行脚本中的 CREATE INDEX（均为 IF NOT EXISTS）并记为已执行，
+ * 列可能来自更早的 init.sql，那时并没有建立对应的索引。
+ */
+public final class SchemaMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final String LOCATION = "database/migrations/";
+
+    private static final Pattern INDEX_DEFINITION = Pattern.compile("CREATE\\s+(UNIQUE\\s+)?INDEX\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 全部迁移，版本号递增；已发布的迁移不能修改，只能追加
+     */
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "baseline", true, null, null, false),
+            new Migration(2, "add_file_modified_time", true, null, "file_modified_time", false),
+            new Migration(3, "add_analysis_status", true, null, "analysis_status", false),
+            new Migration(4, "compress_raw_json", true, ReplayStorageMigrations::compressRawJson,
+                    "raw_json_compressed", true),
+            new Migration(5, "add_stage_binary", true, ReplayStorageMigrations::encodeStageData,
+                    "stage_scores_bin", false),
+            new Migration(6, "add_archive_hash", true, null, "archive_hash", false),
+            new Migration(7, "populate_replay_stages", false, ReplayStorageMigrations::populateReplayStages,
+                    null, false),
+            new Migration(8, "populate_play_time_rollups", false, SessionStorageMigrations::populatePlayTimeRollups,
+                    null, false),
+            new Migration(9, "replay_search_index", true, null, null, false),
+            new Migration(10, "clear_missing_stage_scores", true, null, null, false),
+            new Migration(11, "ensure_replay_indexes", true, null, null, false),
+            new Migration(12, "attribute_replays_to_sessions", true, null, null, false),
+            new Migration(13, "difficulty_nocase_indexes", true, null, null, false),
+            new Migration(14, "guard_search_index_triggers", true, null, null, false));
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * 执行尚未执行的迁移
+     *
+     * @throws SQLException 某个迁移执行失败（该迁移已回滚，之前的迁移保持已提交）
+     */
+    public static void migrate(Connection conn) throws SQLException {
+        int latest = MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+        Set<String> tables = new HashSet<>();
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery("SELECT name FROM sqlite_master WHERE type = 'table' " +
+                     "AND name IN ('schema_version', 'replays')")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+
+        boolean legacy = false;
+        if (tables.contains("schema_version")) {
+            int current = queryInt(conn, "SELECT COALESCE(MAX(version), 0) FROM schema_version");
+            if (current >= latest) {
+                if (current > latest) {
+                    log.warn("Database schema version {} is newer than this application ({})", current, latest);
+                }
+                return;
+            }
+        } else {
+            legacy = tables.contains("replays");
+            try (Statement s = conn.createStatement()) {
+                s.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INTEGER PRIMARY KEY, " +
+                        "name TEXT NOT NULL, " +
+                        "checksum TEXT, " +
+                        "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "execution_ms INTEGER)");
+            }
+        }
+
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+
+        boolean compact = false;
+        for (Migration migration : MIGRATIONS) {
+            String script = migration.hasScript() ? loadScript(migration) : null;
+            String checksum = script == null ? null : sha256(script);
+            if (applied.containsKey(migration.version())) {
+                String recorded = applied.get(migration.version());
+                if (recorded != null && !recorded.equals(checksum)) {
+                    log.warn("Migration V{} {} has changed since it was applied", migration.version(),
+                            migration.name());
+                }
+                continue;
+            }
+            if (legacy && migration.legacyColumn() != null && hasReplayColumn(conn, migration.legacyColumn())) {
+                apply(conn, migration, script, checksum, true);
+                continue;
+            }
+            apply(conn, migration, script, checksum, false);
+            compact |= migration.compacts();
+        }
+
+        if (compact) {
+            long before = databaseFileSize(conn);
+            try (Statement s = conn.createStatement()) {
+                s.execute("VACUUM");
+            }
+            log.info("Database compacted: {} -> {} bytes", before, databaseFileSize(conn));
+        }
+    }
+
+    /**
+     * 在一个事务中执行迁移并写入 schema_version
+     *
+     * @param adopt 迁移内容已存在于旧数据库中：只执行脚本里的索引定义，不执行其余语句和Java步骤
+     */
+    private static void apply(Connection conn, Migration migration, String script, String checksum, boolean adopt)
+            throws SQLException {
+        long start = System.nanoTime();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            if (script != null) {
+                try (Statement s = conn.createStatement()) {
+                    for (String sql : SqlScript.split(script)) {
+                        if (!adopt || INDEX_DEFINITION.matcher(sql).lookingAt()) {
+                            s.execute(sql);
+                        }
+                    }
+                }
+            }
+            if (!adopt && migration.step() != null) {
+                migration.step().apply(conn);
+            }
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            record(conn, migration, checksum, adopt ? 0 : elapsed);
+            conn.commit();
+            if (adopt) {
+                log.info("Migration V{} {} already present, marked as applied", migration.version(),
+                        migration.name());
+            } else {
+                log.info("Applied migration V{} {} in {} ms", migration.version(), migration.name(), elapsed);
+            }
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            log.error("Migration V{} {} failed: {}", migration.version(), migration.name(), e.getMessage());
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void record(Connection conn, Migration migration, String checksum, long elapsedMillis)
+            throws SQLException {
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO schema_version (version, name, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+            insert.setInt(1, migration.version());
+            insert.setString(2, migration.name());
+            insert.setString(3, checksum);
+            insert.setLong(4, elapsedMillis);
+            insert.executeUpdate();
+        }
+    }
+
+    private static String loadScript(Migration migration) throws SQLException {
+        String path = LOCATION + "V" + migration.version() + "__" + migration.name() + ".sql";
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new SQLException("Migration script not found: " + path);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read migration script: " + path, e);
+        }
+    }
+
+    private static boolean hasReplayColumn(Connection conn, String column) throws SQLException {
+        try (ResultSet columns = conn.getMetaData().getColumns(null, null, "replays", column)) {
+            return columns.next();
+        }
+    }
+
+    private static String sha256(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long databaseFileSize(Connection conn) throws SQLException {
+        return (long) queryInt(conn, "PRAGMA page_count") * queryInt(conn, "PRAGMA page_size");
+    }
+
+    private static int queryInt(Connection conn, String sql) throws SQLException {
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 迁移中的Java步骤，在脚本之后、同一事务中执行
+     */
+    @FunctionalInterface
+    interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    /**
+     * @param version      版本号
+     * @param name         名称（脚本文件名中 __ 之后的部分）
+     * @param hasScript    是否有SQL脚本
+     * @param step         脚本之后的Java步骤，可为null
+     * @param legacyColumn 以前按 replays 中该列是否存在来判断的迁移，可为null
+     * @param compacts     执行后需要整理数据库文件（VACUUM 不能在事务中执行，在全部迁移完成后进行）
+     */
+    private record Migration(int version, String name, boolean hasScript, Step step, String legacyColumn,
+                             boolean compacts) {
+    }
+}
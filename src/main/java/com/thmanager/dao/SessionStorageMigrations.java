@@ -0,0 +1,79 @@
+package com.thmanager.dao;
+
+import com.thmanager.model.PlaySession;
+import com.thmanager.model.PlayTimeRollup;
+import com.thmanager.util.SqliteDateTimes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * play_sessions 相关派生数据的一次性填充
+ *
+ * 作为 {@link SchemaMigrator} 中对应迁移的Java步骤，在迁移事务中执行，只在派生表为空时填充。
+ */
+final class SessionStorageMigrations {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionStorageMigrations.class);
+
+    private SessionStorageMigrations() {
+    }
+
+    /**
+     * play_time_rollups 为空而已有结束的会话时，按全部历史会话生成日/周/月汇总
+     */
+    static void populatePlayTimeRollups(Connection conn) throws SQLException {
+        if (queryLong(conn, "SELECT EXISTS (SELECT 1 FROM play_time_rollups)") != 0
+                || queryLong(conn, "SELECT EXISTS (SELECT 1 FROM play_sessions WHERE end_time IS NOT NULL)") == 0) {
+            return;
+        }
+
+        Map<String, PlayTimeRollup> totals = new LinkedHashMap<>();
+        int sessions = 0;
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT game_id, start_time, end_time FROM play_sessions " +
+                     "WHERE end_time IS NOT NULL")) {
+            PlaySession session = new PlaySession();
+            while (rs.next()) {
+                session.setGameId(rs.getInt(1));
+                session.setStartTime(SqliteDateTimes.parse(rs.getString(2)));
+                session.setEndTime(SqliteDateTimes.parse(rs.getString(3)));
+                for (PlayTimeRollup rollup : PlayTimeRollup.listOf(session)) {
+                    PlayTimeRollup total = totals.putIfAbsent(rollup.getGranularity() + rollup.getBucketStart()
+                            + '#' + rollup.getGameId(), rollup);
+                    if (total != null) {
+                        total.setSeconds(total.getSeconds() + rollup.getSeconds());
+                        total.setSessionCount(total.getSessionCount() + rollup.getSessionCount());
+                    }
+                }
+                sessions++;
+            }
+        }
+
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO play_time_rollups (game_id, granularity, bucket_start, seconds, session_count) " +
+                        "VALUES (?, ?, ?, ?, ?)")) {
+            for (PlayTimeRollup rollup : totals.values()) {
+                insert.setInt(1, rollup.getGameId());
+                insert.setString(2, rollup.getGranularity());
+                insert.setString(3, rollup.getBucketStart());
+                insert.setLong(4, rollup.getSeconds());
+                insert.setInt(5, rollup.getSessionCount());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        log.info("Play time rollups populated from {} sessions", sessions);
+    }
+
+    private static long queryLong(Connection conn, String sql) throws SQLException {
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
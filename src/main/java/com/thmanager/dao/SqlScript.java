@@ -0,0 +1,94 @@
+package com.thmanager.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 把SQL脚本切分为单条语句
+ *
+ * 按分号切分，但跳过字符串、带引号的标识符与注释中的分号（游戏简介等文本里可能出现分号）；
+ * CREATE TRIGGER 的 BEGIN ... END 块（包括其中的 CASE ... END）作为一条语句。注释不会出现在结果中。
+ */
+final class SqlScript {
+
+    private SqlScript() {
+    }
+
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        boolean trigger = false;
+        int depth = 0;
+        int wordIndex = 0;
+        int length = script.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = script.charAt(i);
+
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                word.append(c);
+                current.append(c);
+                continue;
+            }
+            if (!word.isEmpty()) {
+                // 关键字只在引号和注释之外统计
+                String keyword = word.toString().toUpperCase(Locale.ROOT);
+                if (wordIndex == 1 && keyword.equals("TRIGGER")
+                        || wordIndex == 2 && keyword.equals("TRIGGER") && isTemp(current)) {
+                    trigger = true;
+                } else if (trigger && (keyword.equals("BEGIN") || keyword.equals("CASE"))) {
+                    depth++;
+                } else if (trigger && keyword.equals("END")) {
+                    depth--;
+                }
+                wordIndex++;
+                word.setLength(0);
+            }
+
+            if (c == '-' && i + 1 < length && script.charAt(i + 1) == '-') {
+                while (i < length && script.charAt(i) != '\n') {
+                    i++;
+                }
+                current.append('\n');
+            } else if (c == '/' && i + 1 < length && script.charAt(i + 1) == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+                current.append(' ');
+            } else if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                // 两个连续的引号（转义）相当于结束后立即开始新的一段，结果相同
+                char close = c == '[' ? ']' : c;
+                int end = script.indexOf(close, i + 1);
+                end = end < 0 ? length - 1 : end;
+                current.append(script, i, end + 1);
+                i = end;
+            } else if (c == ';' && depth <= 0) {
+                String statement = current.toString().trim();
+                if (!statement.isEmpty()) {
+                    statements.add(statement);
+                }
+                current.setLength(0);
+                trigger = false;
+                depth = 0;
+                wordIndex = 0;
+            } else {
+                current.append(c);
+            }
+        }
+
+        String last = current.toString().trim();
+        if (!last.isEmpty()) {
+            statements.add(last);
+        }
+        return statements;
+    }
+
+    /**
+     * @return 当前语句是否以 CREATE TEMP / CREATE TEMPORARY 开头
+     */
+    private static boolean isTemp(StringBuilder current) {
+        String head = current.toString().trim().toUpperCase(Locale.ROOT);
+        return head.matches("CREATE\\s+TEMP(ORARY)?\\s+TRIGGER");
+    }
+}
@@ -0,0 +1,41 @@
+package com.thmanager.dao;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 表内容的修改版本号
+ *
+ * DAO 每次写入后调用 {@link #markChanged()}，缓存（游戏列表、统计接口的ETag）以版本号判断是否失效。
+ * 在事务中写入时推迟到提交之后递增，保证读到新版本号的请求一定能读到新数据；回滚则不递增。
+ * 版本号只在进程内有效，重启后从0开始。
+ */
+public final class TableVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 标记表内容已修改
+     */
+    public void markChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        } else {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return 当前版本号
+     */
+    public long get() {
+        return version.get();
+    }
+}
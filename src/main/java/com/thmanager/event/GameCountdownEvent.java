@@ -0,0 +1,12 @@
+package com.thmanager.event;
+
+import com.thmanager.model.Game;
+
+/**
+ * 启动倒计时事件，每秒发布一次，剩余0秒表示倒计时结束、即将启动
+ *
+ * @param game        即将启动的游戏
+ * @param secondsLeft 剩余秒数
+ */
+public record GameCountdownEvent(Game game, int secondsLeft) {
+}
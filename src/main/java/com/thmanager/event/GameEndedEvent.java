@@ -0,0 +1,16 @@
+package com.thmanager.event;
+
+import com.thmanager.model.Game;
+
+import java.time.LocalDateTime;
+
+/**
+ * 游戏进程结束、会话写入数据库后发布的事件
+ *
+ * @param game            结束的游戏
+ * @param sessionId       结束的游玩会话ID
+ * @param endTime         会话结束时间
+ * @param durationSeconds 本次会话时长（秒）
+ */
+public record GameEndedEvent(Game game, int sessionId, LocalDateTime endTime, long durationSeconds) {
+}
@@ -0,0 +1,15 @@
+package com.thmanager.event;
+
+import com.thmanager.model.Game;
+
+import java.time.LocalDateTime;
+
+/**
+ * 游戏进程启动后发布的事件
+ *
+ * @param game      启动的游戏
+ * @param sessionId 对应的游玩会话ID
+ * @param startTime 会话开始时间
+ */
+public record GameStartedEvent(Game game, int sessionId, LocalDateTime startTime) {
+}
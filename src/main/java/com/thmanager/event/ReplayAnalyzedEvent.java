@@ -0,0 +1,11 @@
+package com.thmanager.event;
+
+import com.thmanager.model.Replay;
+
+/**
+ * Replay完成深度分析（各关卡得分与炸弹统计已写入数据库）后发布的事件
+ *
+ * @param replay 已完成深度分析的Replay
+ */
+public record ReplayAnalyzedEvent(Replay replay) {
+}
@@ -0,0 +1,12 @@
+package com.thmanager.event;
+
+import com.thmanager.model.Replay;
+
+/**
+ * Replay记录被删除后发布的事件
+ *
+ * @param replayId 被删除的Replay ID
+ * @param replay   被删除的记录（删除前读取）
+ */
+public record ReplayDeletedEvent(int replayId, Replay replay) {
+}
@@ -0,0 +1,19 @@
+package com.thmanager.event;
+
+import com.thmanager.model.Replay;
+
+/**
+ * Replay完成头部导入（新文件或被覆盖的文件）后发布的事件
+ *
+ * @param replay   已写入数据库的Replay
+ * @param previous 被覆盖的原记录（覆盖前读取），新文件为null
+ */
+public record ReplayImportedEvent(Replay replay, Replay previous) {
+
+    /**
+     * @return 是否为覆盖已有记录
+     */
+    public boolean updated() {
+        return previous != null;
+    }
+}
@@ -0,0 +1,9 @@
+package com.thmanager.event;
+
+/**
+ * Replay监控/扫描过程中的状态消息
+ *
+ * @param message 状态描述
+ */
+public record ScanProgressEvent(String message) {
+}
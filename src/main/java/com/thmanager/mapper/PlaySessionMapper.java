@@ -12,7 +12,8 @@ public interface PlaySessionMapper extends BaseMapper<PlaySession> {
 
     @Insert("INSERT INTO play_sessions (game_id, start_time, end_time, duration_seconds, session_type, note) " +
             "VALUES (#{gameId}, #{startTime}, #{endTime}, #{durationSeconds}, #{sessionType}, #{note})")
-    @Options(useGeneratedKeys = true, keyProperty = "id")
+    // sqlite-jdbc 3.43 起不再支持 getGeneratedKeys，改为插入后在同一连接上读取 last_insert_rowid()
+    @SelectKey(statement = "SELECT last_insert_rowid()", keyProperty = "id", before = false, resultType = int.class)
     int insertSession(PlaySession session);
 
     @Update("UPDATE play_sessions SET end_time = #{endTime}, duration_seconds = #{durationSeconds} WHERE id = #{sessionId}")
@@ -21,6 +22,10 @@ public interface PlaySessionMapper extends BaseMapper<PlaySession> {
     @Select("SELECT * FROM play_sessions WHERE game_id = #{gameId} ORDER BY start_time DESC")
     List<PlaySession> findByGameId(@Param("gameId") int gameId);
 
+    // 按 (game_id, start_time) 索引顺序读取，供会话区间索引加载使用
+    @Select("SELECT * FROM play_sessions ORDER BY game_id, start_time")
+    List<PlaySession> findAllOrderByGame();
+
     @Select("SELECT * FROM play_sessions ORDER BY start_time DESC LIMIT #{limit}")
     List<PlaySession> findRecent(@Param("limit") int limit);
 
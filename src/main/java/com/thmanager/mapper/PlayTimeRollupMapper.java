@@ -0,0 +1,57 @@
+package com.thmanager.mapper;
+
+import com.thmanager.model.PlayTimeRollup;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+/**
+ * 游玩时间汇总 MyBatis Mapper接口
+ *
+ * play_time_rollups 以 (granularity, bucket_start, game_id) 为主键，
+ * 按时间范围查询只扫描范围内的时间桶，与会话历史长度无关。
+ */
+@Mapper
+public interface PlayTimeRollupMapper {
+
+    /**
+     * 将增量累加到对应时间桶，时间桶不存在时插入
+     *
+     * @param rollups 时间桶增量
+     * @return 影响的行数
+     */
+    @Insert("<script>INSERT INTO play_time_rollups (game_id, granularity, bucket_start, seconds, session_count) " +
+            "VALUES <foreach collection='rollups' item='r' separator=','>" +
+            "(#{r.gameId}, #{r.granularity}, #{r.bucketStart}, #{r.seconds}, #{r.sessionCount})" +
+            "</foreach> ON CONFLICT (granularity, bucket_start, game_id) DO UPDATE SET " +
+            "seconds = seconds + excluded.seconds, session_count = session_count + excluded.session_count</script>")
+    int addRollups(@Param("rollups") List<PlayTimeRollup> rollups);
+
+    /**
+     * 查询某游戏在时间范围内的时间桶
+     *
+     * @param gameId      游戏ID
+     * @param granularity 粒度
+     * @param from        起始日期（含，yyyy-MM-dd）
+     * @param to          结束日期（含，yyyy-MM-dd）
+     * @return 按时间桶升序排列的汇总
+     */
+    @Select("SELECT * FROM play_time_rollups WHERE granularity = #{granularity} " +
+            "AND bucket_start BETWEEN #{from} AND #{to} AND game_id = #{gameId} ORDER BY bucket_start")
+    List<PlayTimeRollup> findRange(@Param("gameId") int gameId, @Param("granularity") String granularity,
+                                   @Param("from") String from, @Param("to") String to);
+
+    /**
+     * 查询所有游戏在时间范围内的时间桶合计（game_id 为0）
+     *
+     * @param granularity 粒度
+     * @param from        起始日期（含，yyyy-MM-dd）
+     * @param to          结束日期（含，yyyy-MM-dd）
+     * @return 按时间桶升序排列的汇总
+     */
+    @Select("SELECT 0 AS game_id, granularity, bucket_start, SUM(seconds) AS seconds, " +
+            "SUM(session_count) AS session_count FROM play_time_rollups WHERE granularity = #{granularity} " +
+            "AND bucket_start BETWEEN #{from} AND #{to} GROUP BY bucket_start ORDER BY bucket_start")
+    List<PlayTimeRollup> sumRange(@Param("granularity") String granularity,
+                                  @Param("from") String from, @Param("to") String to);
+}
@@ -2,7 +2,11 @@ package com.thmanager.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.thmanager.model.Replay;
+import com.thmanager.model.ReplayFacetCount;
+import com.thmanager.model.ReplaySearchQuery;
+import com.thmanager.model.StatisticsDelta;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 import java.util.Optional;
@@ -19,13 +23,23 @@ import java.util.Optional;
 @Mapper
 public interface ReplayMapper extends BaseMapper<Replay> {
 
+    /**
+     * 列表查询使用的列（不含原始JSON，压缩数据只在按ID查询详情时读取；
+     * 时间列按原始文本读取，由 {@link Replay} 在首次访问时解析）
+     */
+    String LIST_COLUMNS = "r.id, r.game_id, r.file_name, r.file_path, r.file_size, r.file_modified_time, r.archive_hash, " +
+            "r.game_version, r.character, r.shot_type, r.difficulty, r.stage, r.cleared, r.total_score, " +
+            "r.game_date AS game_date_text, r.player_name, r.slow_rate, r.total_frames, " +
+            "r.stage_scores_bin, r.bomb_stats_bin, r.total_z_bombs, r.total_x_bombs, r.total_c_bombs, " +
+            "r.analysis_status, r.session_id, r.imported_at AS imported_at_text, g.title_zh as game_title";
+
     /**
      * 通过文件路径获取Replay数据（包含游戏标题）
      *  
      * @param filePath Replay文件完整路径
      * @return 包含Replay的Optional对象
      */
-    @Select("SELECT r.*, g.title_zh as game_title FROM replays r " +
+    @Select("SELECT " + LIST_COLUMNS + " FROM replays r " +
             "JOIN games g ON r.game_id = g.id WHERE r.file_path = #{filePath}")
             
     Optional<Replay> findByPathWithGameTitle(@Param("filePath") String filePath);
@@ -36,11 +50,45 @@ public interface ReplayMapper extends BaseMapper<Replay> {
      * @param gameId 游戏ID
      * @return 该游戏的Replay列表，按导入时间降序排列
      */
-    @Select("SELECT r.*, g.title_zh as game_title FROM replays r " +
+    @Select("SELECT " + LIST_COLUMNS + " FROM replays r " +
             "JOIN games g ON r.game_id = g.id WHERE r.game_id = #{gameId} " +
             "ORDER BY r.imported_at DESC")
     List<Replay> findByGameIdWithGameTitle(@Param("gameId") int gameId);
 
+    /**
+     * 通过游戏ID和难度获取Replay列表（包含游戏标题，难度不区分大小写）
+     * 
+     * @param gameId 游戏ID
+     * @param difficulty 难度
+     * @return 该游戏该难度的Replay列表
+     */
+    @Select("SELECT " + LIST_COLUMNS + " FROM replays r " +
+            "JOIN games g ON r.game_id = g.id WHERE r.game_id = #{gameId} " +
+            "AND r.difficulty = #{difficulty} COLLATE NOCASE ORDER BY r.imported_at DESC")
+    List<Replay> findByGameAndDifficultyWithGameTitle(@Param("gameId") int gameId,
+            @Param("difficulty") String difficulty);
+
+    /**
+     * 逐行读取列式统计存储所需的列（不JOIN、不生成列表）
+     * 
+     * @param handler 每行回调
+     */
+    @Select("SELECT id, game_id, character, shot_type, difficulty, stage, cleared, total_score, total_frames, " +
+            "total_z_bombs, total_x_bombs, bomb_stats_bin FROM replays")
+    @ResultType(Replay.class)
+    void scanStatisticsColumns(ResultHandler<Replay> handler);
+
+    /**
+     * 通过游玩会话ID获取Replay列表（包含游戏标题）
+     * 
+     * @param sessionId 游玩会话ID
+     * @return 该会话中录制的Replay列表，按文件修改时间升序排列
+     */
+    @Select("SELECT " + LIST_COLUMNS + " FROM replays r " +
+            "JOIN games g ON r.game_id = g.id WHERE r.session_id = #{sessionId} " +
+            "ORDER BY r.file_modified_time")
+    List<Replay> findBySessionIdWithGameTitle(@Param("sessionId") int sessionId);
+
     /**
      * 通过游戏ID和难度找到对应最高分Replay（包含游戏标题）
      * 
@@ -48,9 +96,9 @@ public interface ReplayMapper extends BaseMapper<Replay> {
      * @param difficulty 难度
      * @return 包含最高分Replay的Optional对象
      */
-            @Select("SELECT r.*, g.title_zh as game_title FROM replays r " +
+            @Select("SELECT " + LIST_COLUMNS + " FROM replays r " +
             "JOIN games g ON r.game_id = g.id " +
-            "WHERE r.game_id = #{gameId} AND r.difficulty = #{difficulty} " +
+            "WHERE r.game_id = #{gameId} AND r.difficulty = #{difficulty} COLLATE NOCASE " +
              "ORDER BY r.total_score DESC LIMIT 1")
     Optional<Replay> findBestByDifficultyWithGameTitle(@Param("gameId") int gameId, @Param("difficulty") String difficulty);
 
@@ -60,17 +108,28 @@ public interface ReplayMapper extends BaseMapper<Replay> {
      * @param limit 返回的最大数量
      * @return 最近导入的Replay列表
      */
-    @Select("SELECT r.*, g.title_zh as game_title FROM replays r " +
+    @Select("SELECT " + LIST_COLUMNS + " FROM replays r " +
             "JOIN games g ON r.game_id = g.id " +
             "ORDER BY r.imported_at DESC LIMIT #{limit}")
     List<Replay> findRecentWithGameTitle(@Param("limit") int limit);
 
+    /**
+     * 查找全部游戏中分数最高的记录（包含游戏标题）
+     *
+     * @param limit 返回的最大数量
+     * @return 按分数降序排列的Replay列表
+     */
+    @Select("SELECT " + LIST_COLUMNS + " FROM replays r " +
+            "JOIN games g ON r.game_id = g.id " +
+            "ORDER BY r.total_score DESC LIMIT #{limit}")
+    List<Replay> findTopScoresWithGameTitle(@Param("limit") int limit);
+
     /**
      * 找到所有的游戏记录（包含游戏标题）
      * 
      *  @return 所有Replay列表，按导入时间降序排列
      */
-    @Select("SELECT r.*, g.title_zh as game_title FROM replays r " +
+    @Select("SELECT " + LIST_COLUMNS + " FROM replays r " +
             "JOIN games g ON r.game_id = g.id " +
             "ORDER BY r.imported_at DESC")
             
@@ -84,6 +143,61 @@ public interface ReplayMapper extends BaseMapper<Replay> {
     @Select("SELECT COUNT(*) FROM replays")
     int countAll();
 
+    /**
+     * 自机（角色+机体）的SQL表达式，与 {@link Replay#getFullShotType()} 一致
+     */
+    String FULL_SHOT_TYPE = "CASE WHEN r.character IS NULL THEN 'Unknown' " +
+            "WHEN r.shot_type IS NULL OR r.shot_type = '' THEN r.character " +
+            "ELSE r.character || ' ' || r.shot_type END";
+
+    /**
+     * 搜索条件（参数为 {@link ReplaySearchQuery}），关键词先在 replays_fts 中定位ID，再按主键回表过滤
+     */
+    String SEARCH_FILTER = "<where>" +
+            "<if test='match != null'>r.id IN (SELECT rowid FROM replays_fts WHERE replays_fts MATCH #{match})</if>" +
+            "<foreach collection='shortTerms' item='term'>" +
+            " AND r.id IN (SELECT rowid FROM replays_fts WHERE player_name LIKE #{term} ESCAPE '\\' " +
+            "OR character LIKE #{term} ESCAPE '\\' OR shot_type LIKE #{term} ESCAPE '\\' " +
+            "OR file_name LIKE #{term} ESCAPE '\\' OR game_title LIKE #{term} ESCAPE '\\')" +
+            "</foreach>" +
+            "<if test='gameId != null'> AND r.game_id = #{gameId}</if>" +
+            "<if test='difficulty != null'> AND r.difficulty = #{difficulty} COLLATE NOCASE</if>" +
+            "<if test='character != null'> AND r.character = #{character} COLLATE NOCASE</if>" +
+            "<if test='shot != null'> AND " + FULL_SHOT_TYPE + " = #{shot} COLLATE NOCASE</if>" +
+            "<if test='cleared != null'> AND r.cleared = #{cleared}</if>" +
+            "<if test='year != null'> AND substr(r.game_date, 1, 4) = #{year}</if>" +
+            "</where>";
+
+    /**
+     * 搜索Replay（包含游戏标题）
+     *
+     * @param query 搜索条件与分页
+     * @return 按导入顺序倒序的一页结果
+     */
+    @Select("<script>SELECT " + LIST_COLUMNS + " FROM replays r " +
+            "JOIN games g ON r.game_id = g.id " + SEARCH_FILTER +
+            " ORDER BY r.id DESC LIMIT #{offset}, #{limit}</script>")
+    List<Replay> search(ReplaySearchQuery query);
+
+    /**
+     * 搜索结果按游戏、难度、自机、是否通关的计数，以及总数（facet 为 total 的一行）
+     *
+     * 匹配的行只筛选一次（物化的CTE），各维度在同一条语句中分组计数。
+     *
+     * @param query 搜索条件（忽略分页）
+     * @return 各维度的计数
+     */
+    @Select("<script>WITH m AS MATERIALIZED (SELECT r.game_id, r.difficulty, " + FULL_SHOT_TYPE + " AS shot, " +
+            "r.cleared FROM replays r " + SEARCH_FILTER + ") " +
+            "SELECT 'total' AS facet, NULL AS value, NULL AS label, COUNT(*) AS count FROM m " +
+            "UNION ALL SELECT 'game', CAST(game_id AS TEXT), (SELECT title_zh FROM games WHERE id = m.game_id), " +
+            "COUNT(*) FROM m GROUP BY game_id " +
+            "UNION ALL SELECT 'difficulty', difficulty, difficulty, COUNT(*) FROM m GROUP BY difficulty " +
+            "UNION ALL SELECT 'shot', shot, shot, COUNT(*) FROM m GROUP BY shot " +
+            "UNION ALL SELECT 'cleared', CAST(cleared AS TEXT), CAST(cleared AS TEXT), COUNT(*) FROM m GROUP BY cleared " +
+            "ORDER BY facet, count DESC</script>")
+    List<ReplayFacetCount> facets(ReplaySearchQuery query);
+
     /**
      * 分页查询所有Replay（包含游戏标题）
      * 
@@ -91,7 +205,7 @@ public interface ReplayMapper extends BaseMapper<Replay> {
      * @param pageSize 每页数量
      * @return 分页的Replay列表
      */
-    @Select("SELECT r.*, g.title_zh as game_title FROM replays r " +
+    @Select("SELECT " + LIST_COLUMNS + " FROM replays r " +
             "JOIN games g ON r.game_id = g.id " +
             "ORDER BY r.imported_at DESC " +
             "LIMIT #{offset}, #{pageSize}")
@@ -113,15 +227,16 @@ public interface ReplayMapper extends BaseMapper<Replay> {
      * @param replay 要插入的Replay对象
      * @return 影响的行数
      */
-    @Insert("INSERT INTO replays (game_id, file_name, file_path, file_size, file_modified_time, " +
+    @Insert("INSERT INTO replays (game_id, file_name, file_path, file_size, file_modified_time, archive_hash, " +
             "game_version, character, shot_type, difficulty, stage, cleared, total_score, " +
-            "game_date, player_name, slow_rate, total_frames, stage_scores_json, bomb_stats_json, " +
-            "total_z_bombs, total_x_bombs, total_c_bombs, raw_json, session_id, imported_at) " +
-            "VALUES (#{gameId}, #{fileName}, #{filePath}, #{fileSize}, #{fileModifiedTime}, " +
+            "game_date, player_name, slow_rate, total_frames, stage_scores_bin, bomb_stats_bin, " +
+            "total_z_bombs, total_x_bombs, total_c_bombs, raw_json_compressed, analysis_status, session_id, imported_at) " +
+            "VALUES (#{gameId}, #{fileName}, #{filePath}, #{fileSize}, #{fileModifiedTime}, #{archiveHash}, " +
             "#{gameVersion}, #{character}, #{shotType}, #{difficulty}, #{stage}, #{cleared}, #{totalScore}, " +
-            "#{gameDate}, #{playerName}, #{slowRate}, #{totalFrames}, #{stageScoresJson}, #{bombStatsJson}, " +
-            "#{totalZBombs}, #{totalXBombs}, #{totalCBombs}, #{rawJson}, #{sessionId}, #{importedAt})")
-    @Options(useGeneratedKeys = true, keyProperty = "id")
+            "#{gameDate}, #{playerName}, #{slowRate}, #{totalFrames}, #{stageScoresBin}, #{bombStatsBin}, " +
+            "#{totalZBombs}, #{totalXBombs}, #{totalCBombs}, #{rawJsonCompressed}, #{analysisStatus}, #{sessionId}, #{importedAt})")
+    // sqlite-jdbc 3.43 起不再支持 getGeneratedKeys，改为插入后在同一连接上读取 last_insert_rowid()
+    @SelectKey(statement = "SELECT last_insert_rowid()", keyProperty = "id", before = false, resultType = int.class)
     int insertReplay(Replay replay);
 
     /**
@@ -131,14 +246,74 @@ public interface ReplayMapper extends BaseMapper<Replay> {
      * @return 影响的行数
      */
     @Update("UPDATE replays SET game_id = #{gameId}, file_name = #{fileName}, file_path = #{filePath}, " +
-            "file_size = #{fileSize}, file_modified_time = #{fileModifiedTime}, game_version = #{gameVersion}, " +
+            "file_size = #{fileSize}, file_modified_time = #{fileModifiedTime}, archive_hash = #{archiveHash}, " +
+            "game_version = #{gameVersion}, " +
             "character = #{character}, shot_type = #{shotType}, difficulty = #{difficulty}, stage = #{stage}, " +
             "cleared = #{cleared}, total_score = #{totalScore}, game_date = #{gameDate}, player_name = #{playerName}, " +
-            "slow_rate = #{slowRate}, total_frames = #{totalFrames}, stage_scores_json = #{stageScoresJson}, " +
-            "bomb_stats_json = #{bombStatsJson}, total_z_bombs = #{totalZBombs}, total_x_bombs = #{totalXBombs}, " +
-            "total_c_bombs = #{totalCBombs}, raw_json = #{rawJson}, session_id = #{sessionId} WHERE id = #{id}")
+            "slow_rate = #{slowRate}, total_frames = #{totalFrames}, stage_scores_bin = #{stageScoresBin}, " +
+            "bomb_stats_bin = #{bombStatsBin}, stage_scores_json = NULL, bomb_stats_json = NULL, " +
+            "total_z_bombs = #{totalZBombs}, total_x_bombs = #{totalXBombs}, " +
+            "total_c_bombs = #{totalCBombs}, raw_json = NULL, raw_json_compressed = #{rawJsonCompressed}, " +
+            "analysis_status = #{analysisStatus}, " +
+            "session_id = #{sessionId} WHERE id = #{id}")
     int updateReplay(Replay replay);
 
+    /**
+     * 把记录的文件路径改为归档副本路径（同名槽位被新的Replay覆盖时保留旧记录）
+     *
+     * @param id       Replay ID
+     * @param filePath 归档副本路径
+     * @return 影响的行数
+     */
+    @Update("UPDATE replays SET file_path = #{filePath} WHERE id = #{id}")
+    int updateFilePath(@Param("id") int id, @Param("filePath") String filePath);
+
+    /**
+     * 补记归档副本的内容哈希
+     *
+     * @param id          Replay ID
+     * @param archiveHash 归档副本的SHA-256
+     * @return 影响的行数
+     */
+    @Update("UPDATE replays SET archive_hash = #{archiveHash} WHERE id = #{id}")
+    int updateArchiveHash(@Param("id") int id, @Param("archiveHash") String archiveHash);
+
+    /**
+     * 写入深度分析结果（各关卡得分与炸弹统计）并更新解析状态
+     * 
+     * @param replay 已完成深度分析的Replay对象（必须包含id）
+     * @return 影响的行数
+     */
+    @Update("UPDATE replays SET stage_scores_bin = #{stageScoresBin}, bomb_stats_bin = #{bombStatsBin}, " +
+            "analysis_status = #{analysisStatus} WHERE id = #{id}")
+    int updateAnalysis(Replay replay);
+
+    /**
+     * 查找指定解析状态的Replay（用于恢复未完成的深度分析）
+     * 
+     * @param status 解析状态
+     * @param afterId 只返回ID大于该值的记录（按ID分批遍历）
+     * @param limit 返回的最大数量
+     * @return Replay列表
+     */
+    @Select("SELECT r.*, g.title_zh as game_title FROM replays r " +
+            "JOIN games g ON r.game_id = g.id WHERE r.analysis_status = #{status} AND r.id > #{afterId} " +
+            "ORDER BY r.id LIMIT #{limit}")
+    List<Replay> findByAnalysisStatusWithGameTitle(@Param("status") String status, @Param("afterId") int afterId,
+            @Param("limit") int limit);
+
+    /**
+     * 汇总某游戏某难度在导入指定Replay之后的统计（总数、通关数、同自机次数、此前最高分）
+     * 
+     * @param replay 刚导入的Replay
+     * @return 统计增量（seq、replayId等由调用方填充）
+     */
+    @Select("SELECT COUNT(*) AS replay_count, COALESCE(SUM(cleared), 0) AS clear_count, " +
+            "COALESCE(SUM(CASE WHEN character IS #{character} AND shot_type IS #{shotType} THEN 1 ELSE 0 END), 0) " +
+            "AS shot_type_count, MAX(CASE WHEN id <> #{id} THEN total_score END) AS previous_best " +
+            "FROM replays WHERE game_id = #{gameId} AND difficulty = #{difficulty} COLLATE NOCASE")
+    StatisticsDelta summarizeDifficulty(Replay replay);
+
     /**
      * 删除Replay记录
      * 
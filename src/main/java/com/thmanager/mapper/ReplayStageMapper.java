@@ -0,0 +1,90 @@
+package com.thmanager.mapper;
+
+import com.thmanager.model.ReplayStage;
+import com.thmanager.model.StageScoreStat;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+/**
+ * 单关卡数据 MyBatis Mapper接口
+ * 
+ * replay_stages 以 (replay_id, stage_num) 为主键，按游戏和难度的统计先通过
+ * replays(game_id, difficulty) 索引定位Replay，再按主键JOIN到各关卡行。
+ * 难度按 COLLATE NOCASE 比较，该索引的难度列使用同样的排序规则（V13），否则只能按 game_id 定位。
+ */
+@Mapper
+public interface ReplayStageMapper {
+
+    /**
+     * 关卡行 s 的上一关 p（按主键查找）
+     */
+    String PREVIOUS_STAGE_JOIN = "LEFT JOIN replay_stages p ON p.replay_id = s.replay_id AND p.stage_num = s.stage_num - 1 ";
+
+    /**
+     * 关卡行 s 的得分增量：第1关为累计得分，其余关卡缺少本关或上一关得分时为null
+     */
+    String STAGE_GAIN = "(s.score - CASE WHEN s.stage_num = 1 THEN 0 ELSE p.score END)";
+
+    /**
+     * 批量插入关卡行
+     * 
+     * @param stages 关卡行列表
+     * @return 影响的行数
+     */
+    @Insert("<script>INSERT INTO replay_stages (replay_id, stage_num, score, z_bombs, x_bombs, start_frame, end_frame) " +
+            "VALUES <foreach collection='stages' item='s' separator=','>" +
+            "(#{s.replayId}, #{s.stageNum}, #{s.score}, #{s.zBombs}, #{s.xBombs}, #{s.startFrame}, #{s.endFrame})" +
+            "</foreach></script>")
+    int insertStages(@Param("stages") List<ReplayStage> stages);
+
+    /**
+     * 删除某条Replay的所有关卡行
+     * 
+     * @param replayId Replay ID
+     * @return 影响的行数
+     */
+    @Delete("DELETE FROM replay_stages WHERE replay_id = #{replayId}")
+    int deleteByReplayId(@Param("replayId") int replayId);
+
+    /**
+     * 查询某条Replay的所有关卡行
+     * 
+     * @param replayId Replay ID
+     * @return 按关卡编号排序的关卡行
+     */
+    @Select("SELECT * FROM replay_stages WHERE replay_id = #{replayId} ORDER BY stage_num")
+    List<ReplayStage> findByReplayId(@Param("replayId") int replayId);
+
+    /**
+     * 某游戏某难度各关卡的得分增量与炸弹使用汇总
+     * 
+     * 得分增量 = 该关累计得分 - 上一关（stage_num - 1）累计得分，第1关为该关累计得分；
+     * 该关或上一关没有得分时增量为null，不计入平均值和最大值（与 {@link #averageStageScoreGain} 的定义相同）
+     * 
+     * @param gameId 游戏ID
+     * @param difficulty 难度
+     * @return 按关卡编号排序的汇总统计
+     */
+    @Select("SELECT stage_num AS stage_number, COUNT(*) AS sample_count, AVG(gain) AS avg_score_gain, " +
+            "MAX(gain) AS max_score_gain, AVG(z_bombs) AS avg_z_bombs, AVG(x_bombs) AS avg_x_bombs FROM (" +
+            "SELECT s.stage_num, s.z_bombs, s.x_bombs, " + STAGE_GAIN + " AS gain " +
+            "FROM replays r JOIN replay_stages s ON s.replay_id = r.id " + PREVIOUS_STAGE_JOIN +
+            "WHERE r.game_id = #{gameId} AND r.difficulty = #{difficulty} COLLATE NOCASE) " +
+            "GROUP BY stage_num ORDER BY stage_num")
+    List<StageScoreStat> findStageStats(@Param("gameId") int gameId, @Param("difficulty") String difficulty);
+
+    /**
+     * 某游戏某难度指定关卡的平均得分增量（定义同 {@link #findStageStats}）
+     * 
+     * @param gameId 游戏ID
+     * @param difficulty 难度
+     * @param stageNum 关卡编号
+     * @return 平均得分增量，没有数据时为null
+     */
+    @Select("SELECT AVG(" + STAGE_GAIN + ") FROM replays r " +
+            "JOIN replay_stages s ON s.replay_id = r.id AND s.stage_num = #{stageNum} " + PREVIOUS_STAGE_JOIN +
+            "WHERE r.game_id = #{gameId} AND r.difficulty = #{difficulty} COLLATE NOCASE")
+    Double averageStageScoreGain(@Param("gameId") int gameId, @Param("difficulty") String difficulty,
+            @Param("stageNum") int stageNum);
+}
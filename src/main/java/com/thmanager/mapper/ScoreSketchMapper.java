@@ -0,0 +1,56 @@
+package com.thmanager.mapper;
+
+import com.thmanager.model.ScoreSketch;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+/**
+ * 分数分布摘要 MyBatis Mapper接口
+ *
+ * score_sketches 以 (game_id, difficulty, shot_type) 为主键，每行保存一个编码后的摘要。
+ */
+@Mapper
+public interface ScoreSketchMapper {
+
+    /**
+     * 写入摘要，已存在时覆盖
+     *
+     * @param sketch 摘要
+     * @return 影响的行数
+     */
+    @Insert("INSERT INTO score_sketches (game_id, difficulty, shot_type, replay_count, digest) " +
+            "VALUES (#{gameId}, #{difficulty}, #{shotType}, #{replayCount}, #{digest}) " +
+            "ON CONFLICT (game_id, difficulty, shot_type) DO UPDATE SET " +
+            "replay_count = excluded.replay_count, digest = excluded.digest")
+    int upsert(ScoreSketch sketch);
+
+    /**
+     * 查询全部摘要
+     *
+     * @return 摘要列表
+     */
+    @Select("SELECT * FROM score_sketches")
+    List<ScoreSketch> findAll();
+
+    /**
+     * 删除单个摘要（失效后调用，重建前如应用退出，下次启动按Replay总数不一致全部重建）
+     *
+     * @param gameId     游戏ID
+     * @param difficulty 难度
+     * @param shotType   自机
+     * @return 删除的行数
+     */
+    @Delete("DELETE FROM score_sketches WHERE game_id = #{gameId} AND difficulty = #{difficulty} " +
+            "AND shot_type = #{shotType}")
+    int delete(@Param("gameId") int gameId, @Param("difficulty") String difficulty,
+            @Param("shotType") String shotType);
+
+    /**
+     * 删除全部摘要（重建前调用）
+     *
+     * @return 删除的行数
+     */
+    @Delete("DELETE FROM score_sketches")
+    int deleteAll();
+}
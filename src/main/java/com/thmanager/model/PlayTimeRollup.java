@@ -0,0 +1,127 @@
+package com.thmanager.model;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 游玩时间汇总模型类
+ *
+ * 对应数据库中的 play_time_rollups 表，按游戏、粒度（日/周/月）和时间桶累计游玩秒数与会话数。
+ * 会话结束时增量累加，图表按时间范围直接读取，不随会话历史增长而变慢。
+ */
+@Data
+@TableName("play_time_rollups")
+public class PlayTimeRollup {
+
+    public static final String DAY = "day";
+    public static final String WEEK = "week";
+    public static final String MONTH = "month";
+
+    /**
+     * 游戏ID
+     */
+    @TableField("game_id")
+    private int gameId;
+
+    /**
+     * 粒度：day、week、month
+     */
+    @TableField("granularity")
+    private String granularity;
+
+    /**
+     * 时间桶起始日期（yyyy-MM-dd）：日为当天，周为周一，月为1号
+     */
+    @TableField("bucket_start")
+    private String bucketStart;
+
+    /**
+     * 落在该时间桶内的游玩秒数
+     */
+    @TableField("seconds")
+    private long seconds;
+
+    /**
+     * 在该时间桶内开始的会话数
+     */
+    @TableField("session_count")
+    private int sessionCount;
+
+    /**
+     * @param granularity 粒度
+     * @return 是否为支持的粒度
+     */
+    public static boolean isGranularity(String granularity) {
+        return DAY.equals(granularity) || WEEK.equals(granularity) || MONTH.equals(granularity);
+    }
+
+    /**
+     * 计算某天所在时间桶的起始日期
+     *
+     * @param date        日期
+     * @param granularity 粒度
+     * @return 时间桶起始日期
+     */
+    public static LocalDate bucketOf(LocalDate date, String granularity) {
+        return switch (granularity) {
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+            default -> date;
+        };
+    }
+
+    /**
+     * 将一次已结束的会话拆分为各粒度的时间桶增量
+     *
+     * 跨越零点的会话按实际时长分摊到各天（以及对应的周、月），会话数只计入开始时间所在的桶。
+     *
+     * @param session 已结束的会话（必须包含开始与结束时间）
+     * @return 各时间桶的增量，会话时间无效时为空
+     */
+    public static List<PlayTimeRollup> listOf(PlaySession session) {
+        LocalDateTime start = session.getStartTime();
+        LocalDateTime end = session.getEndTime();
+        if (start == null || end == null || end.isBefore(start)) {
+            return List.of();
+        }
+
+        Map<String, PlayTimeRollup> rollups = new LinkedHashMap<>();
+        for (String granularity : new String[]{DAY, WEEK, MONTH}) {
+            rollup(rollups, session.getGameId(), granularity, start.toLocalDate()).sessionCount = 1;
+        }
+
+        LocalDateTime cursor = start;
+        while (cursor.isBefore(end)) {
+            LocalDateTime nextDay = cursor.toLocalDate().plusDays(1).atStartOfDay();
+            LocalDateTime segmentEnd = nextDay.isBefore(end) ? nextDay : end;
+            long seconds = ChronoUnit.SECONDS.between(cursor, segmentEnd);
+            for (String granularity : new String[]{DAY, WEEK, MONTH}) {
+                rollup(rollups, session.getGameId(), granularity, cursor.toLocalDate()).seconds += seconds;
+            }
+            cursor = segmentEnd;
+        }
+        return List.copyOf(rollups.values());
+    }
+
+    private static PlayTimeRollup rollup(Map<String, PlayTimeRollup> rollups, int gameId, String granularity,
+            LocalDate date) {
+        String bucketStart = bucketOf(date, granularity).toString();
+        return rollups.computeIfAbsent(granularity + bucketStart, key -> {
+            PlayTimeRollup rollup = new PlayTimeRollup();
+            rollup.gameId = gameId;
+            rollup.granularity = granularity;
+            rollup.bucketStart = bucketStart;
+            return rollup;
+        });
+    }
+}
@@ -4,6 +4,10 @@ import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.thmanager.util.JsonCompression;
+import com.thmanager.util.SqliteDateTimes;
+import com.thmanager.util.StringPool;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -15,11 +19,30 @@ import java.util.List;
  * 
  * 该类表示一条东方Project游戏的录像记录，包含Replay文件信息、游戏详情、
  * 得分数据等。对应数据库中的 replays 表。
+ * 
+ * 列表查询会一次物化大量记录，因此派生数据都按需生成：时间列以原始文本读取、
+ * 首次访问时才解析，各关卡列表由二进制编码生成，原始JSON首次访问时才解压；
+ * 角色、难度等低基数字符串经 {@link StringPool} 共享同一实例。
  */
 @Data
 @TableName("replays")
 public class Replay {
 
+    /**
+     * 解析状态：仅完成头部信息导入，等待深度分析
+     */
+    public static final String ANALYSIS_HEADER = "header";
+
+    /**
+     * 解析状态：深度分析已完成
+     */
+    public static final String ANALYSIS_FULL = "full";
+
+    /**
+     * 解析状态：原始JSON与Replay文件都已无法读取，关卡数据缺失
+     */
+    public static final String ANALYSIS_FAILED = "failed";
+
     /**
      * Replay主键ID，自增
      */
@@ -56,12 +79,25 @@ public class Replay {
     @TableField("file_modified_time")
     private long fileModifiedTime;
 
+    /**
+     * 归档副本的SHA-256（十六进制），未归档时为null
+     */
+    @TableField("archive_hash")
+    private String archiveHash;
+
     /**
      * Replay导入到系统的时间
      */
     @TableField("imported_at")
     private LocalDateTime importedAt;
 
+    /**
+     * imported_at 列的原始文本（非数据库字段，列表查询以别名 imported_at_text 读取，首次访问时解析）
+     */
+    @JsonIgnore
+    @TableField(exist = false)
+    private String importedAtText;
+
     /**
      * 关联的游戏会话ID
      */
@@ -116,6 +152,13 @@ public class Replay {
     @TableField("game_date")
     private LocalDateTime gameDate;
 
+    /**
+     * game_date 列的原始文本（非数据库字段，列表查询以别名 game_date_text 读取，首次访问时解析）
+     */
+    @JsonIgnore
+    @TableField(exist = false)
+    private String gameDateText;
+
     /**
      * 玩家名称
      */
@@ -135,16 +178,18 @@ public class Replay {
     private int totalFrames;
 
     /**
-     * 各关卡得分（JSON格式存储）
+     * 各关卡得分（定长二进制编码，见 {@link StageScoreView}）
      */
-    @TableField("stage_scores_json")
-    private String stageScoresJson;
+    @JsonIgnore
+    @TableField("stage_scores_bin")
+    private byte[] stageScoresBin;
 
     /**
-     * 炸弹使用统计（JSON格式存储）
+     * 按关卡炸弹使用统计（定长二进制编码，见 {@link StageBombView}）
      */
-    @TableField("bomb_stats_json")
-    private String bombStatsJson;
+    @JsonIgnore
+    @TableField("bomb_stats_bin")
+    private byte[] bombStatsBin;
 
     /**
      * Z键炸弹使用总数
@@ -165,11 +210,25 @@ public class Replay {
     private int totalCBombs;
 
     /**
-     * 原始解析JSON数据
+     * 原始解析JSON数据（旧版本以明文保存在 raw_json 列，新数据只写入压缩列）
      */
     @TableField("raw_json")
     private String rawJson;
 
+    /**
+     * 压缩后的原始解析JSON（Deflate + 预置字典），列表查询不读取该列，
+     * 只有在访问 {@link #getRawJson()} 时才解压
+     */
+    @JsonIgnore
+    @TableField("raw_json_compressed")
+    private byte[] rawJsonCompressed;
+
+    /**
+     * 解析阶段状态：header 表示仅导入了头部信息，full 表示深度分析（各关卡得分、炸弹统计）已完成
+     */
+    @TableField("analysis_status")
+    private String analysisStatus = ANALYSIS_FULL;
+
     /**
      * 游戏标题（非数据库字段，JOIN查询时填充）
      */
@@ -177,22 +236,22 @@ public class Replay {
     private String gameTitle;
 
     /**
-     * 各关卡得分列表（非数据库字段，从JSON解析而来）
+     * 各关卡得分列表（非数据库字段，首次访问时由二进制编码生成）
      */
     @TableField(exist = false)
     private List<Long> stageScoresList;
 
     /**
-     * 各关卡炸弹统计列表（非数据库字段，从JSON解析而来）
+     * 各关卡炸弹统计列表（非数据库字段，首次访问时由二进制编码生成）
      */
     @TableField(exist = false)
     private List<StageBombStats> bombStatsList;
 
     /**
-     * 解析错误列表（非数据库字段，用于记录解析过程中的错误）
+     * 解析错误列表（非数据库字段，用于记录解析过程中的错误，首次添加错误时才创建）
      */
     @TableField(exist = false)
-    private List<String> errors = new ArrayList<>();
+    private List<String> errors;
 
     /**
      * 无参构造函数
@@ -206,7 +265,10 @@ public class Replay {
      * @param error 错误信息字符串
      */
     public void addError(String error) {
-        this.errors.add(error);
+        if (errors == null) {
+            errors = new ArrayList<>();
+        }
+        errors.add(error);
     }
 
     /**
@@ -215,7 +277,7 @@ public class Replay {
      * @return 如果有错误返回true，否则返回false
      */
     public boolean hasErrors() {
-        return !errors.isEmpty();
+        return errors != null && !errors.isEmpty();
     }
 
     /**
@@ -224,7 +286,80 @@ public class Replay {
      * @return 错误信息列表
      */
     public List<String> getErrors() {
-        return new ArrayList<>(errors);
+        return errors == null ? new ArrayList<>() : new ArrayList<>(errors);
+    }
+
+    /**
+     * 获取导入时间，列表查询读取的原始文本在首次访问时解析
+     * 
+     * @return 导入时间
+     */
+    public LocalDateTime getImportedAt() {
+        if (importedAt == null && importedAtText != null) {
+            importedAt = SqliteDateTimes.parse(importedAtText);
+            importedAtText = null;
+        }
+        return importedAt;
+    }
+
+    public void setImportedAt(LocalDateTime importedAt) {
+        this.importedAt = importedAt;
+        this.importedAtText = null;
+    }
+
+    /**
+     * 获取游戏日期时间，列表查询读取的原始文本在首次访问时解析
+     * 
+     * @return 游戏日期时间
+     */
+    public LocalDateTime getGameDate() {
+        if (gameDate == null && gameDateText != null) {
+            gameDate = SqliteDateTimes.parse(gameDateText);
+            gameDateText = null;
+        }
+        return gameDate;
+    }
+
+    public void setGameDate(LocalDateTime gameDate) {
+        this.gameDate = gameDate;
+        this.gameDateText = null;
+    }
+
+    public void setGameVersion(String gameVersion) {
+        this.gameVersion = StringPool.intern(gameVersion);
+    }
+
+    public void setCharacter(String character) {
+        this.character = StringPool.intern(character);
+    }
+
+    public void setShotType(String shotType) {
+        this.shotType = StringPool.intern(shotType);
+    }
+
+    public void setDifficulty(String difficulty) {
+        this.difficulty = StringPool.intern(difficulty);
+    }
+
+    public void setStage(String stage) {
+        this.stage = StringPool.intern(stage);
+    }
+
+    public void setAnalysisStatus(String analysisStatus) {
+        this.analysisStatus = StringPool.intern(analysisStatus);
+    }
+
+    public void setGameTitle(String gameTitle) {
+        this.gameTitle = StringPool.intern(gameTitle);
+    }
+
+    /**
+     * 检查深度分析是否已完成
+     * 
+     * @return 各关卡得分与炸弹统计已填充返回true
+     */
+    public boolean isFullyAnalyzed() {
+        return ANALYSIS_FULL.equals(analysisStatus);
     }
 
     /**
@@ -302,10 +437,10 @@ public class Replay {
      * @return 该关卡的得分，如果不存在返回0
      */
     public long getStageScore(int stageNum) {
-        if (stageScoresList == null || stageNum < 1 || stageNum > stageScoresList.size()) {
+        if (stageNum < 1 || stageNum > StageScoreView.size(stageScoresBin)) {
             return 0;
         }
-        return stageScoresList.get(stageNum - 1);
+        return StageScoreView.get(stageScoresBin, stageNum - 1);
     }
 
     /**
@@ -315,33 +450,108 @@ public class Replay {
      * @return 该关卡的炸弹使用数量，如果不存在返回0
      */
     public int getStageBombCount(int stageNum) {
-        if (bombStatsList == null || stageNum < 1 || stageNum > bombStatsList.size()) {
+        if (stageNum < 1 || stageNum > StageBombView.size(bombStatsBin)) {
             return 0;
         }
-        return bombStatsList.get(stageNum - 1).xCount;
+        return StageBombView.xCount(bombStatsBin, stageNum - 1);
+    }
+
+    /**
+     * 获取各关卡得分列表，首次访问时由二进制编码生成
+     * 
+     * @return 各关卡累计得分，未做深度分析时返回null
+     */
+    public List<Long> getStageScoresList() {
+        if (stageScoresList == null && stageScoresBin != null) {
+            StageScoreView view = new StageScoreView().wrap(stageScoresBin);
+            List<Long> scores = new ArrayList<>(view.size());
+            for (int i = 0; i < view.size(); i++) {
+                scores.add(view.get(i));
+            }
+            stageScoresList = scores;
+        }
+        return stageScoresList;
     }
 
     /**
-     * 设置关卡得分JSON并解析为列表
+     * 设置各关卡得分列表，同时更新二进制编码
      * 
-     * @param stageScoresJson JSON格式的关卡得分数据
+     * @param stageScoresList 各关卡累计得分
      */
-    public void setStageScoresJson(String stageScoresJson) {
-        this.stageScoresJson = stageScoresJson;
-        if (stageScoresJson != null && !stageScoresJson.isEmpty()) {
-            try {
-                this.stageScoresList = new ArrayList<>();
-                String clean = stageScoresJson.replace("[", "").replace("]", "").trim();
-                if (!clean.isEmpty()) {
-                    String[] parts = clean.split(",");
-                    for (String part : parts) {
-                        this.stageScoresList.add(Long.parseLong(part.trim()));
-                    }
-                }
-            } catch (Exception e) {
-                this.stageScoresList = null;
+    public void setStageScoresList(List<Long> stageScoresList) {
+        this.stageScoresList = stageScoresList;
+        this.stageScoresBin = StageScoreView.encode(stageScoresList);
+    }
+
+    /**
+     * 获取各关卡炸弹统计列表，首次访问时由二进制编码生成
+     * 
+     * @return 各关卡炸弹统计，未做深度分析时返回null
+     */
+    public List<StageBombStats> getBombStatsList() {
+        if (bombStatsList == null && bombStatsBin != null) {
+            StageBombView view = new StageBombView().wrap(bombStatsBin);
+            List<StageBombStats> list = new ArrayList<>(view.size());
+            for (int i = 0; i < view.size(); i++) {
+                StageBombStats stats = new StageBombStats();
+                stats.stageNum = view.stageNum(i);
+                stats.zCount = view.zCount(i);
+                stats.xCount = view.xCount(i);
+                stats.startFrame = view.startFrame(i);
+                stats.endFrame = view.endFrame(i);
+                list.add(stats);
             }
+            bombStatsList = list;
+        }
+        return bombStatsList;
+    }
+
+    /**
+     * 设置各关卡炸弹统计列表，同时更新二进制编码
+     * 
+     * @param bombStatsList 各关卡炸弹统计
+     */
+    public void setBombStatsList(List<StageBombStats> bombStatsList) {
+        this.bombStatsList = bombStatsList;
+        this.bombStatsBin = StageBombView.encode(bombStatsList);
+    }
+
+    /**
+     * 获取原始解析JSON，首次访问时从压缩列解压
+     * 
+     * @return 原始JSON字符串，未加载时返回null
+     */
+    public String getRawJson() {
+        if (rawJson == null && rawJsonCompressed != null) {
+            rawJson = JsonCompression.decompress(rawJsonCompressed);
+        }
+        return rawJson;
+    }
+
+    /**
+     * 设置原始解析JSON，压缩数据在写入数据库时重新生成
+     * 
+     * 从数据库映射时旧的 raw_json 列为null，此时保留已读取的压缩数据
+     * 
+     * @param rawJson 原始JSON字符串
+     */
+    public void setRawJson(String rawJson) {
+        this.rawJson = rawJson;
+        if (rawJson != null) {
+            this.rawJsonCompressed = null;
+        }
+    }
+
+    /**
+     * 获取压缩后的原始解析JSON，按需由明文JSON生成
+     * 
+     * @return 压缩字节，没有原始JSON时返回null
+     */
+    public byte[] getRawJsonCompressed() {
+        if (rawJsonCompressed == null && rawJson != null) {
+            rawJsonCompressed = JsonCompression.compress(rawJson);
         }
+        return rawJsonCompressed;
     }
 
     /**
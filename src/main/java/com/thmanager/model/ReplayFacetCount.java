@@ -0,0 +1,30 @@
+package com.thmanager.model;
+
+import lombok.Data;
+
+/**
+ * 搜索结果按某个维度的计数
+ */
+@Data
+public class ReplayFacetCount {
+
+    /**
+     * 维度：game、difficulty、shot、cleared
+     */
+    private String facet;
+
+    /**
+     * 维度取值（game 为游戏ID，cleared 为 0/1），可直接作为搜索条件
+     */
+    private String value;
+
+    /**
+     * 显示名称（game 为游戏中文标题，其他维度同 value）
+     */
+    private String label;
+
+    /**
+     * 匹配的Replay数
+     */
+    private long count;
+}
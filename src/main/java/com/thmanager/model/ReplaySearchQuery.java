@@ -0,0 +1,70 @@
+package com.thmanager.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replay搜索条件
+ *
+ * 关键词按空白切分，各词之间为"且"。全文索引使用 trigram 分词，至少3个字符的词走 FTS5 MATCH；
+ * 更短的词（如两个字的中文标题"红魔"）无法用 trigram 匹配，改为在索引表上做 LIKE 子串匹配。
+ * 其余条件为空时不限制。
+ */
+@Data
+public class ReplaySearchQuery {
+
+    /**
+     * FTS5 MATCH 表达式（由 {@link #setText(String)} 生成，无长词时为null）
+     */
+    private String match;
+
+    /**
+     * 不足3个字符的词，已转为 LIKE 模式（%词%，转义字符为 \）
+     */
+    private List<String> shortTerms = new ArrayList<>();
+
+    private Integer gameId;
+    private String difficulty;
+    private String character;
+
+    /**
+     * 自机（角色+机体，同 {@link Replay#getFullShotType()}）
+     */
+    private String shot;
+
+    private Boolean cleared;
+
+    /**
+     * 录制年份（game_date 的前4位）
+     */
+    private String year;
+
+    private int offset;
+    private int limit;
+
+    /**
+     * 设置关键词
+     *
+     * @param text 用户输入的关键词，可为null
+     */
+    public void setText(String text) {
+        List<String> phrases = new ArrayList<>();
+        shortTerms = new ArrayList<>();
+        if (text != null) {
+            for (String term : text.trim().split("\\s+")) {
+                if (term.isEmpty()) {
+                    continue;
+                }
+                if (term.codePointCount(0, term.length()) >= 3) {
+                    // 作为短语匹配，避免用户输入被当成 FTS5 语法
+                    phrases.add('"' + term.replace("\"", "\"\"") + '"');
+                } else {
+                    shortTerms.add('%' + term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + '%');
+                }
+            }
+        }
+        match = phrases.isEmpty() ? null : String.join(" ", phrases);
+    }
+}
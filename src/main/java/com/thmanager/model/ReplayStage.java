@@ -0,0 +1,101 @@
+package com.thmanager.model;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 单关卡数据模型类
+ * 
+ * 对应数据库中的 replay_stages 表，每条Replay每关一行，
+ * 使按关卡的统计可以直接用SQL完成，而不必逐条解码Replay。
+ */
+@Data
+@TableName("replay_stages")
+public class ReplayStage {
+
+    /**
+     * 所属Replay ID
+     */
+    @TableField("replay_id")
+    private int replayId;
+
+    /**
+     * 关卡编号（从1开始）
+     */
+    @TableField("stage_num")
+    private int stageNum;
+
+    /**
+     * 该关结束时的累计得分，Replay中没有该关得分（只有炸弹统计）时为null
+     */
+    @TableField("score")
+    private Long score;
+
+    /**
+     * 该关Z键炸弹使用数
+     */
+    @TableField("z_bombs")
+    private int zBombs;
+
+    /**
+     * 该关X键炸弹使用数
+     */
+    @TableField("x_bombs")
+    private int xBombs;
+
+    /**
+     * 该关开始帧
+     */
+    @TableField("start_frame")
+    private int startFrame;
+
+    /**
+     * 该关结束帧
+     */
+    @TableField("end_frame")
+    private int endFrame;
+
+    /**
+     * 由Replay的各关卡得分与炸弹统计生成关卡行
+     * 
+     * 得分按下标对应关卡（下标0为第1关），炸弹统计按其中记录的关卡编号合并；
+     * 只出现在炸弹统计中的关卡没有得分，score 为null而不是0，避免算出负的得分增量
+     * 
+     * @param replay 已完成深度分析的Replay（必须包含id）
+     * @return 按关卡编号排序的关卡行
+     */
+    public static List<ReplayStage> listOf(Replay replay) {
+        Map<Integer, ReplayStage> stages = new TreeMap<>();
+
+        byte[] scores = replay.getStageScoresBin();
+        for (int i = 0; i < StageScoreView.size(scores); i++) {
+            stage(stages, replay.getId(), i + 1).score = StageScoreView.get(scores, i);
+        }
+
+        StageBombView bombs = new StageBombView().wrap(replay.getBombStatsBin());
+        for (int i = 0; i < bombs.size(); i++) {
+            ReplayStage stage = stage(stages, replay.getId(), bombs.stageNum(i));
+            stage.zBombs = bombs.zCount(i);
+            stage.xBombs = bombs.xCount(i);
+            stage.startFrame = bombs.startFrame(i);
+            stage.endFrame = bombs.endFrame(i);
+        }
+
+        return new ArrayList<>(stages.values());
+    }
+
+    private static ReplayStage stage(Map<Integer, ReplayStage> stages, int replayId, int stageNum) {
+        return stages.computeIfAbsent(stageNum, n -> {
+            ReplayStage stage = new ReplayStage();
+            stage.replayId = replayId;
+            stage.stageNum = n;
+            return stage;
+        });
+    }
+}
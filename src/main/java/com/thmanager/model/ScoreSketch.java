@@ -0,0 +1,46 @@
+package com.thmanager.model;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+/**
+ * 分数分布摘要模型类
+ *
+ * 对应数据库中的 score_sketches 表，每个 (游戏, 难度, 自机) 一行，
+ * digest 为 {@link com.thmanager.util.ScoreDigest#toBytes()} 编码的分数分布，大小与Replay数量无关。
+ */
+@Data
+@TableName("score_sketches")
+public class ScoreSketch {
+
+    /**
+     * 游戏ID
+     */
+    @TableField("game_id")
+    private int gameId;
+
+    /**
+     * 难度
+     */
+    @TableField("difficulty")
+    private String difficulty;
+
+    /**
+     * 自机（角色+机体，同 {@link Replay#getFullShotType()}）
+     */
+    @TableField("shot_type")
+    private String shotType;
+
+    /**
+     * 摘要中的Replay数量
+     */
+    @TableField("replay_count")
+    private long replayCount;
+
+    /**
+     * 编码后的分数分布摘要
+     */
+    @TableField("digest")
+    private byte[] digest;
+}
@@ -0,0 +1,113 @@
+package com.thmanager.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * 按关卡炸弹统计的二进制视图（replays.bomb_stats_bin）
+ *
+ * 每关固定 20 字节：关卡编号、Z键炸弹数、X键炸弹数、开始帧、结束帧，均为 4 字节小端 int。
+ * 与 {@link StageScoreView} 一样直接读取字节数组，可通过 {@link #wrap(byte[])} 重复使用。
+ */
+public final class StageBombView {
+
+    /**
+     * 每关占用的字节数
+     */
+    public static final int ENTRY_BYTES = 5 * Integer.BYTES;
+
+    private static final VarHandle INT_LE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int STAGE_NUM = 0;
+    private static final int Z_COUNT = 4;
+    private static final int X_COUNT = 8;
+    private static final int START_FRAME = 12;
+    private static final int END_FRAME = 16;
+
+    private byte[] data;
+    private int size;
+
+    /**
+     * 切换到另一段编码数据
+     *
+     * @param data 编码数据，可为null（视为空）
+     * @return 当前视图
+     */
+    public StageBombView wrap(byte[] data) {
+        this.data = data;
+        this.size = data == null ? 0 : data.length / ENTRY_BYTES;
+        return this;
+    }
+
+    /**
+     * @return 关卡记录数量
+     */
+    public int size() {
+        return size;
+    }
+
+    public int stageNum(int index) {
+        return read(data, index, STAGE_NUM);
+    }
+
+    public int zCount(int index) {
+        return read(data, index, Z_COUNT);
+    }
+
+    public int xCount(int index) {
+        return read(data, index, X_COUNT);
+    }
+
+    public int startFrame(int index) {
+        return read(data, index, START_FRAME);
+    }
+
+    public int endFrame(int index) {
+        return read(data, index, END_FRAME);
+    }
+
+    /**
+     * @param data 编码数据，可为null
+     * @return 关卡记录数量
+     */
+    public static int size(byte[] data) {
+        return data == null ? 0 : data.length / ENTRY_BYTES;
+    }
+
+    /**
+     * 直接从编码数据中读取一关的X键炸弹数
+     */
+    public static int xCount(byte[] data, int index) {
+        return read(data, index, X_COUNT);
+    }
+
+    /**
+     * 编码按关卡炸弹统计
+     *
+     * @param stats 各关卡炸弹统计
+     * @return 编码数据，输入为null时返回null
+     */
+    public static byte[] encode(List<Replay.StageBombStats> stats) {
+        if (stats == null) {
+            return null;
+        }
+        byte[] data = new byte[stats.size() * ENTRY_BYTES];
+        for (int i = 0; i < stats.size(); i++) {
+            Replay.StageBombStats s = stats.get(i);
+            int base = i * ENTRY_BYTES;
+            INT_LE.set(data, base + STAGE_NUM, s.stageNum);
+            INT_LE.set(data, base + Z_COUNT, s.zCount);
+            INT_LE.set(data, base + X_COUNT, s.xCount);
+            INT_LE.set(data, base + START_FRAME, s.startFrame);
+            INT_LE.set(data, base + END_FRAME, s.endFrame);
+        }
+        return data;
+    }
+
+    private static int read(byte[] data, int index, int offset) {
+        return (int) INT_LE.get(data, index * ENTRY_BYTES + offset);
+    }
+}
@@ -0,0 +1,40 @@
+package com.thmanager.model;
+
+import lombok.Data;
+
+/**
+ * 某游戏某难度单关卡的汇总统计（由 replay_stages 聚合得到）
+ */
+@Data
+public class StageScoreStat {
+
+    /**
+     * 关卡编号
+     */
+    private int stageNumber;
+
+    /**
+     * 样本数（到达该关的Replay数）
+     */
+    private int sampleCount;
+
+    /**
+     * 该关平均得分增量（该关累计得分减去上一关累计得分）
+     */
+    private double avgScoreGain;
+
+    /**
+     * 该关最高得分增量
+     */
+    private long maxScoreGain;
+
+    /**
+     * 该关平均Z键炸弹使用数
+     */
+    private double avgZBombs;
+
+    /**
+     * 该关平均X键炸弹使用数
+     */
+    private double avgXBombs;
+}
@@ -0,0 +1,90 @@
+package com.thmanager.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * 各关卡得分的二进制视图（replays.stage_scores_bin）
+ *
+ * 编码为每关一个 8 字节小端 long（关卡结束时的累计分数），下标 0 对应第 1 关。
+ * 视图直接读取字节数组，不创建中间对象；同一个视图可通过 {@link #wrap(byte[])}
+ * 在遍历多条Replay时重复使用。
+ */
+public final class StageScoreView {
+
+    /**
+     * 每关占用的字节数
+     */
+    public static final int ENTRY_BYTES = Long.BYTES;
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private byte[] data;
+    private int size;
+
+    /**
+     * 切换到另一段编码数据
+     *
+     * @param data 编码数据，可为null（视为空）
+     * @return 当前视图
+     */
+    public StageScoreView wrap(byte[] data) {
+        this.data = data;
+        this.size = data == null ? 0 : data.length / ENTRY_BYTES;
+        return this;
+    }
+
+    /**
+     * @return 关卡数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index 下标（从0开始）
+     * @return 该关结束时的累计分数
+     */
+    public long get(int index) {
+        return get(data, index);
+    }
+
+    /**
+     * 直接从编码数据中读取一关的得分
+     *
+     * @param data  编码数据
+     * @param index 下标（从0开始）
+     * @return 累计分数
+     */
+    public static long get(byte[] data, int index) {
+        return (long) LONG_LE.get(data, index * ENTRY_BYTES);
+    }
+
+    /**
+     * @param data 编码数据，可为null
+     * @return 关卡数量
+     */
+    public static int size(byte[] data) {
+        return data == null ? 0 : data.length / ENTRY_BYTES;
+    }
+
+    /**
+     * 编码各关卡得分
+     *
+     * @param scores 各关卡累计得分
+     * @return 编码数据，输入为null时返回null
+     */
+    public static byte[] encode(List<Long> scores) {
+        if (scores == null) {
+            return null;
+        }
+        byte[] data = new byte[scores.size() * ENTRY_BYTES];
+        for (int i = 0; i < scores.size(); i++) {
+            LONG_LE.set(data, i * ENTRY_BYTES, scores.get(i) != null ? scores.get(i) : 0L);
+        }
+        return data;
+    }
+}
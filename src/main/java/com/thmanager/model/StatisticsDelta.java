@@ -0,0 +1,72 @@
+package com.thmanager.model;
+
+import lombok.Data;
+
+/**
+ * 导入一条Replay后某游戏某难度统计数据的增量（经 /api/statistics/stream 推送）
+ *
+ * 前端据此就地更新最高分、自机使用次数和通关率，无需重新获取完整的难度报告。
+ */
+@Data
+public class StatisticsDelta {
+
+    /**
+     * 序号，单调递增，作为SSE事件ID用于断线续传
+     */
+    private long seq;
+
+    /**
+     * 触发本次增量的Replay ID
+     */
+    private int replayId;
+
+    /**
+     * 游戏ID
+     */
+    private int gameId;
+
+    /**
+     * 难度
+     */
+    private String difficulty;
+
+    /**
+     * 本条Replay的得分
+     */
+    private long totalScore;
+
+    /**
+     * 是否刷新了该难度的最高分
+     */
+    private boolean newBest;
+
+    /**
+     * 此前的最高分（此前没有记录时为null）
+     */
+    private Long previousBest;
+
+    /**
+     * 完整自机类型（角色 + 自机类型）
+     */
+    private String shotType;
+
+    /**
+     * 该自机类型在该难度下的使用次数（包含本条）
+     */
+    private int shotTypeCount;
+
+    /**
+     * 该难度Replay总数
+     */
+    private int replayCount;
+
+    /**
+     * 该难度通关次数
+     */
+    private int clearCount;
+
+    /**
+     * 该难度通关率（百分比）
+     */
+    private double clearRate;
+}
@@ -0,0 +1,240 @@
+package com.thmanager.service;
+
+import com.thmanager.dao.DatabaseManager;
+import com.thmanager.util.ReplayPack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 备份与恢复
+ *
+ * 备份写入 ~/.touhou-manager/backup 下的 {@link ReplayPack} 打包文件：归档中的全部Replay副本，
+ * 加上一份数据库快照。同一个打包文件可以反复备份，已有的Replay不会重复写入，每次只追加新副本与新快照。
+ * 数据库快照只保留最近 {@value #KEPT_SNAPSHOTS} 份：更早的快照与每次备份留下的旧索引占到文件的四分之一时，
+ * 备份结束后重写打包文件把它们删掉（也可以通过 {@link #compact(String)} 立即压缩）。
+ *
+ * 数据库快照使用 SQLite 的在线备份接口（sqlite-jdbc 的 backup to 命令），
+ * 只在复制页面时短暂持有读锁，备份期间监控服务照常导入。
+ * 恢复时立即补齐缺失的归档副本；数据库快照暂存为 touhou_manager.db.restore，
+ * 下次启动时由 {@link DatabaseManager} 在建立连接之前替换当前数据库。
+ */
+@Service
+public class BackupService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackupService.class);
+
+    /**
+     * 默认打包文件名
+     */
+    public static final String DEFAULT_NAME = "touhou-manager.thpack";
+
+    private static final Pattern NAME = Pattern.compile("[\\w.-]+\\.thpack");
+    private static final String REPLAY = "replay";
+    private static final String DATABASE = "database";
+
+    /**
+     * 打包文件中保留的数据库快照份数
+     */
+    private static final int KEPT_SNAPSHOTS = 3;
+
+    private final DataSource dataSource;
+    private final ReplayArchiveService archiveService;
+    private final Path backupRoot;
+
+    public BackupService(DataSource dataSource, ReplayArchiveService archiveService) {
+        this.dataSource = dataSource;
+        this.archiveService = archiveService;
+        this.backupRoot = Paths.get(System.getProperty("user.home"), ".touhou-manager", "backup");
+    }
+
+    /**
+     * 备份到打包文件（不存在时新建）
+     *
+     * @param name 打包文件名，为null时使用 {@link #DEFAULT_NAME}
+     * @throws IllegalArgumentException 文件名不合法
+     */
+    public synchronized BackupResult backup(String name) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Path pack = resolve(name);
+        Files.createDirectories(backupRoot);
+
+        Path snapshot = Files.createTempFile(backupRoot, "snapshot", ".db");
+        int added = 0;
+        int total;
+        long databaseBytes;
+        List<ReplayPack.Entry> superseded;
+        long liveBytes;
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            List<String> hashes = archiveService.hashes();
+            total = hashes.size();
+            for (String hash : hashes) {
+                if (!writer.contains(hash)) {
+                    writer.add(archiveService.pathOf(hash), REPLAY);
+                    added++;
+                }
+            }
+
+            try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("backup to \"" + snapshot.toAbsolutePath() + "\"");
+            }
+            databaseBytes = Files.size(snapshot);
+            writer.add(snapshot, DATABASE + " " + Instant.now());
+            writer.commit();
+            superseded = supersededSnapshots(writer.entries());
+            liveBytes = writer.entries().stream().mapToLong(ReplayPack.Entry::length).sum()
+                    - superseded.stream().mapToLong(ReplayPack.Entry::length).sum();
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+
+        // 旧快照与历次提交留下的旧索引占到文件的四分之一时才重写，重写的开销分摊到多次备份
+        long packBytes = Files.size(pack);
+        if ((packBytes - liveBytes) * 4 >= packBytes) {
+            prune(pack, superseded);
+        }
+
+        BackupResult result = new BackupResult(pack.getFileName().toString(), added, total,
+                databaseBytes, Files.size(pack), (System.nanoTime() - start) / 1_000_000);
+        log.info("备份完成: {}", result);
+        return result;
+    }
+
+    /**
+     * 压缩打包文件：删除超出保留份数的旧数据库快照与旧索引（Replay副本全部保留）
+     *
+     * 备份时会在无用数据占用较多空间时自动压缩，这里不论占用多少都立即压缩。
+     *
+     * @param name 打包文件名，为null时使用 {@link #DEFAULT_NAME}
+     * @throws IllegalArgumentException 文件名不合法或文件不存在
+     */
+    public synchronized CompactResult compact(String name) throws IOException {
+        Path pack = resolve(name);
+        if (!Files.isRegularFile(pack)) {
+            throw new IllegalArgumentException("backup not found: " + pack.getFileName());
+        }
+        List<ReplayPack.Entry> superseded;
+        try (ReplayPack.Reader reader = ReplayPack.open(pack)) {
+            superseded = supersededSnapshots(reader.entries());
+        }
+        long freed = prune(pack, superseded);
+        return new CompactResult(pack.getFileName().toString(), superseded.size(), freed, Files.size(pack));
+    }
+
+    /**
+     * 从打包文件恢复
+     *
+     * @param name 打包文件名，为null时使用 {@link #DEFAULT_NAME}
+     * @throws IllegalArgumentException 文件名不合法或文件不存在
+     */
+    public synchronized RestoreResult restore(String name) throws IOException {
+        Path pack = resolve(name);
+        if (!Files.isRegularFile(pack)) {
+            throw new IllegalArgumentException("backup not found: " + pack.getFileName());
+        }
+
+        int restored = 0;
+        int skipped = 0;
+        ReplayPack.Entry database = null;
+        try (ReplayPack.Reader reader = ReplayPack.open(pack)) {
+            for (ReplayPack.Entry entry : reader.entries()) {
+                if (entry.metadata().startsWith(DATABASE)) {
+                    // 多次备份时取最后一份快照
+                    database = entry;
+                } else if (entry.metadata().equals(REPLAY)) {
+                    Path target = archiveService.pathOf(entry.hash());
+                    if (Files.exists(target)) {
+                        skipped++;
+                        continue;
+                    }
+                    Files.createDirectories(target.getParent());
+                    reader.extract(entry, target);
+                    restored++;
+                }
+            }
+            if (database != null) {
+                reader.extract(database, DatabaseManager.stagedRestorePath());
+            }
+        }
+
+        RestoreResult result = new RestoreResult(pack.getFileName().toString(), restored, skipped,
+                database != null);
+        log.info("恢复完成: {}{}", result, database != null ? "，数据库将在重启后替换" : "");
+        return result;
+    }
+
+    /**
+     * @return 超出保留份数的旧数据库快照
+     */
+    private static List<ReplayPack.Entry> supersededSnapshots(List<ReplayPack.Entry> entries) {
+        List<ReplayPack.Entry> snapshots = entries.stream()
+                .filter(entry -> entry.metadata().startsWith(DATABASE))
+                .toList();
+        return snapshots.subList(0, Math.max(0, snapshots.size() - KEPT_SNAPSHOTS));
+    }
+
+    private long prune(Path pack, List<ReplayPack.Entry> superseded) throws IOException {
+        Set<ReplayPack.Entry> dropped = new HashSet<>(superseded);
+        long freed = ReplayPack.compact(pack, entry -> !dropped.contains(entry));
+        log.info("已压缩打包文件 {}: 删除 {} 份旧数据库快照及旧索引，释放 {} 字节", pack.getFileName(), dropped.size(), freed);
+        return freed;
+    }
+
+    private Path resolve(String name) {
+        String fileName = name == null || name.isBlank() ? DEFAULT_NAME : name;
+        if (!NAME.matcher(fileName).matches()) {
+            throw new IllegalArgumentException("invalid backup name: " + fileName);
+        }
+        return backupRoot.resolve(fileName);
+    }
+
+    /**
+     * 备份结果
+     *
+     * @param file          打包文件名
+     * @param replaysAdded  本次新写入的Replay数
+     * @param replaysTotal  归档中的Replay总数
+     * @param databaseBytes 数据库快照大小
+     * @param packBytes     打包文件大小
+     * @param elapsedMillis 耗时（毫秒）
+     */
+    public record BackupResult(String file, int replaysAdded, int replaysTotal, long databaseBytes,
+                               long packBytes, long elapsedMillis) {
+    }
+
+    /**
+     * 恢复结果
+     *
+     * @param file             打包文件名
+     * @param replaysRestored  补齐的归档副本数
+     * @param replaysSkipped   已存在而跳过的副本数
+     * @param databaseStaged   是否暂存了数据库快照（重启后生效）
+     */
+    public record RestoreResult(String file, int replaysRestored, int replaysSkipped, boolean databaseStaged) {
+    }
+
+    /**
+     * 压缩结果
+     *
+     * @param file             打包文件名
+     * @param snapshotsRemoved 删除的旧数据库快照数
+     * @param bytesFreed       释放的字节数
+     * @param packBytes        压缩后的打包文件大小
+     */
+    public record CompactResult(String file, int snapshotsRemoved, long bytesFreed, long packBytes) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.thmanager.service;
+
+import com.thmanager.util.GameCoverResolver;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * 封面图目录监控
+ *
+ * 启动时加载一次 {@link GameCoverResolver} 的封面映射，之后监控封面目录，
+ * 有文件新增、删除或修改时重新列出目录。目录不存在时只加载（得到空映射），不监控。
+ */
+@Service
+public class GameCoverWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(GameCoverWatcher.class);
+
+    private WatchService watchService;
+    private Thread thread;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        GameCoverResolver.refresh();
+        if (thread != null) {
+            return;
+        }
+        Path root = GameCoverResolver.coverRoot();
+        if (!Files.isDirectory(root)) {
+            log.info("封面目录不存在，不监控: {}", root);
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            root.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            log.warn("无法监控封面目录: {}", e.getMessage());
+            return;
+        }
+        thread = new Thread(this::watchLoop, "GameCoverWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watchLoop() {
+        while (true) {
+            try {
+                WatchKey key = watchService.take();
+                // 同一次复制/替换往往产生多个事件，合并为一次刷新
+                key.pollEvents();
+                key.reset();
+                GameCoverResolver.refresh();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -2,9 +2,13 @@ package com.thmanager.service;
 
 import com.thmanager.dao.GameDAO;
 import com.thmanager.dao.PlaySessionDAO;
+import com.thmanager.event.GameEndedEvent;
+import com.thmanager.event.GameStartedEvent;
 import com.thmanager.model.Game;
 import com.thmanager.model.PlaySession;
-import com.thmanager.service.ReplayWatcherService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -13,26 +17,47 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 游戏启动器
+ *
+ * 启动器状态保存在 {@link LaunchState} 快照中，通过 {@link AtomicReference} 的 CAS 切换：
+ * IDLE（空闲）→ COUNTDOWN（倒计时/启动中，已占用启动器）→ RUNNING（进程运行中）→ IDLE。
+ * 同一时刻只有一次启动能占用启动器，进程结束与强制停止谁先完成 CAS 谁负责结束会话，不会重复结算。
+ *
+ * 倒计时由调度线程按秒触发（每一秒结束时调度下一秒的一次性任务），进程退出通过 {@link Process#onExit()} 回调处理，
+ * 整个游玩期间不占用任何阻塞等待的线程。倒计时回调或启动过程出错时启动器回到 IDLE。
+ */
 @Service
 public class GameLauncher {
+
+    private static final Logger log = LoggerFactory.getLogger(GameLauncher.class);
     private final GameDAO gameDAO;
     private final PlaySessionDAO sessionDAO;
     private final ReplayWatcherService replayWatcherService;
-    private final ExecutorService executor;
-    private Process currentProcess;
-    private PlaySession currentSession;
-    private Game currentGame;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicReference<LaunchState> state = new AtomicReference<>(LaunchState.IDLE);
     private Runnable onGameStart;
     private Runnable onGameEnd;
 
-    public GameLauncher(GameDAO gameDAO, PlaySessionDAO sessionDAO, ReplayWatcherService replayWatcherService) {
+    public GameLauncher(GameDAO gameDAO, PlaySessionDAO sessionDAO, ReplayWatcherService replayWatcherService,
+                        ApplicationEventPublisher eventPublisher) {
         this.gameDAO = gameDAO;
         this.sessionDAO = sessionDAO;
         this.replayWatcherService = replayWatcherService;
-        this.executor = Executors.newSingleThreadExecutor();
+        this.eventPublisher = eventPublisher;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "GameLauncher");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     // 设置回调
@@ -44,188 +69,236 @@ public class GameLauncher {
         this.onGameEnd = callback;
     }
 
+    /**
+     * 倒计时结束后启动游戏
+     *
+     * @param game     要启动的游戏
+     * @param seconds  倒计时秒数，小于等于0时立即启动
+     * @param callback 倒计时回调（在调度线程上执行）
+     * @throws IllegalArgumentException 游戏为null，或已有游戏在倒计时或运行中
+     */
     public void launchWithCountdown(Game game, int seconds, CountdownCallback callback) {
-        System.out.println("==========================================");
-        System.out.println("[GameLauncher] launchWithCountdown被调用");
-        System.out.println("[GameLauncher] 游戏: " + (game != null ? game.getDisplayName() : "null"));
-        System.out.println("[GameLauncher] 倒计时: " + seconds + "秒");
-        System.out.println("==========================================");
-
-        executor.submit(() -> {
-            System.out.println("[GameLauncher] 倒计时线程开始");
-            try {
-                for (int i = seconds; i > 0; i--) {
-                    System.out.println("[GameLauncher] 倒计时: " + i);
-                    final int count = i;
-                    callback.onTick(count);
-                    Thread.sleep(1000);
-                }
-
-                System.out.println("[GameLauncher] 倒计时完成，准备启动游戏");
-                callback.onFinish();
-                launchGame(game);
-            } catch (InterruptedException e) {
-                System.err.println("[GameLauncher] 倒计时被中断");
-                Thread.currentThread().interrupt();
+        log.info("launchWithCountdown: {}, 倒计时 {} 秒", game != null ? game.getDisplayName() : null, seconds);
+
+        LaunchState reserved = reserve(game);
+        try {
+            reserved.countdownTask = scheduler.schedule(() -> countdown(reserved, Math.max(seconds, 0), callback),
+                    0, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            state.compareAndSet(reserved, LaunchState.IDLE);
+            throw e;
+        }
+    }
+
+    /**
+     * 倒计时的一秒：剩余秒数大于0时通知回调并调度下一秒，否则启动游戏
+     *
+     * @param reserved  当前持有的 COUNTDOWN 状态
+     * @param remaining 剩余秒数
+     * @param callback  倒计时回调
+     */
+    private void countdown(LaunchState reserved, int remaining, CountdownCallback callback) {
+        if (state.get() != reserved) {
+            // 倒计时期间被强制停止
+            return;
+        }
+        try {
+            if (remaining > 0) {
+                log.debug("倒计时: {}", remaining);
+                callback.onTick(remaining);
+                reserved.countdownTask = scheduler.schedule(() -> countdown(reserved, remaining - 1, callback),
+                        1, TimeUnit.SECONDS);
+                return;
             }
-        });
+
+            log.info("倒计时完成，准备启动游戏");
+            callback.onFinish();
+            startProcess(reserved);
+        } catch (RuntimeException e) {
+            state.compareAndSet(reserved, LaunchState.IDLE);
+            log.error("启动游戏失败", e);
+        }
     }
 
-    // 启动游戏
+    /**
+     * 立即启动游戏
+     *
+     * @param game 要启动的游戏
+     * @throws IllegalArgumentException 游戏为null，或已有游戏在倒计时或运行中
+     * @throws RuntimeException         可执行文件不存在、进程启动失败或会话创建失败
+     */
     public void launchGame(Game game) {
-        System.out.println("==========================================");
-        System.out.println("[GameLauncher] launchGame被调用");
-        System.out.println("==========================================");
+        startProcess(reserve(game));
+    }
 
-        if (currentProcess != null && currentProcess.isAlive()) {
-            System.err.println("[GameLauncher] 已有游戏在运行中！");
+    /**
+     * 占用启动器：IDLE → COUNTDOWN
+     */
+    private LaunchState reserve(Game game) {
+        if (game == null) {
+            throw new IllegalArgumentException("游戏不存在");
+        }
+        LaunchState reserved = LaunchState.countdown(game);
+        if (!state.compareAndSet(LaunchState.IDLE, reserved)) {
+            log.warn("已有游戏在运行中！");
             throw new IllegalArgumentException("已有游戏在运行中");
         }
+        return reserved;
+    }
+
+    /**
+     * 启动进程并切换到 RUNNING：COUNTDOWN → RUNNING，失败时释放启动器
+     *
+     * @param reserved 当前持有的 COUNTDOWN 状态
+     */
+    private void startProcess(LaunchState reserved) {
+        Game game = reserved.game;
+        if (reserved.phase != Phase.COUNTDOWN) {
+            return;
+        }
 
         String exePath = game.getFullExePath();
-        System.out.println("[GameLauncher] EXE路径: " + exePath);
+        log.debug("EXE路径: {}", exePath);
         if (exePath == null || !new File(exePath).exists()) {
-            System.err.println("[GameLauncher] 游戏可执行文件不存在: " + exePath);
+            state.compareAndSet(reserved, LaunchState.IDLE);
+            log.warn("游戏可执行文件不存在: {}", exePath);
             throw new RuntimeException("游戏可执行文件不存在: " + exePath);
         }
-        System.out.println("[GameLauncher] EXE文件存在");
 
+        Process process;
         try {
-            Path WorkingDir = Paths.get(game.getInstallPath());
-            System.out.println("[GameLauncher] 工作目录: " + WorkingDir);
+            Path workingDir = Paths.get(game.getInstallPath());
+            log.debug("工作目录: {}", workingDir);
 
             ProcessBuilder pb = new ProcessBuilder(exePath);
-            pb.directory(WorkingDir.toFile());
+            pb.directory(workingDir.toFile());
             pb.inheritIO();// 继承IO
-            System.out.println("[GameLauncher] ProcessBuilder创建完成");
-
-            System.out.println("[GameLauncher] 正在启动进程...");
-            currentProcess = pb.start();
-            System.out.println("[GameLauncher] 进程启动成功！进程ID: " + currentProcess.pid());
-            currentGame = game;
-
-            // 创建游玩会话
-            System.out.println("[GameLauncher] 创建游玩会话");
-            currentSession = new PlaySession(game.getId(), LocalDateTime.now());
-            sessionDAO.create(currentSession);
-            System.out.println("[GameLauncher] 游玩会话创建成功，ID: " + currentSession.getId());
-
-            // 通知游戏开始
-            if (onGameStart != null) {
-                System.out.println("[GameLauncher] 调用onGameStart回调");
-                onGameStart.run();
-            }
-
-            // 确保游戏的replay文件夹被监控
-            System.out.println("[GameLauncher] 注册游戏replay文件夹到监控服务");
-            replayWatcherService.registerGame(game);
-
-            // 启动监控线程
-            System.out.println("[GameLauncher] 启动监控线程");
-            startMonitoring();
-            System.out.println("[GameLauncher] launchGame完成");
-
+            process = pb.start();
+            log.info("进程启动成功！进程ID: {}", process.pid());
         } catch (IOException e) {
-            System.err.println("[GameLauncher] 启动游戏失败: " + e.getMessage());
-            e.printStackTrace();
+            state.compareAndSet(reserved, LaunchState.IDLE);
+            log.error("启动游戏失败: {}", exePath, e);
             throw new RuntimeException("fail to launch game: " + e.getMessage(), e);
         }
-    }
 
-    // 监控游戏进程
-    private void startMonitoring() {
-        System.out.println("[GameLauncher] 监控线程已启动");
-        executor.submit(() -> {
-            try {
-                System.out.println("[GameLauncher] 等待游戏进程结束...");
-                // 等待进程结束
-                int exitCode = currentProcess.waitFor();
-                System.out.println("[GameLauncher] 游戏进程已结束，退出码: " + exitCode);
+        // 创建游玩会话
+        PlaySession session = new PlaySession(game.getId(), LocalDateTime.now());
+        try {
+            if (!sessionDAO.create(session)) {
+                throw new IllegalStateException("游玩会话写入失败");
+            }
+        } catch (RuntimeException e) {
+            // 没有会话就无法结算游玩时间，结束刚启动的进程并释放启动器
+            process.destroy();
+            state.compareAndSet(reserved, LaunchState.IDLE);
+            log.error("创建游玩会话失败，已结束进程: {}", exePath, e);
+            throw e;
+        }
+        log.info("游玩会话创建成功，ID: {}", session.getId());
+
+        LaunchState running = LaunchState.running(game, process, session);
+        if (!state.compareAndSet(reserved, running)) {
+            // 启动过程中被强制停止
+            log.info("启动期间已被停止，结束进程");
+            process.destroy();
+            endSession(running);
+            return;
+        }
+
+        // 通知游戏开始
+        if (onGameStart != null) {
+            onGameStart.run();
+        }
+        eventPublisher.publishEvent(new GameStartedEvent(game, session.getId(), session.getStartTime()));
+
+        // 确保游戏的replay文件夹被监控
+        replayWatcherService.registerGame(game);
 
-                // 游戏结束，更新记录
-                endCurrentSession();
-                System.out.println("[GameLauncher] The game is over");
-            } catch (InterruptedException e) {
-                System.err.println("[GameLauncher] 监控线程被中断");
-                Thread.currentThread().interrupt();
+        // 进程退出时结束会话（不占用等待线程）；在开始通知之后注册，保证结束事件晚于开始事件
+        process.onExit().thenAcceptAsync(exited -> {
+            log.info("游戏进程已结束，退出码: {}", exited.exitValue());
+            if (state.compareAndSet(running, LaunchState.IDLE)) {
+                endSession(running);
             }
-        });
+        }, scheduler);
+        log.debug("launchGame完成");
     }
 
     // 结束会话
-    private void endCurrentSession() {
-        System.out.println("[GameLauncher] endCurrentSession被调用");
-        if (currentSession == null || currentGame == null) {
-            System.err.println("[GameLauncher] currentSession或currentGame为null，无法结束会话");
-            return;
-        }
+    private void endSession(LaunchState ended) {
+        PlaySession session = ended.session;
+        Game game = ended.game;
 
-        // 计算时长
-        System.out.println("[GameLauncher] 计算会话时长");
-        currentSession.endSession();
-
-        // 更新数据库
-        System.out.println("[GameLauncher] 更新数据库");
-        sessionDAO.endSession(
-                currentSession.getId(),
-                currentSession.getEndTime(),
-                currentSession.getDurationSeconds());
-        System.out.println("[GameLauncher] 数据库更新完成");
+        // 计算时长并更新数据库（同时累加日/周/月游玩时间汇总）
+        session.endSession();
+        sessionDAO.endSession(session);
 
         // 更新游戏总时长
-        long totalTime = sessionDAO.getToTotalPlayTimeByGame(currentGame.getId());
-        System.out.println("[GameLauncher] Total play time: " + totalTime);
-        currentGame.setTotalPlayTimeSeconds(totalTime);
-        currentGame.setLastPlayed(LocalDateTime.now());
-        currentGame.setInstalled(true);
-        gameDAO.update(currentGame);
-        System.out.println("[GameLauncher] 游戏信息更新完成");
-
-        // 清理
-        final Game endedGame = currentGame;
-        currentGame = null;
-        currentSession = null;
-        currentProcess = null;
-        System.out.println("[GameLauncher] 清理完成");
+        long totalTime = sessionDAO.getToTotalPlayTimeByGame(game.getId());
+        log.debug("累计游玩时间: {} 秒", totalTime);
+        game.setTotalPlayTimeSeconds(totalTime);
+        game.setLastPlayed(LocalDateTime.now());
+        game.setInstalled(true);
+        gameDAO.update(game);
+        log.debug("游戏信息更新完成");
 
         // 更新UI
         if (onGameEnd != null) {
-            System.out.println("[GameLauncher] 调用onGameEnd回调");
             onGameEnd.run();
         }
+        eventPublisher.publishEvent(new GameEndedEvent(game, session.getId(), session.getEndTime(),
+                session.getDurationSeconds()));
     }
 
-    // 强制结束游戏
+    /**
+     * 强制结束游戏或取消倒计时
+     *
+     * @return 有游戏在运行或倒计时中并已停止返回true
+     */
     public boolean forceStop() {
-        if (currentProcess != null && currentProcess.isAlive()) {
-            currentProcess.destroy();
-            endCurrentSession();
+        LaunchState current = state.get();
+        if (current.phase == Phase.IDLE || !state.compareAndSet(current, LaunchState.IDLE)) {
+            return false;
+        }
+        if (current.phase == Phase.COUNTDOWN) {
+            // 句柄可能还指向正在执行的这一秒，它调度的下一秒任务会发现状态已变化而自行结束
+            ScheduledFuture<?> task = current.countdownTask;
+            if (task != null) {
+                task.cancel(false);
+            }
+            log.info("已取消倒计时");
             return true;
         }
-        return false;
+        current.process.destroy();
+        endSession(current);
+        return true;
     }
 
     // 检查是否有游戏正在运行
     public boolean isGameRunning() {
-        return currentProcess != null && currentProcess.isAlive();
+        LaunchState current = state.get();
+        return current.phase == Phase.RUNNING && current.process.isAlive();
     }
 
     // 获取当前运行的游戏
     public Optional<Game> getCurrentGame() {
-        return Optional.ofNullable(currentGame);
+        LaunchState current = state.get();
+        return current.phase == Phase.RUNNING ? Optional.of(current.game) : Optional.empty();
     }
 
-    // 获取当前会话已运行事件
+    // 获取当前会话已运行时间
     public long getCurrentSessionDuration() {
-        if (currentSession == null)
+        LaunchState current = state.get();
+        if (current.phase != Phase.RUNNING)
             return 0;
-        return java.time.Duration.between(currentSession.getStartTime(), LocalDateTime.now()).getSeconds();
+        return java.time.Duration.between(current.session.getStartTime(), LocalDateTime.now()).getSeconds();
     }
 
     public void shutdown() {
-        executor.shutdown();
-        if (currentProcess != null && currentProcess.isAlive()) {
-            currentProcess.destroy();
+        scheduler.shutdownNow();
+        LaunchState current = state.getAndSet(LaunchState.IDLE);
+        if (current.phase == Phase.RUNNING && current.process.isAlive()) {
+            current.process.destroy();
         }
     }
 
@@ -234,4 +307,38 @@ public class GameLauncher {
 
         void onFinish();
     }
+
+    private enum Phase {
+        IDLE, COUNTDOWN, RUNNING
+    }
+
+    /**
+     * 启动器状态快照（按引用比较做 CAS）
+     *
+     * 除倒计时任务句柄外均不可变；句柄指向下一秒的任务，每秒更新一次，只用于强制停止时取消，不参与状态判断。
+     */
+    private static final class LaunchState {
+        static final LaunchState IDLE = new LaunchState(Phase.IDLE, null, null, null);
+
+        final Phase phase;
+        final Game game;
+        final Process process;
+        final PlaySession session;
+        volatile ScheduledFuture<?> countdownTask;
+
+        private LaunchState(Phase phase, Game game, Process process, PlaySession session) {
+            this.phase = phase;
+            this.game = game;
+            this.process = process;
+            this.session = session;
+        }
+
+        static LaunchState countdown(Game game) {
+            return new LaunchState(Phase.COUNTDOWN, game, null, null);
+        }
+
+        static LaunchState running(Game game, Process process, PlaySession session) {
+            return new LaunchState(Phase.RUNNING, game, process, session);
+        }
+    }
 }
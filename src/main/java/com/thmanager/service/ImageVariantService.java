@@ -0,0 +1,243 @@
+package com.thmanager.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * 图片缩略图（固定宽度的缩小版本）
+ *
+ * 列表页只需要小图，原图（image/main 单张约400KB）按需缩小到 {@link #WIDTHS} 中的宽度后缓存在
+ * ~/.touhou-manager/image-cache，文件名为 原图内容哈希-w宽度，原图被替换后自然生成新文件。
+ * PNG 原图输出 PNG（保留透明度），其他输出 JPEG。原图不比目标宽度宽时原样保存一份。
+ *
+ * 解码与缩放在两个最低优先级线程上进行，队列有界，不与Replay导入争抢CPU；
+ * 队列已满或生成超时时返回原图，下次请求再生成。同一张图并发请求只生成一次。
+ * 线程池队列以 executor.queued{name=imageVariant} 导出。
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVariantService.class);
+
+    /**
+     * 支持的缩略图宽度（像素）
+     */
+    public static final Set<Integer> WIDTHS = Set.of(160, 320, 640, 1280);
+
+    private static final Set<String> EXTENSIONS = Set.of("jpg", "jpeg", "png");
+    private static final float JPEG_QUALITY = 0.85f;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long WAIT_SECONDS = 10;
+
+    private final Path imageRoot;
+    private final Path cacheRoot;
+    private final ExecutorService executor;
+    private final Map<Path, SourceHash> sourceHashes = new ConcurrentHashMap<>();
+    private final Map<Path, Future<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public ImageVariantService(MeterRegistry meterRegistry) {
+        this.imageRoot = Paths.get(System.getProperty("user.dir"), "thmanager-frontend", "image")
+                .toAbsolutePath().normalize();
+        this.cacheRoot = Paths.get(System.getProperty("user.home"), ".touhou-manager", "image-cache");
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ImageVariant-" + (++count));
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        };
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, new ThreadPoolExecutor(2, 2, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(QUEUE_CAPACITY), threadFactory), "imageVariant");
+    }
+
+    /**
+     * 获取图片的缩略图
+     *
+     * @param relativePath 相对 thmanager-frontend/image 的路径（如 main/th06.jpg）
+     * @param width        目标宽度，必须是 {@link #WIDTHS} 之一
+     * @return 缩略图文件（无法生成时为原图），原图不存在、不是支持的格式或宽度不支持时为空
+     */
+    public Optional<Variant> getVariant(String relativePath, int width) {
+        if (!WIDTHS.contains(width)) {
+            return Optional.empty();
+        }
+        Path source = imageRoot.resolve(relativePath).normalize();
+        String extension = extensionOf(source);
+        if (!source.startsWith(imageRoot) || !EXTENSIONS.contains(extension) || !Files.isRegularFile(source)) {
+            return Optional.empty();
+        }
+
+        try {
+            String hash = sourceHash(source);
+            boolean png = extension.equals("png");
+            Path target = cacheRoot.resolve(hash + "-w" + width + (png ? ".png" : ".jpg"));
+            if (Files.isRegularFile(target)) {
+                return Optional.of(new Variant(target, hash + "-w" + width, png));
+            }
+
+            Future<Path> future = inFlight.computeIfAbsent(target, t -> submit(source, t, width, png));
+            Path generated = future.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            return Optional.of(new Variant(generated, hash + "-w" + width, png));
+        } catch (RejectedExecutionException | TimeoutException e) {
+            log.debug("缩略图生成繁忙，返回原图: {}", relativePath);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | ExecutionException e) {
+            log.warn("生成缩略图失败: {}", relativePath, e);
+        }
+        return Optional.of(new Variant(source, null, extension.equals("png")));
+    }
+
+    private Future<Path> submit(Path source, Path target, int width, boolean png) {
+        return executor.submit(() -> {
+            try {
+                return generate(source, target, width, png);
+            } finally {
+                inFlight.remove(target);
+            }
+        });
+    }
+
+    private Path generate(Path source, Path target, int width, boolean png) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage image = ImageIO.read(source.toFile());
+        if (image == null) {
+            throw new IOException("无法解码图片: " + source);
+        }
+        Files.createDirectories(cacheRoot);
+        Path temp = Files.createTempFile(cacheRoot, "variant", ".tmp");
+        try {
+            if (image.getWidth() <= width) {
+                // 原图已经足够小，原样保存，之后的请求不再解码
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            } else if (png) {
+                BufferedImage scaled = scale(image, width, true);
+                ImageIO.write(scaled, "png", temp.toFile());
+            } else {
+                writeJpeg(scale(image, width, false), temp);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.debug("已生成缩略图: {} -> {} ({} ms)", source.getFileName(), target.getFileName(),
+                (System.nanoTime() - start) / 1_000_000);
+        return target;
+    }
+
+    /**
+     * 逐次减半缩小到目标宽度的两倍以内，最后一步双线性插值，避免一次大比例缩小产生锯齿
+     */
+    private static BufferedImage scale(BufferedImage image, int width, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h;
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(1, (int) Math.round((double) image.getHeight() * w / image.getWidth()));
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w > width);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * 原图内容的SHA-256（前16位十六进制），按文件大小与修改时间缓存，原图未变化时不重复读取
+     */
+    private String sourceHash(Path source) throws IOException {
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        SourceHash cached = sourceHashes.get(source);
+        if (cached != null && cached.size() == size && cached.modified() == modified) {
+            return cached.hash();
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        String hash = HexFormat.of().formatHex(digest.digest(), 0, 8);
+        sourceHashes.put(source, new SourceHash(size, modified, hash));
+        return hash;
+    }
+
+    private static String extensionOf(Path path) {
+        String name = path.getFileName() == null ? "" : path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 缩略图文件
+     *
+     * @param file 文件路径
+     * @param etag 缩略图标识（原图哈希与宽度），返回原图时为null
+     * @param png  是否为PNG（否则为JPEG）
+     */
+    public record Variant(Path file, String etag, boolean png) {
+    }
+
+    private record SourceHash(long size, long modified, String hash) {
+    }
+}
@@ -0,0 +1,101 @@
+package com.thmanager.service;
+
+import com.thmanager.util.ImportTrace;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 最近导入的阶段耗时记录
+ *
+ * 保留最近 {@link #CAPACITY} 次已结束的 {@link ImportTrace}（包括解析失败、文件未变化等提前结束的导入），
+ * 供诊断接口按总耗时列出最慢的导入及各阶段的耗时分解。只在内存中保存，重启后清空。
+ */
+@Service
+public class ImportTraceRecorder {
+
+    /**
+     * 保留的导入记录数
+     */
+    static final int CAPACITY = 256;
+
+    private final Deque<ImportTrace> recent = new ArrayDeque<>(CAPACITY);
+
+    /**
+     * 记录一次已结束的导入，超出容量时丢弃最早的记录
+     */
+    public synchronized void record(ImportTrace trace) {
+        if (recent.size() == CAPACITY) {
+            recent.removeFirst();
+        }
+        recent.addLast(trace);
+    }
+
+    /**
+     * 最近的导入中总耗时最长的若干次
+     *
+     * @param limit 返回数量
+     * @return 按总耗时降序排列
+     */
+    public List<SlowImport> slowest(int limit) {
+        List<ImportTrace> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(recent);
+        }
+        return snapshot.stream()
+                .sorted(Comparator.comparingLong(ImportTrace::getDurationNanos).reversed())
+                .limit(Math.max(0, limit))
+                .map(ImportTraceRecorder::toView)
+                .toList();
+    }
+
+    /**
+     * @return 当前保留的导入记录数
+     */
+    public synchronized int size() {
+        return recent.size();
+    }
+
+    private static SlowImport toView(ImportTrace trace) {
+        List<StageTime> stages = trace.getStages().stream()
+                .map(stage -> new StageTime(stage.name(), stage.depth(), millis(stage.offsetNanos()),
+                        millis(stage.durationNanos())))
+                .toList();
+        return new SlowImport(trace.getFilePath(), trace.getSource(), trace.getStartedAt(), trace.getOutcome(),
+                millis(trace.getDurationNanos()), stages);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    /**
+     * 一次导入的耗时分解
+     *
+     * @param filePath  Replay文件路径
+     * @param source    触发来源（watch、scan）
+     * @param startedAt 开始时间（收到目录事件或开始处理的时间）
+     * @param outcome   结果
+     * @param totalMs   总耗时（毫秒）
+     * @param stages    各阶段，按开始时间排序
+     */
+    public record SlowImport(String filePath, String source, LocalDateTime startedAt, String outcome,
+            double totalMs, List<StageTime> stages) {
+    }
+
+    /**
+     * 一个阶段的耗时
+     *
+     * @param name       阶段名称
+     * @param depth      嵌套层级，0为顶层
+     * @param startMs    相对导入起点的开始时间（毫秒）
+     * @param durationMs 耗时（毫秒）
+     */
+    public record StageTime(String name, int depth, double startMs, double durationMs) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.thmanager.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.event.ReplayAnalyzedEvent;
+import com.thmanager.model.Replay;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Replay深度分析服务
+ *
+ * 新导入的Replay在同一次解析中就填好各关卡得分表与炸弹统计（状态 full）；
+ * 本服务只在应用启动时，于低优先级线程上补全早先只导入了头部信息的记录（状态 header）。
+ * 补全时优先使用压缩存储的 raw_json；原始JSON缺失或无法读取时重新解析归档副本或原文件，
+ * 两者都不可用时记为 failed 并输出警告，不再反复重试。
+ * 每条记录分析完成后发布 {@link ReplayAnalyzedEvent}。
+ * 待分析队列长度以 executor.queued{name=replayAnalysis} 导出。
+ */
+@Service
+public class ReplayAnalysisService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayAnalysisService.class);
+
+    /**
+     * 每批恢复的待分析记录数量
+     */
+    private static final int RESUME_BATCH_SIZE = 200;
+
+    private final ReplayDAO replayDAO;
+    private final ReplayArchiveService archiveService;
+    private final ReplayParser replayParser;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService executor;
+
+    public ReplayAnalysisService(ReplayDAO replayDAO, ReplayArchiveService archiveService,
+            ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.replayDAO = replayDAO;
+        this.archiveService = archiveService;
+        this.eventPublisher = eventPublisher;
+        this.replayParser = new ReplayParser();
+        // 单个低优先级线程，避免与导入和界面请求争抢CPU（用 ThreadPoolExecutor 以便导出队列长度）
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, Executors.newFixedThreadPool(1, r -> {
+            Thread t = new Thread(r, "ReplayAnalysis");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }), "replayAnalysis");
+    }
+
+    /**
+     * 补全仍处于 header 状态的记录
+     */
+    public void resumePending() {
+        executor.submit(() -> {
+            int resumed = 0;
+            int lastId = 0;
+            List<Replay> pending;
+            do {
+                pending = replayDAO.findPendingAnalysis(lastId, RESUME_BATCH_SIZE);
+                for (Replay replay : pending) {
+                    lastId = replay.getId();
+                    analyzeStored(replay);
+                    resumed++;
+                }
+            } while (pending.size() == RESUME_BATCH_SIZE);
+
+            if (resumed > 0) {
+                log.info("已恢复 {} 条未完成的深度分析", resumed);
+            }
+        });
+    }
+
+    private void analyzeStored(Replay replay) {
+        try {
+            Optional<JsonNode> root = replayParser.readTree(replay.getRawJson());
+            if (root.isPresent()) {
+                replayParser.applyDeepAnalysis(replay, root.get());
+            } else if (!reparse(replay)) {
+                log.warn("原始JSON与Replay文件均不可用，无法补全关卡数据: {}", replay.getFilePath());
+                replay.setAnalysisStatus(Replay.ANALYSIS_FAILED);
+                replayDAO.updateAnalysis(replay);
+                return;
+            }
+            if (!replayDAO.updateAnalysis(replay)) {
+                log.warn("深度分析结果写入失败: {}", replay.getFileName());
+                return;
+            }
+            eventPublisher.publishEvent(new ReplayAnalyzedEvent(replay));
+        } catch (Exception e) {
+            log.error("深度分析异常: {}", replay.getFileName(), e);
+        }
+    }
+
+    /**
+     * 重新解析归档副本（没有时用原文件），把关卡数据复制到记录上
+     *
+     * @return 解析成功返回true
+     */
+    private boolean reparse(Replay replay) {
+        log.warn("原始JSON缺失或无法读取，重新解析Replay文件: {}", replay.getFilePath());
+        Path file = replay.getArchiveHash() != null
+                ? archiveService.pathOf(replay.getArchiveHash())
+                : Path.of(replay.getFilePath());
+        if (!Files.exists(file)) {
+            file = Path.of(replay.getFilePath());
+        }
+        Optional<Replay> parsed = replayParser.parse(file, replay.getGameId());
+        if (parsed.isEmpty()) {
+            return false;
+        }
+        replay.setStageScoresList(parsed.get().getStageScoresList());
+        replay.setBombStatsList(parsed.get().getBombStatsList());
+        replay.setAnalysisStatus(Replay.ANALYSIS_FULL);
+        return true;
+    }
+}
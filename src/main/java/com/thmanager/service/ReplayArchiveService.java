@@ -0,0 +1,174 @@
+package com.thmanager.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Replay文件的内容寻址归档
+ *
+ * 游戏按 thXX_udYYYY.rpy 的固定槽位保存Replay，新录像会覆盖旧文件。导入时先把文件复制到
+ * ~/.touhou-manager/archive/{哈希前两位}/{SHA-256}.rpy，内容相同的文件只保存一份；
+ * replays 表的 archive_hash 记录对应副本，槽位被覆盖后旧记录改为指向副本，仍可查询与回放。
+ *
+ * 复制使用 {@link FileChannel#transferTo}（由操作系统在内核中完成，不经过Java堆），
+ * 哈希按复制后的副本计算，因此与归档内容严格一致，即使复制期间原文件被改写
+ * （不使用内存映射：Windows 上映射未释放前无法移动或删除文件）。
+ * 归档文件数以 thmanager.archive.files{result=stored|deduplicated} 计数。
+ */
+@Service
+public class ReplayArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayArchiveService.class);
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final Counter stored;
+    private final Counter deduplicated;
+
+    public ReplayArchiveService(MeterRegistry meterRegistry) {
+        this.root = Paths.get(System.getProperty("user.home"), ".touhou-manager", "archive");
+        this.stored = meterRegistry.counter("thmanager.archive.files", "result", "stored");
+        this.deduplicated = meterRegistry.counter("thmanager.archive.files", "result", "deduplicated");
+    }
+
+    /**
+     * 把文件复制到归档（内容已存在时不重复保存）
+     *
+     * @param file Replay文件
+     * @return 归档副本的SHA-256（十六进制）
+     */
+    public String archive(Path file) throws IOException {
+        Files.createDirectories(root);
+        Path temp = Files.createTempFile(root, "incoming", ".tmp");
+        try {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, out);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+            }
+
+            String hash = sha256(temp);
+            Path target = pathOf(hash);
+            if (Files.exists(target)) {
+                deduplicated.increment();
+                return hash;
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                stored.increment();
+                log.debug("已归档: {} -> {}", file.getFileName(), hash);
+            } catch (FileAlreadyExistsException e) {
+                // 另一个线程同时归档了相同内容
+                deduplicated.increment();
+            }
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 归档文件，失败时只记录日志（归档不影响导入）
+     *
+     * @return 归档副本的SHA-256，失败时为null
+     */
+    public String archiveQuietly(Path file) {
+        try {
+            return archive(file);
+        } catch (IOException e) {
+            log.warn("归档Replay失败: {} ({})", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param hash 归档副本的SHA-256
+     * @return 归档副本的路径（不检查是否存在）
+     * @throws IllegalArgumentException 哈希格式不正确
+     */
+    public Path pathOf(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("invalid archive hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash + ".rpy");
+    }
+
+    /**
+     * @param hash 归档副本的SHA-256，可以为null
+     * @return 存在的归档副本
+     */
+    public Optional<Path> find(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        Path path = pathOf(hash);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * @return 归档中全部副本的哈希
+     */
+    public List<String> hashes() throws IOException {
+        List<String> hashes = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return hashes;
+        }
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".rpy") && HASH.matcher(name.substring(0, name.length() - 4)).matches()) {
+                    hashes.add(name.substring(0, name.length() - 4));
+                }
+            });
+        }
+        return hashes;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
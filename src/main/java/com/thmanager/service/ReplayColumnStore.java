@@ -0,0 +1,639 @@
+package com.thmanager.service;
+
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.event.ReplayAnalyzedEvent;
+import com.thmanager.event.ReplayDeletedEvent;
+import com.thmanager.event.ReplayImportedEvent;
+import com.thmanager.model.Replay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+/**
+ * Replay统计用的列式内存存储
+ *
+ * 每条Replay占一行，各字段分别保存在基本类型数组中（分数、帧数、炸弹数、通关标记、到达关卡），
+ * 难度与自机（角色+机体）按字典编码为short。统计查询在数组上做紧凑循环，不访问SQLite，
+ * 筛选条件先换算成字典编码掩码，逐行只做数组下标比较。
+ *
+ * 应用就绪后预加载一次（快速启动模式下推迟到首次访问），之后由导入、深度分析和删除事件增量维护；同一ID重复写入时覆盖原行，
+ * 删除只清除存活标记。读写通过读写锁保护，聚合在读锁内完成。
+ * 所有分组汇总共用一个可拆分的累加核心（计数、求和、最大值，按分组键形成直方图），
+ * 行数较多时在公共 ForkJoinPool 上按行区间并行计算后合并。
+ */
+@Service
+public class ReplayColumnStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayColumnStore.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * 并行拆分后每个子区间的最小行数
+     */
+    private static final int MIN_SPLIT_ROWS = 4096;
+
+    private final ReplayDAO replayDAO;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Dictionary difficulties = new Dictionary();
+    private final Dictionary shotTypes = new Dictionary();
+    private final Map<Integer, Integer> rowById = new HashMap<>();
+    private volatile boolean loaded;
+    /**
+     * 内容版本号，每次写入释放写锁后递增
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 行数达到该值才并行汇总，小数据量直接在调用线程上循环，避免任务拆分开销
+     */
+    private final int parallelThreshold = Integer.getInteger("thmanager.statistics.parallel-threshold", 32_768);
+
+    private int size;
+    private int maxGameId;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] gameIds = new int[INITIAL_CAPACITY];
+    private short[] difficultyCodes = new short[INITIAL_CAPACITY];
+    private short[] shotTypeCodes = new short[INITIAL_CAPACITY];
+    private long[] scores = new long[INITIAL_CAPACITY];
+    private int[] frames = new int[INITIAL_CAPACITY];
+    private int[] zBombs = new int[INITIAL_CAPACITY];
+    private int[] xBombs = new int[INITIAL_CAPACITY];
+    private byte[] reachedStages = new byte[INITIAL_CAPACITY];
+    private boolean[] cleared = new boolean[INITIAL_CAPACITY];
+    private boolean[] live = new boolean[INITIAL_CAPACITY];
+    private byte[][] bombStats = new byte[INITIAL_CAPACITY][];
+
+    public ReplayColumnStore(ReplayDAO replayDAO) {
+        this.replayDAO = replayDAO;
+    }
+
+    /**
+     * 预加载（应用就绪后由 {@link com.thmanager.config.ReplayWatcherConfig} 调用；不预加载时在首次访问时加载）
+     */
+    public void load() {
+        ensureLoaded();
+    }
+
+    @EventListener
+    public void onReplayImported(ReplayImportedEvent event) {
+        put(event.replay());
+    }
+
+    @EventListener
+    public void onReplayAnalyzed(ReplayAnalyzedEvent event) {
+        put(event.replay());
+    }
+
+    @EventListener
+    public void onReplayDeleted(ReplayDeletedEvent event) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            Integer row = rowById.remove(event.replayId());
+            if (row != null) {
+                live[row] = false;
+                bombStats[row] = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * 写入或覆盖一行
+     *
+     * @param replay 至少包含统计用的列（id、游戏、自机、难度、关卡、分数、帧数、炸弹）
+     */
+    public void put(Replay replay) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            putLocked(replay);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return 内容版本号，写入（包括启动加载）可见之后递增，供统计接口的ETag使用
+     */
+    public long version() {
+        ensureLoaded();
+        return version.get();
+    }
+
+    /**
+     * @return 当前行数（不含已删除）
+     */
+    public int size() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return rowById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 汇总满足条件的Replay
+     */
+    public Summary summarize(Filter filter) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Summary[] groups = aggregate(filter, GroupBy.NONE);
+            return groups[0] != null ? groups[0] : new Summary();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按游戏分组汇总满足条件的Replay
+     *
+     * @return 游戏ID → 汇总，按游戏ID升序
+     */
+    public SortedMap<Integer, Summary> summarizeByGame(Filter filter) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return toMap(aggregate(filter, GroupBy.GAME), new TreeMap<>(), key -> key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按自机（角色+机体）分组汇总满足条件的Replay
+     *
+     * @return 自机名称 → 汇总，按自机首次导入的顺序
+     */
+    public Map<String, Summary> summarizeByShotType(Filter filter) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return toMap(aggregate(filter, GroupBy.SHOT_TYPE), new LinkedHashMap<>(), shotTypes::value);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按到达关卡分组汇总满足条件的Replay（未知关卡不计入）
+     *
+     * @return 关卡编号（与 {@link Replay#getReachedStageNumber()} 一致）→ 汇总，按编号升序
+     */
+    public SortedMap<Integer, Summary> summarizeByReachedStage(Filter filter) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            SortedMap<Integer, Summary> result = toMap(aggregate(filter, GroupBy.STAGE), new TreeMap<>(), key -> key);
+            result.remove(0);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static <K, M extends Map<K, Summary>> M toMap(Summary[] groups, M map, IntFunction<K> key) {
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] != null) {
+                map.put(key.apply(i), groups[i]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 按分组键汇总满足条件的行（调用方需持有读锁）
+     *
+     * 行数达到阈值（且公共池至少有两个并行度）时按行区间拆分，在公共 ForkJoinPool 上并行累加后合并各区间的结果；
+     * 工作线程只读取数组，调用方持有的读锁保证期间没有写入。
+     *
+     * @return 下标为分组键的汇总数组，没有匹配行的分组为null
+     */
+    private Summary[] aggregate(Filter filter, GroupBy groupBy) {
+        int groups = switch (groupBy) {
+            case NONE -> 1;
+            case GAME -> maxGameId + 1;
+            case SHOT_TYPE -> shotTypes.size();
+            case STAGE -> Byte.MAX_VALUE + 1;
+        };
+        Mask mask = mask(filter);
+        if (mask == null) {
+            return new Summary[groups];
+        }
+        AggregateTask task = new AggregateTask(mask, groupBy, groups, 0, size);
+        if (size < parallelThreshold || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return task.computeDirectly();
+        }
+        return ForkJoinPool.commonPool().invoke(task);
+    }
+
+    private enum GroupBy {
+        NONE, GAME, SHOT_TYPE, STAGE
+    }
+
+    /**
+     * 对 [from, to) 行区间分组汇总，区间超过阈值时二分并行
+     */
+    private final class AggregateTask extends RecursiveTask<Summary[]> {
+        private final Mask mask;
+        private final GroupBy groupBy;
+        private final int groups;
+        private final int from;
+        private final int to;
+
+        AggregateTask(Mask mask, GroupBy groupBy, int groups, int from, int to) {
+            this.mask = mask;
+            this.groupBy = groupBy;
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Summary[] compute() {
+            if (to - from <= Math.max(parallelThreshold / 2, MIN_SPLIT_ROWS)) {
+                return computeDirectly();
+            }
+            int mid = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(mask, groupBy, groups, from, mid);
+            AggregateTask right = new AggregateTask(mask, groupBy, groups, mid, to);
+            right.fork();
+            Summary[] result = left.compute();
+            Summary[] other = right.join();
+            for (int i = 0; i < groups; i++) {
+                if (result[i] == null) {
+                    result[i] = other[i];
+                } else if (other[i] != null) {
+                    result[i].merge(other[i]);
+                }
+            }
+            return result;
+        }
+
+        private Summary[] computeDirectly() {
+            Summary[] result = new Summary[groups];
+            for (int i = from; i < to; i++) {
+                if (!mask.matches(i)) {
+                    continue;
+                }
+                int key = switch (groupBy) {
+                    case NONE -> 0;
+                    case GAME -> gameIds[i];
+                    case SHOT_TYPE -> shotTypeCodes[i];
+                    case STAGE -> reachedStages[i];
+                };
+                if (key < 0 || key >= groups) {
+                    continue;
+                }
+                Summary summary = result[key];
+                if (summary == null) {
+                    summary = result[key] = new Summary();
+                }
+                summary.add(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 按自机分组收集满足条件的Replay的按关卡炸弹统计编码（见 {@link com.thmanager.model.StageBombView}）
+     *
+     * @return 自机名称 → 炸弹统计编码列表，未完成深度分析的Replay不包含在内
+     */
+    public Map<String, List<byte[]>> collectBombStatsByShotType(Filter filter) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Map<String, List<byte[]>> result = new LinkedHashMap<>();
+            Mask mask = mask(filter);
+            if (mask == null) {
+                return result;
+            }
+            for (int i = 0; i < size; i++) {
+                if (bombStats[i] != null && mask.matches(i)) {
+                    result.computeIfAbsent(shotTypes.value(shotTypeCodes[i]), k -> new ArrayList<>())
+                            .add(bombStats[i]);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按行遍历所有Replay的分数（读锁内回调，供分数分布摘要重建）
+     *
+     * @param visitor 每行回调
+     */
+    public void forEachScore(ScoreVisitor visitor) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                if (live[i]) {
+                    visitor.visit(gameIds[i], difficulties.value(difficultyCodes[i]),
+                            shotTypes.value(shotTypeCodes[i]), scores[i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @FunctionalInterface
+    public interface ScoreVisitor {
+        void visit(int gameId, String difficulty, String shotType, long score);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            long start = System.nanoTime();
+            replayDAO.scanStatisticsColumns(context -> putLocked(context.getResultObject()));
+            loaded = true;
+            version.incrementAndGet();
+            log.info("已加载 {} 条Replay（{} ms）", rowById.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putLocked(Replay replay) {
+        Integer existing = rowById.get(replay.getId());
+        int row;
+        if (existing != null) {
+            row = existing;
+        } else {
+            row = size++;
+            ensureCapacity(size);
+            rowById.put(replay.getId(), row);
+        }
+        ids[row] = replay.getId();
+        gameIds[row] = replay.getGameId();
+        maxGameId = Math.max(maxGameId, replay.getGameId());
+        difficultyCodes[row] = difficulties.encode(replay.getDifficulty());
+        shotTypeCodes[row] = shotTypes.encode(replay.getFullShotType());
+        scores[row] = replay.getTotalScore();
+        frames[row] = replay.getTotalFrames();
+        zBombs[row] = replay.getTotalZBombs();
+        xBombs[row] = replay.getTotalXBombs();
+        reachedStages[row] = (byte) Math.min(replay.getReachedStageNumber(), Byte.MAX_VALUE);
+        cleared[row] = replay.isCleared();
+        live[row] = true;
+        // 头部导入事件中尚无炸弹明细，保留已有值，等待深度分析事件更新
+        if (replay.getBombStatsBin() != null || existing == null) {
+            bombStats[row] = replay.getBombStatsBin();
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        gameIds = Arrays.copyOf(gameIds, capacity);
+        difficultyCodes = Arrays.copyOf(difficultyCodes, capacity);
+        shotTypeCodes = Arrays.copyOf(shotTypeCodes, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        frames = Arrays.copyOf(frames, capacity);
+        zBombs = Arrays.copyOf(zBombs, capacity);
+        xBombs = Arrays.copyOf(xBombs, capacity);
+        reachedStages = Arrays.copyOf(reachedStages, capacity);
+        cleared = Arrays.copyOf(cleared, capacity);
+        live = Arrays.copyOf(live, capacity);
+        bombStats = Arrays.copyOf(bombStats, capacity);
+    }
+
+    /**
+     * 将筛选条件换算为字典编码掩码
+     *
+     * @return 掩码，条件中的难度或自机不存在于字典（不可能有匹配行）时返回null
+     */
+    private Mask mask(Filter filter) {
+        boolean[] difficultyMask = difficulties.maskIgnoreCase(filter.difficulty());
+        boolean[] shotTypeMask = shotTypes.maskIgnoreCase(filter.shotType());
+        if ((filter.difficulty() != null && difficultyMask == null)
+                || (filter.shotType() != null && shotTypeMask == null)) {
+            return null;
+        }
+        return new Mask(filter, difficultyMask, shotTypeMask);
+    }
+
+    /**
+     * 筛选条件，各字段为null表示不限制
+     *
+     * @param gameId     游戏ID
+     * @param difficulty 难度（不区分大小写）
+     * @param shotType   自机，格式同 {@link Replay#getFullShotType()}（不区分大小写）
+     * @param cleared    是否通关
+     * @param minScore   最低分数（含）
+     * @param maxScore   最高分数（含）
+     */
+    public record Filter(Integer gameId, String difficulty, String shotType, Boolean cleared,
+                         Long minScore, Long maxScore) {
+
+        public static Filter all() {
+            return new Filter(null, null, null, null, null, null);
+        }
+
+        public static Filter of(int gameId, String difficulty) {
+            return new Filter(gameId, difficulty, null, null, null, null);
+        }
+    }
+
+    /**
+     * 在读锁内使用的逐行判断，条件已换算为基本类型
+     */
+    private final class Mask {
+        private final boolean anyGame;
+        private final int gameId;
+        private final boolean[] difficultyMask;
+        private final boolean[] shotTypeMask;
+        private final boolean anyCleared;
+        private final boolean clearedValue;
+        private final long minScore;
+        private final long maxScore;
+
+        Mask(Filter filter, boolean[] difficultyMask, boolean[] shotTypeMask) {
+            this.anyGame = filter.gameId() == null;
+            this.gameId = anyGame ? 0 : filter.gameId();
+            this.difficultyMask = difficultyMask;
+            this.shotTypeMask = shotTypeMask;
+            this.anyCleared = filter.cleared() == null;
+            this.clearedValue = !anyCleared && filter.cleared();
+            this.minScore = filter.minScore() != null ? filter.minScore() : Long.MIN_VALUE;
+            this.maxScore = filter.maxScore() != null ? filter.maxScore() : Long.MAX_VALUE;
+        }
+
+        boolean matches(int row) {
+            return live[row]
+                    && (anyGame || gameIds[row] == gameId)
+                    && (difficultyMask == null || difficultyMask[difficultyCodes[row]])
+                    && (shotTypeMask == null || shotTypeMask[shotTypeCodes[row]])
+                    && (anyCleared || cleared[row] == clearedValue)
+                    && scores[row] >= minScore && scores[row] <= maxScore;
+        }
+    }
+
+    /**
+     * 一组Replay的汇总
+     */
+    public final class Summary {
+        private int count;
+        private int clearCount;
+        private long totalScore;
+        private long bestScore;
+        private int bestReplayId;
+        private long totalFrames;
+        private long totalZBombs;
+        private long totalXBombs;
+
+        /**
+         * 合并另一组（行号在本组之后）的汇总，最高分相同时保留本组的记录
+         */
+        private void merge(Summary other) {
+            if (other.count == 0) {
+                return;
+            }
+            if (count == 0 || other.bestScore > bestScore) {
+                bestScore = other.bestScore;
+                bestReplayId = other.bestReplayId;
+            }
+            count += other.count;
+            clearCount += other.clearCount;
+            totalScore += other.totalScore;
+            totalFrames += other.totalFrames;
+            totalZBombs += other.totalZBombs;
+            totalXBombs += other.totalXBombs;
+        }
+
+        private void add(int row) {
+            if (count == 0 || scores[row] > bestScore) {
+                bestScore = scores[row];
+                bestReplayId = ids[row];
+            }
+            count++;
+            if (cleared[row]) {
+                clearCount++;
+            }
+            totalScore += scores[row];
+            totalFrames += frames[row];
+            totalZBombs += zBombs[row];
+            totalXBombs += xBombs[row];
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getClearCount() {
+            return clearCount;
+        }
+
+        public double getClearRate() {
+            return count > 0 ? (double) clearCount / count * 100 : 0.0;
+        }
+
+        public long getTotalScore() {
+            return totalScore;
+        }
+
+        public long getAverageScore() {
+            return count > 0 ? totalScore / count : 0;
+        }
+
+        public long getBestScore() {
+            return bestScore;
+        }
+
+        /**
+         * @return 最高分Replay的ID，没有记录时为0
+         */
+        public int getBestReplayId() {
+            return bestReplayId;
+        }
+
+        public long getTotalFrames() {
+            return totalFrames;
+        }
+
+        public long getTotalZBombs() {
+            return totalZBombs;
+        }
+
+        public long getTotalXBombs() {
+            return totalXBombs;
+        }
+    }
+
+    /**
+     * 字符串字典编码，编码从0开始连续分配
+     */
+    private static final class Dictionary {
+        private final Map<String, Short> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        short encode(String value) {
+            String key = value != null ? value : "";
+            Short code = codes.get(key);
+            if (code == null) {
+                if (values.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("dictionary is full");
+                }
+                code = (short) values.size();
+                codes.put(key, code);
+                values.add(key);
+            }
+            return code;
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        /**
+         * @return 与给定值（不区分大小写）相同的编码掩码；value为null或没有匹配项时返回null
+         */
+        boolean[] maskIgnoreCase(String value) {
+            if (value == null) {
+                return null;
+            }
+            boolean[] mask = new boolean[values.size()];
+            boolean any = false;
+            for (int code = 0; code < values.size(); code++) {
+                if (values.get(code).equalsIgnoreCase(value)) {
+                    mask[code] = true;
+                    any = true;
+                }
+            }
+            return any ? mask : null;
+        }
+    }
+}
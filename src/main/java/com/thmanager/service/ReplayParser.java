@@ -2,8 +2,13 @@ package com.thmanager.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.thmanager.model.Replay;
 import com.thmanager.model.Replay.StageBombStats;
+import com.thmanager.model.Replay;
+import com.thmanager.util.ImportTrace;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -21,44 +26,159 @@ import java.util.concurrent.TimeUnit;
 
 public class ReplayParser {
 
+    private static final Logger log = LoggerFactory.getLogger(ReplayParser.class);
+
     private static final DateTimeFormatter DATE_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
 
     private static final String PYTHON_SCRIPT_NAME = "threp_parser_wrapper.py";
 
+    /**
+     * 解析器不是容器管理的Bean，计时器注册到全局注册表（Actuator 会把它接入导出的注册表）
+     */
+    private static final Timer SUBPROCESS_TIMER = Timer.builder("thmanager.parser.subprocess")
+            .description("Python解析进程耗时（启动到退出）")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    private static final Timer JSON_TIMER = Timer.builder("thmanager.parser.json")
+            .description("解析输出中的JSON并构造Replay头部的耗时")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    private static final Timer DEEP_ANALYSIS_TIMER = Timer.builder("thmanager.parser.deep_analysis")
+            .description("填充关卡得分表与炸弹统计的耗时")
+            .register(Metrics.globalRegistry);
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * 解析Replay：头部字段、各关卡得分表与炸弹统计一次填好（状态 full）
+     *
+     * 关卡数据就在同一份解析输出中，只需从JSON树上复制出来，不值得另排到后台重新读取。
+     *
+     * @param filePath Replay文件路径
+     * @param gameId   游戏ID
+     * @return 解析结果，失败时为空
+     */
     public Optional<Replay> parse(Path filePath, int gameId) {
-        System.out.println("========== 开始解析 Replay ==========");
-        System.out.println("文件: " + filePath);
+        return parseHeader(filePath, gameId).map(result -> {
+            applyDeepAnalysis(result.replay(), result.root());
+            return result.replay();
+        });
+    }
+
+    /**
+     * 运行解析脚本并填充头部字段（自机、难度、总分、日期等），
+     * 各关卡得分表与炸弹分析由 {@link #applyDeepAnalysis(Replay, JsonNode)} 在同一棵JSON树上填充
+     *
+     * @param filePath Replay文件路径
+     * @param gameId   游戏ID
+     * @return 头部解析结果及原始JSON树
+     */
+    private Optional<ParseResult> parseHeader(Path filePath, int gameId) {
+        log.debug("开始解析: {}", filePath);
 
         if (!Files.exists(filePath)) {
-            System.err.println("错误：文件不存在！");
+            log.warn("文件不存在: {}", filePath);
             return Optional.empty();
         }
 
         try {
             Path scriptPath = findPythonScript();
             if (scriptPath == null) {
-                System.err.println("错误：找不到Python解析脚本");
+                log.error("找不到Python解析脚本");
                 return Optional.empty();
             }
 
-            Optional<JsonNode> jsonResult = callPythonParser(scriptPath, filePath);
-            if (jsonResult.isEmpty()) {
+            Optional<String> output;
+            try (ImportTrace.Span span = ImportTrace.span("parse.subprocess")) {
+                output = callPythonParser(scriptPath, filePath);
+            }
+            if (output.isEmpty()) {
                 return Optional.empty();
             }
 
-            Replay replay = parseJsonToReplay(jsonResult.get(), filePath, gameId);
+            log.debug("解析JSON数据...");
+            Timer.Sample sample = Timer.start();
+            JsonNode root;
+            Replay replay;
+            try (ImportTrace.Span span = ImportTrace.span("parse.json")) {
+                Optional<JsonNode> jsonResult = extractAndParseJson(output.get());
+                if (jsonResult.isEmpty()) {
+                    sample.stop(JSON_TIMER);
+                    return Optional.empty();
+                }
+
+                root = jsonResult.get();
+                replay = parseJsonToReplay(root, filePath, gameId);
+            }
+            sample.stop(JSON_TIMER);
+
+            log.debug("解析成功: {} {} {}", replay.getFullShotType(), replay.getDifficultyDisplay(),
+                    replay.getTotalScore());
+
+            return Optional.of(new ParseResult(replay, root));
+
+        } catch (Exception e) {
+            log.warn("解析异常: {}", filePath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 深度分析：填充各关卡得分表与按关卡的炸弹统计，并将状态标记为 full
+     *
+     * @param replay 已完成头部解析的Replay
+     * @param root   解析器输出的JSON树
+     */
+    public void applyDeepAnalysis(Replay replay, JsonNode root) {
+        DEEP_ANALYSIS_TIMER.record(() -> fillStageData(replay, root));
+    }
 
-            System.out.println("✓ 解析成功: " + replay.getFullShotType() + " " +
-                    replay.getDifficultyDisplay() + " " + replay.getFormattedScore());
+    private void fillStageData(Replay replay, JsonNode root) {
+        JsonNode stageScoreNode = root.get("stageScore");
+        if (stageScoreNode != null && stageScoreNode.isArray()) {
+            List<Long> scores = new ArrayList<>();
+            for (JsonNode scoreNode : stageScoreNode) {
+                scores.add(scoreNode.asLong());
+            }
+            replay.setStageScoresList(scores);
+        }
+
+        JsonNode bombAnalysis = root.get("bombAnalysis");
+        if (bombAnalysis != null) {
+            JsonNode byStageNode = bombAnalysis.get("byStage");
+            if (byStageNode != null && byStageNode.isArray()) {
+                List<StageBombStats> bombStats = new ArrayList<>();
+                for (JsonNode stageNode : byStageNode) {
+                    StageBombStats stats = new StageBombStats();
+                    stats.stageNum = stageNode.get("stage").asInt(0);
+                    stats.zCount = stageNode.get("z_count").asInt(0);
+                    stats.xCount = stageNode.get("x_count").asInt(0);
+                    stats.startFrame = stageNode.get("start_frame").asInt(0);
+                    stats.endFrame = stageNode.get("end_frame").asInt(0);
+                    bombStats.add(stats);
+                }
+                replay.setBombStatsList(bombStats);
+            }
+        }
 
-            return Optional.of(replay);
+        replay.setAnalysisStatus(Replay.ANALYSIS_FULL);
+    }
 
+    /**
+     * 将数据库中保存的原始JSON重新读取为JSON树（用于恢复未完成的深度分析）
+     *
+     * @param rawJson 原始解析JSON
+     * @return JSON树，解析失败时为空
+     */
+    public Optional<JsonNode> readTree(String rawJson) {
+        if (rawJson == null || rawJson.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readTree(rawJson));
         } catch (Exception e) {
-            System.err.println("✗ 解析异常: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("JSON解析失败: {}", e.getMessage());
             return Optional.empty();
         }
     }
@@ -74,7 +194,7 @@ public class ReplayParser {
         for (String path : possiblePaths) {
             Path p = Paths.get(path);
             if (Files.exists(p)) {
-                System.out.println("找到Python脚本: " + p.toAbsolutePath());
+                log.debug("找到Python脚本: {}", p.toAbsolutePath());
                 return p.toAbsolutePath();
             }
         }
@@ -93,7 +213,12 @@ public class ReplayParser {
         return null;
     }
 
-    private Optional<JsonNode> callPythonParser(Path scriptPath, Path replayPath) {
+    /**
+     * 运行Python解析脚本
+     *
+     * @return 脚本的标准输出，超时或失败时为空
+     */
+    private Optional<String> callPythonParser(Path scriptPath, Path replayPath) {
         try {
             String pythonCmd = System.getProperty("os.name").toLowerCase().contains("win")
                     ? "python" : "python3";
@@ -107,7 +232,8 @@ public class ReplayParser {
             pb.redirectErrorStream(true);
             pb.directory(scriptPath.getParent().toFile());
 
-            System.out.println("[1/2] 执行Python解析...");
+            log.debug("执行Python解析...");
+            Timer.Sample sample = Timer.start();
             Process process = pb.start();
 
             StringBuilder output = new StringBuilder();
@@ -120,22 +246,22 @@ public class ReplayParser {
             }
 
             boolean finished = process.waitFor(30, TimeUnit.SECONDS);
+            sample.stop(SUBPROCESS_TIMER);
             if (!finished) {
                 process.destroyForcibly();
-                System.err.println("错误：Python解析超时");
+                log.warn("Python解析超时: {}", replayPath);
                 return Optional.empty();
             }
 
             if (process.exitValue() != 0) {
-                System.err.println("Python错误: " + output);
+                log.warn("Python错误: {}", output);
                 return Optional.empty();
             }
 
-            System.out.println("[2/2] 解析JSON数据...");
-            return extractAndParseJson(output.toString());
+            return Optional.of(output.toString());
 
         } catch (Exception e) {
-            System.err.println("调用Python失败: " + e.getMessage());
+            log.warn("调用Python失败: {}", e.getMessage());
             return Optional.empty();
         }
     }
@@ -149,7 +275,7 @@ public class ReplayParser {
             try {
                 return Optional.of(objectMapper.readTree(json));
             } catch (Exception e) {
-                System.err.println("JSON解析失败: " + e.getMessage());
+                log.debug("JSON解析失败: {}", e.getMessage());
             }
         }
 
@@ -159,14 +285,22 @@ public class ReplayParser {
             try {
                 return Optional.of(objectMapper.readTree(output.substring(start, end + 1)));
             } catch (Exception e) {
-                System.err.println("JSON解析失败: " + e.getMessage());
+                log.warn("JSON解析失败: {}", e.getMessage());
             }
         }
 
         return Optional.empty();
     }
 
-    private Replay parseJsonToReplay(JsonNode root, Path filePath, int gameId) {
+    /**
+     * 由解析器输出的JSON树构造Replay，只填充头部字段
+     *
+     * @param root     解析器输出的JSON树
+     * @param filePath Replay文件路径（文件不存在时文件大小记为0）
+     * @param gameId   游戏ID
+     * @return 头部解析状态的Replay
+     */
+    public Replay parseJsonToReplay(JsonNode root, Path filePath, int gameId) {
         Replay replay = new Replay();
 
         replay.setGameId(gameId);
@@ -189,20 +323,11 @@ public class ReplayParser {
 
         replay.setGameVersion(inferGameVersion(replay.getCharacter(), replay.getShotType()));
 
-        // 分数信息
+        // 分数信息（只取最后一关的累计分数作为总分，完整得分表由深度分析填充）
         JsonNode stageScoreNode = root.get("stageScore");
-        if (stageScoreNode != null && stageScoreNode.isArray()) {
-            List<Long> scores = new ArrayList<>();
-            for (JsonNode scoreNode : stageScoreNode) {
-                scores.add(scoreNode.asLong());
-            }
-            replay.setStageScoresList(scores);
-            replay.setStageScoresJson(stageScoreNode.toString());
-
-            if (!scores.isEmpty()) {
-                replay.setTotalScore(scores.get(scores.size() - 1));
-            }
-        } else {
+        if (stageScoreNode != null && stageScoreNode.isArray() && stageScoreNode.size() > 0) {
+            replay.setTotalScore(stageScoreNode.get(stageScoreNode.size() - 1).asLong());
+        } else if (stageScoreNode == null || !stageScoreNode.isArray()) {
             replay.setTotalScore(root.get("totalScore").asLong(0));
         }
 
@@ -222,31 +347,16 @@ public class ReplayParser {
         replay.setPlayerName(getText(root, "player"));
         replay.setSlowRate((float) root.get("slowRate").asDouble(0.0));
 
-        // 炸弹统计
+        // 炸弹总数（按关卡的明细由深度分析填充）
         JsonNode bombAnalysis = root.get("bombAnalysis");
         if (bombAnalysis != null) {
             replay.setTotalZBombs(bombAnalysis.get("totalZ").asInt(0));
             replay.setTotalXBombs(bombAnalysis.get("totalX").asInt(0));
             replay.setTotalCBombs(bombAnalysis.get("totalC").asInt(0));
-
-            JsonNode byStageNode = bombAnalysis.get("byStage");
-            if (byStageNode != null && byStageNode.isArray()) {
-                List<StageBombStats> bombStats = new ArrayList<>();
-                for (JsonNode stageNode : byStageNode) {
-                    StageBombStats stats = new StageBombStats();
-                    stats.stageNum = stageNode.get("stage").asInt(0);
-                    stats.zCount = stageNode.get("z_count").asInt(0);
-                    stats.xCount = stageNode.get("x_count").asInt(0);
-                    stats.startFrame = stageNode.get("start_frame").asInt(0);
-                    stats.endFrame = stageNode.get("end_frame").asInt(0);
-                    bombStats.add(stats);
-                }
-                replay.setBombStatsList(bombStats);
-                replay.setBombStatsJson(byStageNode.toString());
-            }
         }
 
         replay.setRawJson(root.toString());
+        replay.setAnalysisStatus(Replay.ANALYSIS_HEADER);
 
         return replay;
     }
@@ -274,6 +384,12 @@ public class ReplayParser {
         return "Unknown";
     }
 
+    /**
+     * 头部解析结果：Replay对象及对应的原始JSON树，供深度分析继续使用
+     */
+    private record ParseResult(Replay replay, JsonNode root) {
+    }
+
     private String getText(JsonNode node, String field) {
         if (node.has(field) && !node.get(field).isNull()) {
             return node.get(field).asText();
@@ -3,6 +3,8 @@ package com.thmanager.service;
 import com.thmanager.dao.GameDAO;
 import com.thmanager.model.Game;
 import com.thmanager.model.Replay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -26,6 +28,8 @@ import java.util.stream.Stream;
 @Service
 public class ReplayScanner {
 
+    private static final Logger log = LoggerFactory.getLogger(ReplayScanner.class);
+
     /**
      * 游戏数据访问对象
      */
@@ -83,7 +87,7 @@ public class ReplayScanner {
         try {
             Path replayDir = Paths.get(game.getReplayFolder());
 
-            System.out.println("Replay folder: " + replayDir);
+            log.debug("Replay folder: {}", replayDir);
             if (!Files.exists(replayDir) || !Files.isDirectory(replayDir)) {
                 return replays;
             }
@@ -94,21 +98,21 @@ public class ReplayScanner {
                         .collect(Collectors.toList());
 
                 for (Path rpy : rpyFiles) {
-                    System.out.println("Replay file: " + rpy);
+                    log.debug("Replay file: {}", rpy);
                     Optional<Replay> replay = parser.parse(rpy, game.getId());
                     if (replay.isPresent()) {
                         Replay r = replay.get();
                         r.setGameId(game.getId());
                         r.setGameTitle(game.getDisplayName());
 
-                        System.out.println("successful scan" + r.getGameTitle());
+                        log.debug("扫描成功: {}", r.getGameTitle());
                         replays.add(r);
                     }
                 }
             }
 
         } catch (IOException e) {
-            System.err.println("扫描replay失败 [" + game.getDisplayName() + "]: " + e.getMessage());
+            log.warn("扫描replay失败 [{}]: {}", game.getDisplayName(), e.getMessage());
         }
 
         return replays;
@@ -142,7 +146,7 @@ public class ReplayScanner {
 
             return true;
         } catch (IOException e) {
-            System.err.println("播放replay失败: " + e.getMessage());
+            log.warn("播放replay失败: {}", e.getMessage());
             return false;
         }
     }
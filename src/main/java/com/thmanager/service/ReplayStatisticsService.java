@@ -4,6 +4,9 @@ import com.thmanager.dao.GameDAO;
 import com.thmanager.dao.ReplayDAO;
 import com.thmanager.model.Game;
 import com.thmanager.model.Replay;
+import com.thmanager.model.StageBombView;
+import com.thmanager.model.StageScoreStat;
+import com.thmanager.util.ScoreDigest;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -12,16 +15,23 @@ import java.util.stream.Collectors;
 /**
  * Replay专项统计服务
  * 实现：最高分追踪、机体使用统计、到达面数统计、每面炸弹统计
+ * 计数、通关率、分数与炸弹汇总在 {@link ReplayColumnStore} 上计算，只有需要返回完整记录时才查询数据库；
+ * 分位数与百分位排名来自 {@link ScoreSketchService} 的分数分布摘要
  */
 @Service
 public class ReplayStatisticsService {
 
     private final ReplayDAO replayDAO;
     private final GameDAO gameDAO;
+    private final ReplayColumnStore columnStore;
+    private final ScoreSketchService scoreSketchService;
 
-    public ReplayStatisticsService(ReplayDAO replayDAO, GameDAO gameDAO) {
+    public ReplayStatisticsService(ReplayDAO replayDAO, GameDAO gameDAO, ReplayColumnStore columnStore,
+            ScoreSketchService scoreSketchService) {
         this.replayDAO = replayDAO;
         this.gameDAO = gameDAO;
+        this.columnStore = columnStore;
+        this.scoreSketchService = scoreSketchService;
     }
 
     // ========== 1. 某游戏某难度最大分数 ==========
@@ -41,37 +51,39 @@ public class ReplayStatisticsService {
     }
 
     public boolean isNewHighScore(int gameId, String difficulty, long newScore) {
-        Optional<Replay> currentBest = getBestScore(gameId, difficulty);
-        return currentBest.isEmpty() || newScore > currentBest.get().getTotalScore();
+        return checkHighScore(gameId, difficulty, newScore).isNewHighScore();
+    }
+
+    /**
+     * 判断是否为新的最高分，并给出该分数在已有记录中的百分位排名
+     *
+     * 最高分来自列式存储，百分位来自分数分布摘要，均不访问数据库。
+     */
+    public HighScoreCheck checkHighScore(int gameId, String difficulty, long newScore) {
+        ReplayColumnStore.Summary summary = columnStore.summarize(ReplayColumnStore.Filter.of(gameId, difficulty));
+        boolean newHigh = summary.getCount() == 0 || newScore > summary.getBestScore();
+        double rank = scoreSketchService.percentileRank(gameId, difficulty, newScore);
+        return new HighScoreCheck(newHigh, summary.getCount() > 0 ? summary.getBestScore() : null,
+                Double.isNaN(rank) ? null : rank * 100);
     }
 
     // ========== 2. 某游戏某难度机体使用统计 ==========
 
     public List<ShotTypeUsage> getShotTypeUsage(int gameId, String difficulty) {
-        List<Replay> replays = replayDAO.findByGame(gameId).stream()
-                .filter(r -> difficulty.equalsIgnoreCase(r.getDifficulty()))
-                .toList();
-
-        Map<String, ShotTypeUsage> usageMap = new HashMap<>();
-
-        for (Replay r : replays) {
-            String shot = r.getFullShotType();
-            ShotTypeUsage usage = usageMap.get(shot);
-            if (usage == null) {
-                usage = new ShotTypeUsage(shot, 0, 0, 0, 0, new ArrayList<>());
-                usageMap.put(shot, usage);
-            }
+        return getShotTypeUsage(gameId, difficulty, replayDAO.findByGameAndDifficulty(gameId, difficulty));
+    }
 
-            usage.useCount++;
-            usage.totalScore += r.getTotalScore();
-            usage.bestScore = Math.max(usage.bestScore, r.getTotalScore());
-            usage.records.add(r);
-        }
+    /**
+     * @param records 该游戏该难度的Replay，仅用于填充各项的记录列表，统计数值来自列式存储
+     */
+    private List<ShotTypeUsage> getShotTypeUsage(int gameId, String difficulty, List<Replay> records) {
+        Map<String, List<Replay>> recordsByShot = records.stream()
+                .collect(Collectors.groupingBy(Replay::getFullShotType));
 
-        List<ShotTypeUsage> result = new ArrayList<>(usageMap.values());
-        for (ShotTypeUsage u : result) {
-            u.averageScore = u.totalScore / u.useCount;
-        }
+        List<ShotTypeUsage> result = new ArrayList<>();
+        columnStore.summarizeByShotType(ReplayColumnStore.Filter.of(gameId, difficulty)).forEach((shot, s) ->
+                result.add(new ShotTypeUsage(shot, s.getCount(), s.getTotalScore(), s.getBestScore(),
+                        s.getAverageScore(), recordsByShot.getOrDefault(shot, new ArrayList<>()))));
 
         return result.stream()
                 .sorted(Comparator.comparingInt((ShotTypeUsage u) -> u.useCount).reversed())
@@ -81,155 +93,199 @@ public class ReplayStatisticsService {
     // ========== 3. 某游戏某难度到达面数统计 ==========
 
     public List<StageReachStat> getStageReachStats(int gameId, String difficulty) {
-        List<Replay> replays = replayDAO.findByGame(gameId).stream()
-                .filter(r -> difficulty.equalsIgnoreCase(r.getDifficulty()))
-                .toList();
-
-        Map<Integer, StageReachStat> stats = new TreeMap<>();
-
-        for (Replay r : replays) {
-            int stageNum = r.getReachedStageNumber();
-            if (stageNum <= 0)
-                continue;
-
-            StageReachStat stat = stats.get(stageNum);
-            if (stat == null) {
-                stat = new StageReachStat(stageNum, 0, 0, 0, 0.0, new ArrayList<>());
-                stats.put(stageNum, stat);
-            }
-
-            stat.reachCount++;
-            if (r.isCleared()) {
-                stat.clearCount++;
-            }
-            stat.totalScore += r.getTotalScore();
-            stat.records.add(r);
-        }
-
-        for (StageReachStat s : stats.values()) {
-            s.clearRate = s.reachCount > 0 ? (double) s.clearCount / s.reachCount * 100 : 0.0;
-        }
+        return getStageReachStats(gameId, difficulty, replayDAO.findByGameAndDifficulty(gameId, difficulty));
+    }
 
-        return new ArrayList<>(stats.values());
+    /**
+     * @param records 该游戏该难度的Replay，仅用于填充各项的记录列表，统计数值来自列式存储
+     */
+    private List<StageReachStat> getStageReachStats(int gameId, String difficulty, List<Replay> records) {
+        Map<Integer, List<Replay>> recordsByStage = records.stream()
+                .collect(Collectors.groupingBy(Replay::getReachedStageNumber));
+
+        List<StageReachStat> result = new ArrayList<>();
+        columnStore.summarizeByReachedStage(ReplayColumnStore.Filter.of(gameId, difficulty)).forEach((stage, s) ->
+                result.add(new StageReachStat(stage, s.getCount(), s.getClearCount(), s.getTotalScore(),
+                        s.getClearRate(), recordsByStage.getOrDefault(stage, new ArrayList<>()))));
+        return result;
     }
 
     public double getClearRate(int gameId, String difficulty) {
-        List<Replay> replays = replayDAO.findByGame(gameId).stream()
-                .filter(r -> difficulty.equalsIgnoreCase(r.getDifficulty()))
-                .toList();
-
-        if (replays.isEmpty())
-            return 0.0;
+        return columnStore.summarize(ReplayColumnStore.Filter.of(gameId, difficulty)).getClearRate();
+    }
 
-        long clearCount = replays.stream().filter(Replay::isCleared).count();
-        return (double) clearCount / replays.size() * 100;
+    /**
+     * 按任意条件组合汇总（全部在列式存储上完成，不访问数据库）
+     *
+     * @param filter 筛选条件
+     * @return 汇总结果
+     */
+    public ReplayColumnStore.Summary query(ReplayColumnStore.Filter filter) {
+        return columnStore.summarize(filter);
     }
 
     // ========== 4. 某游戏某难度各面炸弹使用统计 ==========
 
     public List<StageBombStat> getStageBombStats(int gameId, String difficulty) {
-        List<Replay> replays = replayDAO.findByGame(gameId).stream()
-                .filter(r -> difficulty.equalsIgnoreCase(r.getDifficulty()))
-                .filter(r -> r.getBombStatsList() != null)
-                .toList();
+        Map<String, List<byte[]>> byShot =
+                columnStore.collectBombStatsByShotType(ReplayColumnStore.Filter.of(gameId, difficulty));
 
-        if (replays.isEmpty()) {
+        if (byShot.isEmpty()) {
             return new ArrayList<>();
         }
 
-        Map<Integer, List<Replay.StageBombStats>> byStage = new HashMap<>();
-
-        for (Replay r : replays) {
-            for (Replay.StageBombStats stats : r.getBombStatsList()) {
-                byStage.computeIfAbsent(stats.stageNum, k -> new ArrayList<>()).add(stats);
+        StageBombView view = new StageBombView();
+        StageBombAccumulator acc = new StageBombAccumulator();
+        for (List<byte[]> stats : byShot.values()) {
+            for (byte[] data : stats) {
+                acc.add(view.wrap(data));
             }
         }
-
-        List<StageBombStat> result = new ArrayList<>();
-        for (Map.Entry<Integer, List<Replay.StageBombStats>> entry : byStage.entrySet()) {
-            int stageNum = entry.getKey();
-            List<Replay.StageBombStats> list = entry.getValue();
-
-            double avgZBombs = list.stream().mapToInt(s -> s.zCount).average().orElse(0.0);
-            double avgXBombs = list.stream().mapToInt(s -> s.xCount).average().orElse(0.0);
-            int maxZBombs = list.stream().mapToInt(s -> s.zCount).max().orElse(0);
-            int maxXBombs = list.stream().mapToInt(s -> s.xCount).max().orElse(0);
-
-            result.add(new StageBombStat(
-                    stageNum,
-                    list.size(),
-                    avgZBombs,
-                    avgXBombs,
-                    maxZBombs,
-                    maxXBombs));
-        }
-
-        return result.stream()
-                .sorted(Comparator.comparingInt(StageBombStat::getStageNumber))
-                .collect(Collectors.toList());
+        return acc.toStats(true);
     }
 
     public Map<String, List<StageBombStat>> getBombStatsByShotType(int gameId, String difficulty) {
-        List<Replay> replays = replayDAO.findByGame(gameId).stream()
-                .filter(r -> difficulty.equalsIgnoreCase(r.getDifficulty()))
-                .filter(r -> r.getBombStatsList() != null)
-                .toList();
-
-        Map<String, List<Replay>> byShot = replays.stream()
-                .collect(Collectors.groupingBy(Replay::getFullShotType));
-
+        StageBombView view = new StageBombView();
         Map<String, List<StageBombStat>> result = new HashMap<>();
+        columnStore.collectBombStatsByShotType(ReplayColumnStore.Filter.of(gameId, difficulty)).forEach((shot, stats) -> {
+            StageBombAccumulator acc = new StageBombAccumulator();
+            for (byte[] data : stats) {
+                acc.add(view.wrap(data));
+            }
+            result.put(shot, acc.toStats(false));
+        });
+        return result;
+    }
 
-        for (Map.Entry<String, List<Replay>> entry : byShot.entrySet()) {
-            String shot = entry.getKey();
-            List<Replay> shotReplays = entry.getValue();
-
-            Map<Integer, List<Replay.StageBombStats>> byStage = new HashMap<>();
-            for (Replay r : shotReplays) {
-                for (Replay.StageBombStats stats : r.getBombStatsList()) {
-                    byStage.computeIfAbsent(stats.stageNum, k -> new ArrayList<>()).add(stats);
+    /**
+     * 按关卡编号累加炸弹使用情况，数组下标即关卡编号，直接读取二进制视图而不创建中间对象
+     *
+     * 关卡编号超出 [0, {@value #MAX_STAGE}] 的记录视为损坏数据跳过（与列式存储中到达关卡的上限相同），
+     * 不会按损坏的编号分配数组。
+     */
+    private static final class StageBombAccumulator {
+        private static final int MAX_STAGE = Byte.MAX_VALUE;
+
+        private int[] samples = new int[10];
+        private long[] sumZ = new long[10];
+        private long[] sumX = new long[10];
+        private int[] maxZ = new int[10];
+        private int[] maxX = new int[10];
+
+        void add(StageBombView view) {
+            for (int i = 0; i < view.size(); i++) {
+                int stage = view.stageNum(i);
+                if (stage < 0 || stage > MAX_STAGE) {
+                    continue;
                 }
+                ensureCapacity(stage + 1);
+                int z = view.zCount(i);
+                int x = view.xCount(i);
+                samples[stage]++;
+                sumZ[stage] += z;
+                sumX[stage] += x;
+                maxZ[stage] = Math.max(maxZ[stage], z);
+                maxX[stage] = Math.max(maxX[stage], x);
             }
+        }
 
-            List<StageBombStat> stageStats = new ArrayList<>();
-            for (Map.Entry<Integer, List<Replay.StageBombStats>> se : byStage.entrySet()) {
-                List<Replay.StageBombStats> list = se.getValue();
-                stageStats.add(new StageBombStat(
-                        se.getKey(),
-                        list.size(),
-                        list.stream().mapToInt(s -> s.zCount).average().orElse(0.0),
-                        list.stream().mapToInt(s -> s.xCount).average().orElse(0.0),
-                        0, 0));
+        List<StageBombStat> toStats(boolean withMax) {
+            List<StageBombStat> result = new ArrayList<>();
+            for (int stage = 0; stage < samples.length; stage++) {
+                int n = samples[stage];
+                if (n == 0) {
+                    continue;
+                }
+                result.add(new StageBombStat(
+                        stage,
+                        n,
+                        (double) sumZ[stage] / n,
+                        (double) sumX[stage] / n,
+                        withMax ? maxZ[stage] : 0,
+                        withMax ? maxX[stage] : 0));
             }
+            return result;
+        }
 
-            result.put(shot, stageStats.stream()
-                    .sorted(Comparator.comparingInt(StageBombStat::getStageNumber))
-                    .collect(Collectors.toList()));
+        private void ensureCapacity(int size) {
+            if (size <= samples.length) {
+                return;
+            }
+            int newSize = Math.max(size, samples.length * 2);
+            samples = Arrays.copyOf(samples, newSize);
+            sumZ = Arrays.copyOf(sumZ, newSize);
+            sumX = Arrays.copyOf(sumX, newSize);
+            maxZ = Arrays.copyOf(maxZ, newSize);
+            maxX = Arrays.copyOf(maxX, newSize);
         }
+    }
 
-        return result;
+    // ========== 5. 各面得分增量统计（基于 replay_stages） ==========
+
+    public List<StageScoreStat> getStageScoreStats(int gameId, String difficulty) {
+        return replayDAO.findStageStats(gameId, difficulty);
     }
 
-    // ========== 5. 综合报告 ==========
+    public double getAverageStageScoreGain(int gameId, String difficulty, int stageNum) {
+        return replayDAO.averageStageScoreGain(gameId, difficulty, stageNum);
+    }
+
+    // ========== 6. 综合报告 ==========
 
     public DifficultyFullReport generateDifficultyReport(int gameId, String difficulty) {
         Game game = gameDAO.findById(gameId).orElse(null);
         if (game == null)
             return null;
 
-        long totalAttempts = replayDAO.findByGame(gameId).stream()
-                .filter(r -> difficulty.equalsIgnoreCase(r.getDifficulty()))
-                .count();
+        ReplayColumnStore.Summary summary = columnStore.summarize(ReplayColumnStore.Filter.of(gameId, difficulty));
+        List<Replay> records = replayDAO.findByGameAndDifficulty(gameId, difficulty);
 
         return new DifficultyFullReport(
                 game.getDisplayName(),
                 difficulty,
                 getBestScore(gameId, difficulty).orElse(null),
-                getShotTypeUsage(gameId, difficulty),
-                getStageReachStats(gameId, difficulty),
+                getShotTypeUsage(gameId, difficulty, records),
+                getStageReachStats(gameId, difficulty, records),
                 getStageBombStats(gameId, difficulty),
-                getClearRate(gameId, difficulty),
-                totalAttempts);
+                summary.getClearRate(),
+                summary.getCount());
+    }
+
+    // ========== 7. 跨游戏汇总 ==========
+
+    /**
+     * 所有Replay的汇总（数量、通关数、总帧数等）
+     */
+    public ReplayColumnStore.Summary getOverallSummary() {
+        return columnStore.summarize(ReplayColumnStore.Filter.all());
+    }
+
+    /**
+     * 按游戏分组的汇总
+     *
+     * @return 游戏ID → 汇总，按游戏ID升序
+     */
+    public SortedMap<Integer, ReplayColumnStore.Summary> getSummaryByGame() {
+        return columnStore.summarizeByGame(ReplayColumnStore.Filter.all());
+    }
+
+    // ========== 8. 分数分布 ==========
+
+    /**
+     * 某游戏某难度（可限定自机）的分数分布：最小/最大值与常用分位数
+     *
+     * @param shotType 自机，为null时包含所有自机
+     * @param score    可选，给出时同时计算该分数的百分位排名
+     */
+    public ScoreDistribution getScoreDistribution(int gameId, String difficulty, String shotType, Long score) {
+        ScoreDigest digest = scoreSketchService.getDigest(gameId, difficulty, shotType);
+        if (digest.size() == 0) {
+            return new ScoreDistribution(0, null, null, null, null, null, null, null, null);
+        }
+        return new ScoreDistribution(digest.size(), (long) digest.min(), (long) digest.max(),
+                Math.round(digest.quantile(0.25)), Math.round(digest.quantile(0.5)),
+                Math.round(digest.quantile(0.75)), Math.round(digest.quantile(0.9)),
+                Math.round(digest.quantile(0.99)), score != null ? digest.cdf(score) * 100 : null);
     }
 
     // ========== 数据类（统一使用 getStageNumber）==========
@@ -445,4 +501,98 @@ public class ReplayStatisticsService {
             return totalAttempts;
         }
     }
-}
\ No newline at end of file
+
+    public static class HighScoreCheck {
+        public boolean newHighScore;
+        public Long previousBest;
+        public Double percentileRank;
+
+        public HighScoreCheck(boolean newHighScore, Long previousBest, Double percentileRank) {
+            this.newHighScore = newHighScore;
+            this.previousBest = previousBest;
+            this.percentileRank = percentileRank;
+        }
+
+        public boolean isNewHighScore() {
+            return newHighScore;
+        }
+
+        public Long getPreviousBest() {
+            return previousBest;
+        }
+
+        /**
+         * @return 低于该分数的已有记录百分比（0~100，估计值），没有记录时为null
+         */
+        public Double getPercentileRank() {
+            return percentileRank;
+        }
+    }
+
+    /**
+     * 分数分布（分位数为 t-digest 估计值，没有记录时均为null）
+     */
+    public static class ScoreDistribution {
+        public long count;
+        public Long min;
+        public Long max;
+        public Long p25;
+        public Long median;
+        public Long p75;
+        public Long p90;
+        public Long p99;
+        public Double percentileRank;
+
+        public ScoreDistribution(long count, Long min, Long max, Long p25, Long median, Long p75,
+                Long p90, Long p99, Double percentileRank) {
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.p25 = p25;
+            this.median = median;
+            this.p75 = p75;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.percentileRank = percentileRank;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public Long getMin() {
+            return min;
+        }
+
+        public Long getMax() {
+            return max;
+        }
+
+        public Long getP25() {
+            return p25;
+        }
+
+        public Long getMedian() {
+            return median;
+        }
+
+        public Long getP75() {
+            return p75;
+        }
+
+        public Long getP90() {
+            return p90;
+        }
+
+        public Long getP99() {
+            return p99;
+        }
+
+        /**
+         * @return 查询分数的百分位排名（0~100），未指定分数时为null
+         */
+        public Double getPercentileRank() {
+            return percentileRank;
+        }
+    }
+}
@@ -2,8 +2,17 @@ package com.thmanager.service;
 
 import com.thmanager.dao.GameDAO;
 import com.thmanager.dao.ReplayDAO;
+import com.thmanager.event.ReplayImportedEvent;
+import com.thmanager.event.ScanProgressEvent;
 import com.thmanager.model.Game;
 import com.thmanager.model.Replay;
+import com.thmanager.util.ImportTrace;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -19,14 +28,29 @@ import java.util.function.Consumer;
  * Replay文件夹实时监控服务
  * 自动检测新replay文件，调用Python解析，保存到数据库
  * 支持文件覆盖检测和更新
+ * 导入结果和状态消息以 {@link ReplayImportedEvent} / {@link ScanProgressEvent} 发布
+ * 运行指标：thmanager.watcher.events.received / coalesced / dropped 计数，
+ * thmanager.watcher.file_ready_wait 与 thmanager.watcher.import 计时，线程池队列为 executor.queued{name=replayWatcher}
+ * 每个文件的导入过程按阶段记录为 {@link ImportTrace}，交给 {@link ImportTraceRecorder}
+ * 导入前先复制到 {@link ReplayArchiveService}；同名槽位被不同内容覆盖时，旧记录转为指向归档副本并保留
  */
 @Service
 public class ReplayWatcherService {
 
+    private static final Logger log = LoggerFactory.getLogger(ReplayWatcherService.class);
+
     private final GameDAO gameDAO;
     private final ReplayDAO replayDAO;
     private final ReplayParser replayParser;
+    private final ReplayAnalysisService analysisService;
+    private final SessionAttributionService sessionAttribution;
+    private final ImportTraceRecorder importTraceRecorder;
+    private final ReplayArchiveService archiveService;
+    private final ApplicationEventPublisher eventPublisher;
     private final ExecutorService executor;
+    private final MeterRegistry meterRegistry;
+    private final Timer fileReadyTimer;
+    private final Timer importTimer;
     private WatchService watchService;
     private final Map<Path, Game> watchedPaths;
     private final ConcurrentHashMap.KeySetView<String, Boolean> processingFiles;
@@ -35,16 +59,32 @@ public class ReplayWatcherService {
     private Consumer<String> onStatusUpdate;
     private volatile boolean running = false;
 
-    public ReplayWatcherService(GameDAO gameDAO, ReplayDAO replayDAO) {
+    public ReplayWatcherService(GameDAO gameDAO, ReplayDAO replayDAO, ReplayAnalysisService analysisService,
+                                SessionAttributionService sessionAttribution, ImportTraceRecorder importTraceRecorder,
+                                ReplayArchiveService archiveService, ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry) {
         this.gameDAO = gameDAO;
         this.replayDAO = replayDAO;
         this.replayParser = new ReplayParser();
+        this.analysisService = analysisService;
+        this.sessionAttribution = sessionAttribution;
+        this.importTraceRecorder = importTraceRecorder;
+        this.archiveService = archiveService;
+        this.eventPublisher = eventPublisher;
         // 使用固定线程池，避免单线程被watchLoop占用
-        this.executor = Executors.newFixedThreadPool(4, r -> {
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, Executors.newFixedThreadPool(4, r -> {
             Thread t = new Thread(r, "ReplayWatcher-" + System.currentTimeMillis());
             t.setDaemon(true);
             return t;
-        });
+        }), "replayWatcher");
+        this.meterRegistry = meterRegistry;
+        this.fileReadyTimer = Timer.builder("thmanager.watcher.file_ready_wait")
+                .description("等待文件写入完成的耗时")
+                .register(meterRegistry);
+        this.importTimer = Timer.builder("thmanager.watcher.import")
+                .description("单个文件从检测到保存完成的耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
         this.watchedPaths = new ConcurrentHashMap<>();
         this.processingFiles = ConcurrentHashMap.newKeySet();
     }
@@ -77,6 +117,9 @@ public class ReplayWatcherService {
 
             executor.submit(this::watchLoop);
 
+            // 补全早先只导入了头部信息的记录
+            analysisService.resumePending();
+
         } catch (IOException e) {
             updateStatus("启动监控失败: " + e.getMessage());
         }
@@ -155,7 +198,7 @@ public class ReplayWatcherService {
 
                     if (existing.isEmpty()) {
                         // 新文件，直接处理
-                        if (processAndSaveReplay(rpy, game)) {
+                        if (processAndSaveReplay(rpy, game, existing)) {
                             newCount++;
                         }
                     } else {
@@ -166,10 +209,16 @@ public class ReplayWatcherService {
 
                         // 如果文件修改时间不同，重新处理
                         if (oldModified != newModified) {
-                            System.out.println("[Watcher] 初始扫描发现文件更新: " + rpy.getFileName());
-                            if (processAndSaveReplay(rpy, game)) {
+                            log.info("初始扫描发现文件更新: {}", rpy.getFileName());
+                            if (processAndSaveReplay(rpy, game, existing)) {
                                 updatedCount++;
                             }
+                        } else if (oldReplay.getArchiveHash() == null) {
+                            // 归档功能加入前导入的文件，内容未变化时补做归档
+                            String hash = archiveService.archiveQuietly(rpy);
+                            if (hash != null) {
+                                replayDAO.updateArchiveHash(oldReplay.getId(), hash);
+                            }
                         }
                     }
                 }
@@ -187,7 +236,7 @@ public class ReplayWatcherService {
      * 监控循环
      */
     private void watchLoop() {
-        System.out.println("[Watcher] 开始监控循环");
+        log.info("开始监控循环");
         while (running) {
             try {
                 WatchKey key = watchService.poll(1, TimeUnit.SECONDS);
@@ -199,129 +248,167 @@ public class ReplayWatcherService {
                 Game game = watchedPaths.get(watchDir);
 
                 if (game == null) {
-                    System.out.println("[Watcher] 无法找到监控目录对应的游戏: " + watchDir);
+                    log.warn("无法找到监控目录对应的游戏: {}", watchDir);
                     key.reset();
                     continue;
                 }
 
-                System.out.println("[Watcher] 收到目录事件: " + watchDir + " (游戏: " + game.getDisplayName() + ")");
+                log.debug("收到目录事件: {} (游戏: {})", watchDir, game.getDisplayName());
 
                 for (WatchEvent<?> event : key.pollEvents()) {
-                    System.out.println("[Watcher] 事件类型: " + event.kind() + ", 上下文: " + event.context());
+                    log.debug("事件类型: {}, 上下文: {}", event.kind(), event.context());
+                    meterRegistry.counter("thmanager.watcher.events.received", "kind", event.kind().name()).increment();
 
                     if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
-                        System.out.println("[Watcher] 事件溢出，跳过");
+                        log.warn("事件溢出，跳过");
+                        countDropped("overflow");
                         continue;
                     }
 
                     Path fileName = (Path) event.context();
                     String fileNameStr = fileName.toString();
 
-                    System.out.println("[Watcher] 处理文件: " + fileNameStr);
+                    log.debug("处理文件: {}", fileNameStr);
 
                     if (!fileNameStr.toLowerCase().endsWith(".rpy")) {
-                        System.out.println("[Watcher] 不是rpy文件，跳过: " + fileNameStr);
+                        log.debug("不是rpy文件，跳过: {}", fileNameStr);
+                        countDropped("not_replay");
                         continue;
                     }
                     if (fileNameStr.startsWith("~")) {
-                        System.out.println("[Watcher] 是临时文件，跳过: " + fileNameStr);
+                        log.debug("是临时文件，跳过: {}", fileNameStr);
+                        countDropped("not_replay");
                         continue;
                     }
 
                     Path fullPath = watchDir.resolve(fileName);
-                    System.out.println("[Watcher] 完整路径: " + fullPath);
-                    System.out.println("[Watcher] 准备提交任务到executor");
+                    log.debug("完整路径: {}", fullPath);
+                    long receivedNanos = System.nanoTime();
                     executor.submit(() -> {
-                        System.out.println("[Watcher] 任务开始执行: " + fileNameStr);
-                        handleNewReplay(fullPath, game);
-                        System.out.println("[Watcher] 任务执行完成: " + fileNameStr);
+                        log.debug("任务开始执行: {}", fileNameStr);
+                        handleNewReplay(fullPath, game, receivedNanos);
+                        log.debug("任务执行完成: {}", fileNameStr);
                     });
-                    System.out.println("[Watcher] 任务已提交");
                 }
 
                 key.reset();
 
             } catch (InterruptedException e) {
-                System.err.println("[Watcher] 监控线程被中断: " + e.getMessage());
+                log.warn("监控线程被中断: {}", e.getMessage());
                 Thread.currentThread().interrupt();
                 break;
             } catch (Exception e) {
-                System.err.println("[Watcher] 监控循环异常: " + e.getMessage());
-                e.printStackTrace();
+                log.error("监控循环异常", e);
             }
         }
-        System.out.println("[Watcher] 监控循环结束");
+        log.info("监控循环结束");
     }
 
     /**
      * 处理新replay文件（支持文件覆盖）
+     *
+     * @param receivedNanos 收到目录事件时的 {@link System#nanoTime()}，用于计算排队时间
      */
-    private void handleNewReplay(Path filePath, Game game) {
+    private void handleNewReplay(Path filePath, Game game, long receivedNanos) {
         String pathStr = filePath.toString();
         String fileName = filePath.getFileName().toString();
 
-        System.out.println("[Watcher] 开始处理文件: " + fileName);
+        log.debug("开始处理文件: {}", fileName);
 
         // 跳过临时文件
         if (fileName.startsWith("~") || fileName.startsWith(".")) {
-            System.out.println("[Watcher] 跳过临时文件: " + fileName);
+            log.debug("跳过临时文件: {}", fileName);
             return;
         }
 
         // 防止重复处理
         if (!processingFiles.add(pathStr)) {
-            System.out.println("[Watcher] 文件正在处理中，跳过: " + fileName);
+            log.debug("文件正在处理中，跳过: {}", fileName);
+            countCoalesced("in_progress");
             return;
         }
 
+        ImportTrace trace = ImportTrace.begin(pathStr, "watch", receivedNanos);
+        trace.record("queue", receivedNanos, System.nanoTime());
+        String outcome = "error";
+        Timer.Sample importSample = Timer.start(meterRegistry);
         try {
             updateStatus("检测到文件变化: " + fileName);
 
             // 等待文件写入完成
-            System.out.println("[Watcher] 等待文件就绪: " + fileName);
-            if (!waitForFileReady(filePath)) {
+            log.debug("等待文件就绪: {}", fileName);
+            Timer.Sample readySample = Timer.start(meterRegistry);
+            boolean ready;
+            try (ImportTrace.Span span = ImportTrace.span("file_ready")) {
+                ready = waitForFileReady(filePath);
+            }
+            readySample.stop(fileReadyTimer);
+            if (!ready) {
                 updateStatus("文件未就绪，跳过: " + fileName);
+                countDropped("not_ready");
+                outcome = "not_ready";
                 return;
             }
 
             // 检查文件是否真的发生了变化（使用修改时间）
-            System.out.println("[Watcher] 检查文件是否变化: " + fileName);
-            Optional<Replay> existing = replayDAO.findByPath(pathStr);
+            log.debug("检查文件是否变化: {}", fileName);
+            Optional<Replay> existing;
+            try (ImportTrace.Span span = ImportTrace.span("change_check")) {
+                existing = replayDAO.findByPath(pathStr);
+            }
             if (existing.isPresent()) {
                 Replay oldReplay = existing.get();
                 long oldModified = oldReplay.getFileModifiedTime();
                 long newModified = Files.getLastModifiedTime(filePath).toMillis();
 
-                System.out.println("[Watcher] 旧修改时间: " + oldModified + " (" + new java.util.Date(oldModified) + ")");
-                System.out.println("[Watcher] 新修改时间: " + newModified + " (" + new java.util.Date(newModified) + ")");
 
                 // 如果修改时间相同，说明没有真正变化，跳过处理
                 if (oldModified == newModified) {
-                    System.out.println("[Watcher] 文件修改时间相同，跳过: " + fileName);
+                    log.debug("文件修改时间相同，跳过: {}", fileName);
+                    countCoalesced("unchanged");
+                    outcome = "unchanged";
                     return;
                 }
 
-                System.out.println("[Watcher] 检测到文件覆盖: " + fileName +
-                        " (旧修改时间: " + new java.util.Date(oldModified) +
-                        " -> 新修改时间: " + new java.util.Date(newModified) + ")");
+                log.info("检测到文件覆盖: {} (修改时间: {} -> {})", fileName, oldModified, newModified);
             } else {
-                System.out.println("[Watcher] 发现新文件: " + fileName);
+                log.debug("发现新文件: {}", fileName);
             }
 
-            // 解析文件
+            // 先复制到归档，之后游戏再覆盖这个槽位也能保留这一局
+            String archiveHash;
+            try (ImportTrace.Span span = ImportTrace.span("archive")) {
+                archiveHash = archiveService.archiveQuietly(filePath);
+            }
+            if (existing.isPresent() && detachOverwritten(existing.get(), archiveHash)) {
+                existing = Optional.empty();
+            }
+
+            // 解析文件（头部与各关卡数据出自同一次解析，一并写入）
             updateStatus("正在解析: " + fileName);
-            System.out.println("[Watcher] 开始解析文件: " + fileName);
-            Optional<Replay> parsed = replayParser.parse(filePath, game.getId());
+            log.debug("开始解析文件: {}", fileName);
+            Optional<Replay> parsed;
+            try (ImportTrace.Span span = ImportTrace.span("parse")) {
+                parsed = replayParser.parse(filePath, game.getId());
+            }
 
-            System.out.println("[Watcher] 解析结果: " + (parsed.isPresent() ? "成功" : "失败"));
+            log.debug("解析结果: {}", (parsed.isPresent() ? "成功" : "失败"));
 
             if (parsed.isPresent()) {
                 Replay replay = parsed.get();
                 // 设置文件修改时间
                 replay.setFileModifiedTime(Files.getLastModifiedTime(filePath).toMillis());
+                replay.setArchiveHash(archiveHash);
+                // 录制时间落在某次游玩会话内则归入该会话
+                try (ImportTrace.Span span = ImportTrace.span("attribute")) {
+                    replay.setSessionId(sessionAttribution.resolve(game.getId(), replay.getFileModifiedTime()));
+                }
 
-                System.out.println("[Watcher] 解析成功，保存到数据库: " + fileName);
-                boolean saved = replayDAO.saveOrUpdate(replay);
+                log.debug("解析成功，保存到数据库: {}", fileName);
+                boolean saved;
+                try (ImportTrace.Span span = ImportTrace.span("persist")) {
+                    saved = replayDAO.saveOrUpdate(replay);
+                }
 
                 if (saved) {
                     String action = existing.isPresent() ? "更新" : "导入";
@@ -329,26 +416,45 @@ public class ReplayWatcherService {
                             replay.getDifficultyDisplay() + " " +
                             replay.getFormattedScore());
 
-                    if (onNewReplay != null) {
-                        System.out.println("[Watcher] 触发新replay回调");
-                        onNewReplay.accept(replay);
+                    try (ImportTrace.Span span = ImportTrace.span("publish")) {
+                        if (onNewReplay != null) {
+                            log.debug("触发新replay回调");
+                            onNewReplay.accept(replay);
+                        }
+                        eventPublisher.publishEvent(new ReplayImportedEvent(replay, existing.orElse(null)));
                     }
+                    importSample.stop(importTimer);
+                    outcome = existing.isPresent() ? "updated" : "imported";
                 } else {
                     updateStatus("✗ 保存失败: " + fileName);
+                    countDropped("save_failed");
+                    outcome = "save_failed";
                 }
             } else {
                 updateStatus("✗ 解析失败: " + fileName);
+                countDropped("parse_failed");
+                outcome = "parse_failed";
             }
 
         } catch (Exception e) {
             updateStatus("✗ 处理异常: " + e.getMessage());
-            e.printStackTrace();
+            countDropped("error");
+            log.error("处理文件失败: {}", fileName, e);
         } finally {
+            importTraceRecorder.record(trace.finish(outcome));
             processingFiles.remove(pathStr);
-            System.out.println("[Watcher] 处理完成: " + fileName);
+            log.debug("处理完成: {}", fileName);
         }
     }
 
+    private void countCoalesced(String reason) {
+        meterRegistry.counter("thmanager.watcher.events.coalesced", "reason", reason).increment();
+    }
+
+    private void countDropped(String reason) {
+        meterRegistry.counter("thmanager.watcher.events.dropped", "reason", reason).increment();
+    }
+
     /**
      * 等待文件写入完成（改进版）
      */
@@ -357,31 +463,31 @@ public class ReplayWatcherService {
         int stableCount = 0;
         int maxAttempts = 20; // 最多等待10秒（20次×500ms）
 
-        System.out.println("[Watcher] 开始等待文件就绪: " + path);
+        log.debug("开始等待文件就绪: {}", path);
 
         for (int i = 0; i < maxAttempts; i++) {
             try {
                 if (!Files.exists(path)) {
-                    System.out.println("[Watcher] 文件不存在: " + path);
+                    log.debug("文件不存在: {}", path);
                     Thread.sleep(200);
                     continue;
                 }
 
                 long size = Files.size(path);
-                System.out.println("[Watcher] 尝试 " + (i + 1) + "/" + maxAttempts + ", 文件大小: " + size + " 字节");
+                log.debug("尝试 {}/{}, 文件大小: {} 字节", (i + 1), maxAttempts, size);
 
                 // 即使文件很小，也允许处理（可能是小的replay文件）
                 // 文件大小稳定
                 if (size == lastSize) {
                     stableCount++;
-                    System.out.println("[Watcher] 文件大小稳定 (" + stableCount + "/3): " + size + " 字节");
+                    log.debug("文件大小稳定 ({}/3): {} 字节", stableCount, size);
                     if (stableCount >= 3) { // 连续3次大小相同，认为文件稳定
                         Thread.sleep(200); // 再等待200ms确保完全写入
-                        System.out.println("[Watcher] 文件就绪: " + path + " (大小: " + size + ")");
+                        log.debug("文件就绪: {} (大小: {})", path, size);
                         return true;
                     }
                 } else {
-                    System.out.println("[Watcher] 文件大小变化: " + lastSize + " -> " + size + " 字节");
+                    log.debug("文件大小变化: {} -> {} 字节", lastSize, size);
                     stableCount = 0;
                     lastSize = size;
                 }
@@ -389,63 +495,116 @@ public class ReplayWatcherService {
                 Thread.sleep(500);
 
             } catch (InterruptedException e) {
-                System.err.println("[Watcher] 等待被中断: " + e.getMessage());
+                log.warn("等待被中断: {}", e.getMessage());
                 Thread.currentThread().interrupt();
                 return false;
             } catch (Exception e) {
-                System.err.println("[Watcher] 检查文件状态异常: " + e.getMessage());
-                e.printStackTrace();
+                log.warn("检查文件状态异常: {}", path, e);
                 // 即使出现异常，也尝试继续处理
                 return true;
             }
         }
 
         // 超时后也尝试处理，不要直接返回false
-        System.out.println("[Watcher] 等待文件就绪超时，但尝试继续处理: " + path);
+        log.warn("等待文件就绪超时，但尝试继续处理: {}", path);
         return true;
     }
 
     /**
      * 解析并保存单个文件（用于初始扫描）
+     *
+     * @param existing 同一路径的已有记录
      */
-    private boolean processAndSaveReplay(Path filePath, Game game) {
+    private boolean processAndSaveReplay(Path filePath, Game game, Optional<Replay> existing) {
+        ImportTrace trace = ImportTrace.begin(filePath.toString(), "scan", System.nanoTime());
+        String outcome = "error";
         try {
-            Optional<Replay> parsed = replayParser.parse(filePath, game.getId());
+            String archiveHash;
+            try (ImportTrace.Span span = ImportTrace.span("archive")) {
+                archiveHash = archiveService.archiveQuietly(filePath);
+            }
+            boolean updated = existing.isPresent() && !detachOverwritten(existing.get(), archiveHash);
+
+            Optional<Replay> parsed;
+            try (ImportTrace.Span span = ImportTrace.span("parse")) {
+                parsed = replayParser.parse(filePath, game.getId());
+            }
 
             if (parsed.isEmpty()) {
+                outcome = "parse_failed";
                 return false;
             }
 
             Replay replay = parsed.get();
             // 设置文件修改时间
             replay.setFileModifiedTime(Files.getLastModifiedTime(filePath).toMillis());
+            replay.setArchiveHash(archiveHash);
+            try (ImportTrace.Span span = ImportTrace.span("attribute")) {
+                replay.setSessionId(sessionAttribution.resolve(game.getId(), replay.getFileModifiedTime()));
+            }
 
-            return replayDAO.saveOrUpdate(replay);
+            try (ImportTrace.Span span = ImportTrace.span("persist")) {
+                if (!replayDAO.saveOrUpdate(replay)) {
+                    outcome = "save_failed";
+                    return false;
+                }
+            }
+
+            try (ImportTrace.Span span = ImportTrace.span("publish")) {
+                if (onNewReplay != null) {
+                    onNewReplay.accept(replay);
+                }
+                eventPublisher.publishEvent(new ReplayImportedEvent(replay, updated ? existing.get() : null));
+            }
+            outcome = updated ? "updated" : "imported";
+            return true;
 
         } catch (Exception e) {
             updateStatus("✗ 处理异常: " + e.getMessage());
             return false;
+        } finally {
+            importTraceRecorder.record(trace.finish(outcome));
         }
     }
 
+    /**
+     * 槽位被不同内容的Replay覆盖时，把旧记录转为指向其归档副本，原路径留给新记录
+     *
+     * @param old         同一路径的已有记录
+     * @param archiveHash 新文件的归档哈希
+     * @return 是否已转移旧记录（新文件应作为新记录导入）
+     */
+    private boolean detachOverwritten(Replay old, String archiveHash) {
+        if (old.getArchiveHash() == null || archiveHash == null || old.getArchiveHash().equals(archiveHash)) {
+            return false;
+        }
+        Optional<Path> archived = archiveService.find(old.getArchiveHash());
+        if (archived.isEmpty() || !replayDAO.detachToArchive(old.getId(), archived.get().toString())) {
+            return false;
+        }
+        log.info("槽位已被新录像覆盖，旧记录保留为归档: {} -> {}", old.getFileName(), archived.get());
+        return true;
+    }
+
     private void updateStatus(String message) {
-        System.out.println("[Watcher] " + message);
+        log.info("{}", message);
         if (onStatusUpdate != null) {
             onStatusUpdate.accept(message);
         }
+        eventPublisher.publishEvent(new ScanProgressEvent(message));
     }
 
     public void stop() {
-        System.out.println("[Watcher] 正在停止监控服务...");
+        log.info("正在停止监控服务...");
         running = false;
 
         try {
             if (watchService != null) {
                 watchService.close();
-                System.out.println("[Watcher] WatchService已关闭");
+                log.debug("WatchService已关闭");
             }
         } catch (IOException e) {
-            System.err.println("[Watcher] 关闭WatchService失败: " + e.getMessage());
+            log.warn("关闭WatchService失败: {}", e.getMessage());
         }
 
         watchedPaths.clear();
@@ -455,14 +614,14 @@ public class ReplayWatcherService {
             executor.shutdownNow();
             try {
                 if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    System.err.println("[Watcher] 强制终止监控线程");
+                    log.warn("强制终止监控线程");
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
-            System.out.println("[Watcher] Executor已关闭");
+            log.debug("Executor已关闭");
         }
 
-        System.out.println("[Watcher] 监控服务已停止");
+        log.info("监控服务已停止");
     }
 }
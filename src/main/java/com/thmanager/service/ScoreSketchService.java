@@ -0,0 +1,222 @@
+package com.thmanager.service;
+
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.event.ReplayDeletedEvent;
+import com.thmanager.event.ReplayImportedEvent;
+import com.thmanager.model.Replay;
+import com.thmanager.model.ScoreSketch;
+import com.thmanager.util.ScoreDigest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按 (游戏, 难度, 自机) 维护的分数分布摘要
+ *
+ * 每个组合一份 {@link ScoreDigest}，按难度查询时合并该难度下各自机的摘要。
+ * 新导入的Replay直接加入对应摘要并写回 score_sketches；摘要无法减去分数，
+ * 因此覆盖导入和删除只让原记录（及新记录）所在组合的摘要失效并删除其保存的行，
+ * 下次查询时从 {@link ReplayColumnStore} 一次遍历只重建这些组合。
+ * 启动后首次使用时从数据库读取，摘要中的Replay总数与列式存储不一致时重建全部摘要。
+ *
+ * 摘要非线程安全，所有访问在本对象上同步。
+ * 查询直接使用内存中的摘要计为命中，需要重建时计为未命中（thmanager.cache.requests{cache=score-sketch}）。
+ */
+@Service
+public class ScoreSketchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreSketchService.class);
+
+    private final ReplayDAO replayDAO;
+    private final ReplayColumnStore columnStore;
+    private final Map<Key, ScoreDigest> digests = new HashMap<>();
+    private final Set<Key> staleKeys = new HashSet<>();
+    private final Counter hits;
+    private final Counter misses;
+    private boolean loaded;
+    private boolean stale;
+
+    public ScoreSketchService(ReplayDAO replayDAO, ReplayColumnStore columnStore, MeterRegistry meterRegistry) {
+        this.replayDAO = replayDAO;
+        this.columnStore = columnStore;
+        this.hits = meterRegistry.counter("thmanager.cache.requests", "cache", "score-sketch", "result", "hit");
+        this.misses = meterRegistry.counter("thmanager.cache.requests", "cache", "score-sketch", "result", "miss");
+    }
+
+    @EventListener
+    public synchronized void onReplayImported(ReplayImportedEvent event) {
+        Key key = Key.of(event.replay());
+        if (event.updated()) {
+            // 原分数无法从摘要中移除
+            invalidate(Key.of(event.previous()));
+            invalidate(key);
+            return;
+        }
+        if (!loaded || stale || staleKeys.contains(key)) {
+            // 尚未加载或等待重建时，加载/重建过程会从列式存储或数据库中包含这条记录
+            return;
+        }
+        ScoreDigest digest = digests.computeIfAbsent(key, k -> new ScoreDigest());
+        digest.add(event.replay().getTotalScore());
+        try {
+            replayDAO.saveScoreSketch(toSketch(key, digest));
+        } catch (Exception e) {
+            log.warn("保存分数摘要失败: {}", e.getMessage());
+        }
+    }
+
+    @EventListener
+    public synchronized void onReplayDeleted(ReplayDeletedEvent event) {
+        invalidate(Key.of(event.replay()));
+    }
+
+    /**
+     * 标记一个组合的摘要失效，并删除其保存的行
+     */
+    private void invalidate(Key key) {
+        if (!staleKeys.add(key)) {
+            return;
+        }
+        try {
+            replayDAO.deleteScoreSketch(key.gameId(), key.difficulty(), key.shotType());
+        } catch (Exception e) {
+            log.warn("删除分数摘要失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取某游戏某难度的分数分布
+     *
+     * @param gameId     游戏ID
+     * @param difficulty 难度（不区分大小写）
+     * @param shotType   自机（不区分大小写），为null时合并该难度下所有自机
+     * @return 合并后的摘要副本，没有记录时为空摘要
+     */
+    public synchronized ScoreDigest getDigest(int gameId, String difficulty, String shotType) {
+        ensureFresh();
+        ScoreDigest result = new ScoreDigest();
+        digests.forEach((key, digest) -> {
+            if (key.gameId() == gameId && key.difficulty().equalsIgnoreCase(difficulty)
+                    && (shotType == null || key.shotType().equalsIgnoreCase(shotType))) {
+                result.merge(digest);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 估计某个分数在某游戏某难度已有记录中的百分位排名
+     *
+     * @param gameId     游戏ID
+     * @param difficulty 难度（不区分大小写）
+     * @param score      分数
+     * @return 低于该分数的记录比例（0~1），没有记录时为NaN
+     */
+    public double percentileRank(int gameId, String difficulty, long score) {
+        return getDigest(gameId, difficulty, null).cdf(score);
+    }
+
+    private void ensureFresh() {
+        if (!loaded) {
+            long count = 0;
+            try {
+                for (ScoreSketch sketch : replayDAO.findAllScoreSketches()) {
+                    digests.put(new Key(sketch.getGameId(), sketch.getDifficulty(), sketch.getShotType()),
+                            ScoreDigest.fromBytes(sketch.getDigest()));
+                    count += sketch.getReplayCount();
+                }
+            } catch (Exception e) {
+                log.warn("读取分数摘要失败，将重建: {}", e.getMessage());
+                count = -1;
+            }
+            loaded = true;
+            stale = count != columnStore.size();
+        }
+        if (stale) {
+            misses.increment();
+            rebuild();
+        } else if (!staleKeys.isEmpty()) {
+            misses.increment();
+            rebuildStaleKeys();
+        } else {
+            hits.increment();
+        }
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        Map<Key, ScoreDigest> rebuilt = new HashMap<>();
+        columnStore.forEachScore((gameId, difficulty, shotType, score) ->
+                rebuilt.computeIfAbsent(new Key(gameId, difficulty, shotType), k -> new ScoreDigest()).add(score));
+        digests.clear();
+        digests.putAll(rebuilt);
+        stale = false;
+        staleKeys.clear();
+
+        List<ScoreSketch> sketches = new ArrayList<>(digests.size());
+        digests.forEach((key, digest) -> sketches.add(toSketch(key, digest)));
+        try {
+            replayDAO.replaceScoreSketches(sketches);
+        } catch (Exception e) {
+            log.warn("保存分数摘要失败: {}", e.getMessage());
+        }
+        log.info("已重建 {} 个分数摘要（{} ms）", sketches.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void rebuildStaleKeys() {
+        Map<Key, ScoreDigest> rebuilt = new HashMap<>();
+        columnStore.forEachScore((gameId, difficulty, shotType, score) -> {
+            Key key = new Key(gameId, difficulty, shotType);
+            if (staleKeys.contains(key)) {
+                rebuilt.computeIfAbsent(key, k -> new ScoreDigest()).add(score);
+            }
+        });
+        for (Key key : staleKeys) {
+            ScoreDigest digest = rebuilt.get(key);
+            if (digest == null) {
+                // 该组合已没有记录，保存的行在失效时已删除
+                digests.remove(key);
+                continue;
+            }
+            digests.put(key, digest);
+            try {
+                replayDAO.saveScoreSketch(toSketch(key, digest));
+            } catch (Exception e) {
+                log.warn("保存分数摘要失败: {}", e.getMessage());
+            }
+        }
+        log.debug("已重建 {} 个分数摘要", staleKeys.size());
+        staleKeys.clear();
+    }
+
+    private static ScoreSketch toSketch(Key key, ScoreDigest digest) {
+        ScoreSketch sketch = new ScoreSketch();
+        sketch.setGameId(key.gameId());
+        sketch.setDifficulty(key.difficulty());
+        sketch.setShotType(key.shotType());
+        sketch.setReplayCount(digest.size());
+        sketch.setDigest(digest.toBytes());
+        return sketch;
+    }
+
+    private record Key(int gameId, String difficulty, String shotType) {
+        Key {
+            difficulty = difficulty != null ? difficulty : "";
+            shotType = shotType != null ? shotType : "";
+        }
+
+        static Key of(Replay replay) {
+            return new Key(replay.getGameId(), replay.getDifficulty(), replay.getFullShotType());
+        }
+    }
+}
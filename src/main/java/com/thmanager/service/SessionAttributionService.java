@@ -0,0 +1,121 @@
+package com.thmanager.service;
+
+import com.thmanager.dao.PlaySessionDAO;
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.event.GameEndedEvent;
+import com.thmanager.event.GameStartedEvent;
+import com.thmanager.model.PlaySession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Replay与游玩会话的归属关系
+ *
+ * 按游戏维护会话时间区间索引（开始时间 → 区间），导入Replay时以文件修改时间查找所在会话，
+ * 写入 replays.session_id。区间在启动后首次使用时从数据库加载，
+ * 之后由 {@link GameStartedEvent} / {@link GameEndedEvent} 增量维护，进行中的会话结束时间视为无限大。
+ *
+ * 引入归属之前导入的历史Replay由迁移 V12 一次性归入已结束的会话（按 (game_id, file_modified_time) 索引范围连接），
+ * 启动时不再扫描；游玩中导入的Replay落在进行中的会话区间内，启动扫描导入的Replay按已结束的会话区间归属。
+ */
+@Service
+public class SessionAttributionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionAttributionService.class);
+
+    private static final long OPEN_END = Long.MAX_VALUE;
+
+    private final PlaySessionDAO sessionDAO;
+    private final ReplayDAO replayDAO;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<Integer, NavigableMap<Long, Interval>> intervalsByGame = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public SessionAttributionService(PlaySessionDAO sessionDAO, ReplayDAO replayDAO) {
+        this.sessionDAO = sessionDAO;
+        this.replayDAO = replayDAO;
+    }
+
+    /**
+     * 查找某游戏在指定时刻所处的会话
+     *
+     * @param gameId          游戏ID
+     * @param timestampMillis 时间戳（毫秒），通常为Replay文件修改时间
+     * @return 会话ID，不在任何会话中时返回null
+     */
+    public Integer resolve(int gameId, long timestampMillis) {
+        ensureLoaded();
+        NavigableMap<Long, Interval> intervals = intervalsByGame.get(gameId);
+        if (intervals == null) {
+            return null;
+        }
+        Map.Entry<Long, Interval> entry = intervals.floorEntry(timestampMillis);
+        if (entry == null || entry.getValue().endMillis() < timestampMillis) {
+            return null;
+        }
+        return entry.getValue().sessionId();
+    }
+
+    @EventListener
+    public void onGameStarted(GameStartedEvent event) {
+        ensureLoaded();
+        put(event.game().getId(), new Interval(event.sessionId(), toMillis(event.startTime()), OPEN_END));
+    }
+
+    @EventListener
+    public void onGameEnded(GameEndedEvent event) {
+        ensureLoaded();
+        NavigableMap<Long, Interval> intervals = intervalsByGame.get(event.game().getId());
+        if (intervals == null) {
+            return;
+        }
+        // 刚结束的会话通常是最后一个区间
+        for (Interval interval : intervals.descendingMap().values()) {
+            if (interval.sessionId() == event.sessionId()) {
+                intervals.put(interval.startMillis(),
+                        new Interval(interval.sessionId(), interval.startMillis(), toMillis(event.endTime())));
+                return;
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            // 未结束的历史会话（如异常退出）没有可靠的结束时间，不参与归属
+            for (PlaySession session : sessionDAO.findAllOrderByGame()) {
+                if (session.getStartTime() != null && session.getEndTime() != null) {
+                    put(session.getGameId(), new Interval(session.getId(), toMillis(session.getStartTime()),
+                            toMillis(session.getEndTime())));
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private void put(int gameId, Interval interval) {
+        intervalsByGame.computeIfAbsent(gameId, id -> new ConcurrentSkipListMap<>())
+                .put(interval.startMillis(), interval);
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private record Interval(int sessionId, long startMillis, long endMillis) {
+    }
+}
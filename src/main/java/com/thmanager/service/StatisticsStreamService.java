@@ -0,0 +1,168 @@
+package com.thmanager.service;
+
+import com.thmanager.dao.ReplayDAO;
+import com.thmanager.event.ReplayImportedEvent;
+import com.thmanager.model.Replay;
+import com.thmanager.model.StatisticsDelta;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 统计增量推送服务（Server-Sent Events）
+ *
+ * 每导入一条Replay，计算其所在游戏难度的统计增量（是否新纪录、自机使用次数、通关率），
+ * 按序号推送给所有订阅者，并保存在固定容量的环形缓冲中。
+ * 客户端断线重连时携带 Last-Event-ID，服务端从缓冲中补发错过的增量；
+ * 缓冲已覆盖或服务端重启过时发送 reset 事件，由客户端重新获取完整报告。
+ *
+ * 事件ID格式为 "启动时间戳-序号"，用于识别服务端重启后序号归零的情况。
+ * 计算、补发和推送都在同一个单线程上执行，缓冲区无需额外同步，
+ * 订阅者也不会在补发与实时推送之间漏收或重复收到增量。
+ */
+@Service
+public class StatisticsStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(StatisticsStreamService.class);
+
+    /**
+     * 环形缓冲保留的增量数量
+     */
+    private static final int RING_CAPACITY = 512;
+
+    /**
+     * 单个SSE连接的超时时间（毫秒），超时后由浏览器自动重连并续传
+     */
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    private final ReplayDAO replayDAO;
+    private final ExecutorService executor;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final StatisticsDelta[] ring = new StatisticsDelta[RING_CAPACITY];
+    private final long epoch = System.currentTimeMillis();
+    private long lastSeq;
+
+    public StatisticsStreamService(ReplayDAO replayDAO) {
+        this.replayDAO = replayDAO;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "StatisticsStream");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 新建订阅
+     *
+     * @param lastEventId 客户端最后收到的事件ID（Last-Event-ID），首次连接为null
+     * @return SSE连接
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        executor.submit(() -> {
+            try {
+                resume(emitter, lastEventId);
+                emitters.add(emitter);
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    @EventListener
+    public void onReplayImported(ReplayImportedEvent event) {
+        Replay replay = event.replay();
+        executor.submit(() -> publish(replay));
+    }
+
+    private void publish(Replay replay) {
+        StatisticsDelta delta;
+        try {
+            delta = replayDAO.summarizeDifficulty(replay);
+        } catch (Exception e) {
+            log.warn("计算统计增量失败: {} - {}", replay.getFileName(), e.getMessage());
+            return;
+        }
+        delta.setSeq(++lastSeq);
+        ring[(int) (lastSeq % RING_CAPACITY)] = delta;
+
+        for (SseEmitter emitter : emitters) {
+            try {
+                send(emitter, delta);
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * 补发客户端错过的增量；首次连接时只发送当前位置，确立后续重连的 Last-Event-ID
+     */
+    private void resume(SseEmitter emitter, String lastEventId) throws IOException {
+        long lastSeen = parseSeq(lastEventId);
+        if (lastSeen < 0) {
+            emitter.send(SseEmitter.event().id(eventId(lastSeq)).name("sync").data(lastSeq));
+            return;
+        }
+
+        long oldest = Math.max(1, lastSeq - RING_CAPACITY + 1);
+        if (lastSeen > lastSeq || lastSeen + 1 < oldest) {
+            // 服务端重启过或缓冲已被覆盖：无法补齐，让客户端重新获取完整报告
+            emitter.send(SseEmitter.event().id(eventId(lastSeq)).name("reset").data(lastSeq));
+            return;
+        }
+        for (long seq = lastSeen + 1; seq <= lastSeq; seq++) {
+            send(emitter, ring[(int) (seq % RING_CAPACITY)]);
+        }
+    }
+
+    private void send(SseEmitter emitter, StatisticsDelta delta) throws IOException {
+        emitter.send(SseEmitter.event().id(eventId(delta.getSeq())).name("delta").data(delta));
+    }
+
+    private String eventId(long seq) {
+        return epoch + "-" + seq;
+    }
+
+    /**
+     * @return 同一次启动内的序号；缺失返回-1，来自其他启动或无法解析时返回 Long.MAX_VALUE（触发reset）
+     */
+    private long parseSeq(String eventId) {
+        if (eventId == null || eventId.isBlank()) {
+            return -1;
+        }
+        int dash = eventId.indexOf('-');
+        try {
+            if (dash < 0 || Long.parseLong(eventId.substring(0, dash)) != epoch) {
+                return Long.MAX_VALUE;
+            }
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        for (SseEmitter emitter : emitters) {
+            emitter.complete();
+        }
+        emitters.clear();
+    }
+}
@@ -1,31 +1,59 @@
 package com.thmanager.util;
 
 import com.thmanager.model.Game;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * 解析游戏封面图路径（thmanager-frontend/image/cover/thXX_title.*）
+ *
+ * 封面目录只列出一次，结果保存为不可变的 作品编号 -> 地址 映射，查询不访问文件系统。
+ * 目录内容变化后由 {@link #refresh()} 重新列出（见 GameCoverWatcher），{@link #version()} 随之递增。
  */
 public final class GameCoverResolver {
 
+    private static final Logger log = LoggerFactory.getLogger(GameCoverResolver.class);
+
     private static final Path COVER_ROOT = Paths.get(System.getProperty("user.dir"), "thmanager-frontend", "image", "cover");
     private static final String DEFAULT_COVER = "/image/main/default.svg";
+    private static final Pattern COVER_FILE = Pattern.compile("th(\\d{2,})_title\\.(jpg|png|webp)");
+    /**
+     * 同一作品有多种格式时的优先顺序
+     */
+    private static final String[] EXTENSIONS = { "jpg", "png", "webp" };
+
+    private static final AtomicLong VERSION = new AtomicLong();
+    private static volatile Map<Integer, String> covers;
 
     private GameCoverResolver() {
     }
 
+    /**
+     * @return 封面图目录
+     */
+    public static Path coverRoot() {
+        return COVER_ROOT;
+    }
+
     public static String resolve(int gameNumber) {
-        String stem = String.format("th%02d_title", gameNumber);
-        for (String ext : new String[] { ".jpg", ".png", ".webp" }) {
-            Path file = COVER_ROOT.resolve(stem + ext);
-            if (Files.exists(file)) {
-                return "/image/cover/" + stem + ext;
-            }
+        Map<Integer, String> snapshot = covers;
+        if (snapshot == null) {
+            refresh();
+            snapshot = covers;
         }
-        return DEFAULT_COVER;
+        return snapshot.getOrDefault(gameNumber, DEFAULT_COVER);
     }
 
     public static void applyIfMissing(Game game) {
@@ -36,4 +64,50 @@ public final class GameCoverResolver {
             game.setCoverImage(resolve(game.getGameNumber()));
         }
     }
+
+    /**
+     * 重新列出封面目录并替换映射
+     */
+    public static synchronized void refresh() {
+        Map<Integer, String> found = new HashMap<>();
+        Map<Integer, Integer> rank = new HashMap<>();
+        if (Files.isDirectory(COVER_ROOT)) {
+            try (Stream<Path> files = Files.list(COVER_ROOT)) {
+                files.forEach(file -> {
+                    String name = file.getFileName().toString();
+                    Matcher m = COVER_FILE.matcher(name.toLowerCase(Locale.ROOT));
+                    if (!m.matches() || !name.startsWith("th")) {
+                        return;
+                    }
+                    int number = Integer.parseInt(m.group(1));
+                    int priority = priorityOf(m.group(2));
+                    if (priority < rank.getOrDefault(number, Integer.MAX_VALUE)) {
+                        rank.put(number, priority);
+                        found.put(number, "/image/cover/" + name);
+                    }
+                });
+            } catch (IOException e) {
+                log.warn("读取封面目录失败: {}", e.getMessage());
+            }
+        }
+        covers = Map.copyOf(found);
+        VERSION.incrementAndGet();
+        log.debug("已加载 {} 个游戏封面", found.size());
+    }
+
+    /**
+     * @return 封面映射的版本号，每次 {@link #refresh()} 后递增
+     */
+    public static long version() {
+        return VERSION.get();
+    }
+
+    private static int priorityOf(String extension) {
+        for (int i = 0; i < EXTENSIONS.length; i++) {
+            if (EXTENSIONS[i].equals(extension)) {
+                return i;
+            }
+        }
+        return EXTENSIONS.length;
+    }
 }
@@ -0,0 +1,149 @@
+package com.thmanager.util;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单个Replay文件导入过程的阶段耗时记录（进程内的轻量追踪）
+ *
+ * 监听服务在处理文件的线程上 {@link #begin} 一次导入，之后解析器、DAO 等在同一线程上用
+ * {@link #span(String)} 记录各阶段；当前线程没有进行中的导入时 span 为空操作，开销只有一次 ThreadLocal 读取。
+ * 阶段可以嵌套（如 parse 内的 parse.subprocess），以 depth 区分层级。
+ *
+ * 一次导入只在一个线程上记录，非线程安全；{@link #finish} 之后只读，可以交给其他线程。
+ */
+public final class ImportTrace {
+
+    private static final ThreadLocal<ImportTrace> CURRENT = new ThreadLocal<>();
+
+    private static final Span NOOP = () -> {
+    };
+
+    private final String filePath;
+    private final String source;
+    private final LocalDateTime startedAt;
+    private final long startNanos;
+    private final List<Stage> stages = new ArrayList<>();
+    private int depth;
+    private long durationNanos = -1;
+    private String outcome;
+
+    private ImportTrace(String filePath, String source, long startNanos) {
+        this.filePath = filePath;
+        this.source = source;
+        this.startNanos = startNanos;
+        this.startedAt = LocalDateTime.now().minusNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 在当前线程上开始记录一次导入
+     *
+     * @param filePath   Replay文件路径
+     * @param source     触发来源（watch：目录事件，scan：启动扫描）
+     * @param startNanos 导入起点的 {@link System#nanoTime()}，目录事件可早于处理线程开始的时间
+     */
+    public static ImportTrace begin(String filePath, String source, long startNanos) {
+        ImportTrace trace = new ImportTrace(filePath, source, startNanos);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * 在当前线程进行中的导入上开始一个阶段，用 try-with-resources 结束
+     *
+     * @param name 阶段名称
+     */
+    public static Span span(String name) {
+        ImportTrace trace = CURRENT.get();
+        if (trace == null) {
+            return NOOP;
+        }
+        long start = System.nanoTime();
+        int level = trace.depth++;
+        return () -> {
+            trace.depth--;
+            trace.stages.add(new Stage(name, level, start - trace.startNanos, System.nanoTime() - start));
+        };
+    }
+
+    /**
+     * 补记一个已经结束的阶段（如事件进入线程池后的排队时间）
+     */
+    public void record(String name, long startNanos, long endNanos) {
+        stages.add(new Stage(name, depth, startNanos - this.startNanos, endNanos - startNanos));
+    }
+
+    /**
+     * 结束这次导入并从当前线程移除
+     *
+     * @param outcome 结果（imported、updated、unchanged、parse_failed 等）
+     * @return 本对象
+     */
+    public ImportTrace finish(String outcome) {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+        this.outcome = outcome;
+        this.durationNanos = System.nanoTime() - startNanos;
+        return this;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return 从起点到 {@link #finish} 的总耗时（纳秒），未结束时为-1
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return 按开始时间排序的各阶段
+     */
+    public List<Stage> getStages() {
+        List<Stage> sorted = new ArrayList<>(stages);
+        sorted.sort(null);
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * 阶段结束句柄
+     */
+    @FunctionalInterface
+    public interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * 一个阶段
+     *
+     * @param name           阶段名称
+     * @param depth          嵌套层级，0为顶层
+     * @param offsetNanos    相对导入起点的开始时间
+     * @param durationNanos  耗时
+     */
+    public record Stage(String name, int depth, long offsetNanos, long durationNanos) implements Comparable<Stage> {
+        @Override
+        public int compareTo(Stage other) {
+            int byOffset = Long.compare(offsetNanos, other.offsetNanos);
+            return byOffset != 0 ? byOffset : Integer.compare(depth, other.depth);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.thmanager.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 解析器JSON输出的压缩存储（replays.raw_json_compressed）
+ *
+ * 使用 Deflate + 预置字典：字典由解析器输出中反复出现的键名和结构片段组成，
+ * 单条Replay的JSON很短，没有字典时大部分压缩收益会被耗在这些重复键名上。
+ * 首字节为格式版本号，更换字典时递增版本，旧数据仍按旧字典解压。
+ */
+public final class JsonCompression {
+
+    private static final Logger log = LoggerFactory.getLogger(JsonCompression.class);
+
+    /**
+     * 格式版本：Deflate + 字典 v1
+     */
+    private static final byte FORMAT_DEFLATE_V1 = 1;
+
+    /**
+     * 预置字典（Deflate 对字典末尾的内容匹配最优，出现频率最高的片段放在最后）
+     */
+    private static final byte[] DICTIONARY_V1 = ("\"player\":\"\",\"date\":\"20\",\"slowRate\":0.0,"
+            + "\"version\":\"\",\"cleared\":false,\"cleared\":true,\"frameCount\":,\"totalScore\":,"
+            + "\"Reimu\",\"Marisa\",\"Sakuya\",\"Sanae\",\"Youmu\",\"Easy\",\"Normal\",\"Hard\",\"Lunatic\","
+            + "\"Extra\",\"Phantasm\",\"All Clear\",\"Stage \",\"baseInfoDic\":{\"character\":\"\",\"shottype\":\"\","
+            + "\"rank\":\"\",\"stage\":\"\"},\"stageScore\":[],\"bombAnalysis\":{\"totalZ\":0,\"totalX\":0,\"totalC\":0,"
+            + "\"byStage\":[{\"stage\":1,\"z_count\":0,\"x_count\":0,\"start_frame\":0,\"end_frame\":0},"
+            + "{\"stage\":2,\"z_count\":0,\"x_count\":0,\"start_frame\":,\"end_frame\":},"
+            + "{\"stage\":,\"z_count\":,\"x_count\":,\"start_frame\":,\"end_frame\":}]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private JsonCompression() {
+    }
+
+    /**
+     * 压缩JSON字符串
+     *
+     * @param json JSON字符串
+     * @return 压缩后的字节，输入为null时返回null
+     */
+    public static byte[] compress(String json) {
+        if (json == null) {
+            return null;
+        }
+        byte[] input = json.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICTIONARY_V1);
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 16);
+            out.write(FORMAT_DEFLATE_V1);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解压为JSON字符串
+     *
+     * @param data {@link #compress(String)} 生成的字节
+     * @return JSON字符串，输入为null、格式无法识别或数据被截断、损坏时返回null
+     */
+    public static String decompress(byte[] data) {
+        if (data == null || data.length == 0 || data[0] != FORMAT_DEFLATE_V1) {
+            return null;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY_V1);
+                        continue;
+                    }
+                    // 输入已用完但压缩流没有结束：数据被截断
+                    break;
+                }
+                out.write(buffer, 0, n);
+            }
+            if (!inflater.finished()) {
+                log.warn("解压raw_json失败: 数据不完整");
+                return null;
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            log.warn("解压raw_json失败: {}", e.getMessage());
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+}
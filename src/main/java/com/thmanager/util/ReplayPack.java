@@ -0,0 +1,458 @@
+package com.thmanager.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Replay打包文件（.thpack）
+ *
+ * 数万个小文件逐个复制很慢，备份改为写入单个打包文件：
+ * <pre>
+ * [头部 "THPACK01"] [数据段：条目内容依次追加] [索引] [尾部 24B]
+ * 索引条目：SHA-256(32B) 偏移(8B) 长度(8B) 元数据长度(2B) 元数据(UTF-8)
+ * 尾部：索引偏移(8B) 条目数(4B) 索引CRC32(4B) "THPKEND\0"
+ * </pre>
+ * 所有整数为小端序。条目按内容的SHA-256去重，同一内容只保存一次。
+ *
+ * 写入是流式的：新条目追加在上一次提交的尾部之后，边写边计算哈希，
+ * {@link Writer#commit()} 时再把完整索引与尾部写在最后；未提交就关闭时截掉新写入的部分，文件保持原样。
+ * 已提交的索引与尾部从不改写：追加中途进程被结束或断电时，文件末尾只是不完整的数据，
+ * 打开时向前找到上一次提交的尾部，之前的条目照常可读。
+ * 读取时按索引定位读取条目，边读边校验哈希。
+ * 追加写入不会回收不再需要的条目与旧索引，由 {@link #compact(Path, Predicate)} 重写文件释放空间。
+ */
+public final class ReplayPack {
+
+    private static final byte[] MAGIC = "THPACK01".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FOOTER_MAGIC = "THPKEND\0".getBytes(StandardCharsets.US_ASCII);
+    private static final int FOOTER_SIZE = 24;
+    private static final int HASH_SIZE = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ReplayPack() {
+    }
+
+    /**
+     * 打包文件中的一个条目
+     *
+     * @param hash     内容的SHA-256（十六进制）
+     * @param offset   内容在文件中的偏移
+     * @param length   内容长度
+     * @param metadata 元数据（如 replay、database）
+     */
+    public record Entry(String hash, long offset, long length, String metadata) {
+    }
+
+    /**
+     * 打开打包文件用于追加，文件不存在时新建
+     */
+    public static Writer append(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    /**
+     * 打开打包文件用于读取
+     */
+    public static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    /**
+     * 追加写入
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final boolean created;
+        private final long committedEnd;
+        private final List<Entry> committedEntries;
+        private final List<Entry> entries;
+        private final Map<String, Entry> byHash = new HashMap<>();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long dataEnd;
+        private boolean committed;
+
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            this.created = !Files.exists(file);
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                if (created) {
+                    channel.write(ByteBuffer.wrap(MAGIC), 0);
+                    this.committedEntries = List.of();
+                    this.committedEnd = MAGIC.length;
+                } else {
+                    // 上次追加被中断时，尾部之后的残留数据会被新条目覆盖
+                    Index index = readIndex(channel);
+                    this.committedEntries = index.entries();
+                    this.committedEnd = index.end();
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            this.entries = new ArrayList<>(committedEntries);
+            for (Entry entry : entries) {
+                byHash.put(entry.hash(), entry);
+            }
+            this.dataEnd = committedEnd;
+        }
+
+        /**
+         * @return 是否已包含该内容
+         */
+        public boolean contains(String hash) {
+            return byHash.containsKey(hash);
+        }
+
+        /**
+         * 以流式方式追加文件内容
+         *
+         * @param source   源文件
+         * @param metadata 元数据
+         * @return 新条目；内容已存在时不再写入，返回移到最后并换上新元数据的已有条目
+         */
+        public Entry add(Path source, String metadata) throws IOException {
+            byte[] metadataBytes = metadata.getBytes(StandardCharsets.UTF_8);
+            if (metadataBytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("metadata too long");
+            }
+            MessageDigest digest = sha256();
+            long position = dataEnd;
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                buffer.clear();
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    buffer.clear();
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Entry existing = byHash.get(hash);
+            if (existing != null) {
+                // 已写入的字节会被下一个条目或索引覆盖；条目移到最后，按写入顺序取最新一份时仍能取到它
+                Entry moved = new Entry(hash, existing.offset(), existing.length(), metadata);
+                entries.remove(existing);
+                entries.add(moved);
+                byHash.put(hash, moved);
+                return moved;
+            }
+            Entry entry = new Entry(hash, dataEnd, position - dataEnd, metadata);
+            entries.add(entry);
+            byHash.put(hash, entry);
+            dataEnd = position;
+            return entry;
+        }
+
+        /**
+         * @return 全部条目（含已提交的旧条目）
+         */
+        public List<Entry> entries() {
+            return Collections.unmodifiableList(entries);
+        }
+
+        /**
+         * 写入索引与尾部并刷到磁盘
+         *
+         * 条目没有变化时不再写一份相同的索引。
+         */
+        public void commit() throws IOException {
+            if (!created && entries.equals(committedEntries)) {
+                channel.truncate(committedEnd);
+            } else {
+                // 数据先落盘，尾部写好时它指向的内容一定完整
+                channel.force(false);
+                writeTail(channel, dataEnd, encodeIndex(entries), entries.size());
+            }
+            channel.force(true);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (!committed) {
+                    channel.truncate(created ? 0 : committedEnd);
+                }
+            } finally {
+                channel.close();
+                if (!committed && created) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * 随机读取
+     *
+     * 按索引用定位读取（{@link FileChannel#read(ByteBuffer, long)}）取出条目，不映射文件：
+     * 映射要等到GC才释放，期间Windows上无法替换或截断该文件。
+     */
+    public static final class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final List<Entry> entries;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private Reader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                this.entries = readIndex(channel).entries();
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return 全部条目，按写入顺序
+         */
+        public List<Entry> entries() {
+            return entries;
+        }
+
+        /**
+         * 把条目内容写到文件（先写临时文件，校验哈希后再移动到目标位置）
+         *
+         * @throws IOException 内容与索引中的哈希不一致
+         */
+        public void extract(Entry entry, Path target) throws IOException {
+            Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "extract", ".tmp");
+            try {
+                MessageDigest digest = sha256();
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    long position = entry.offset();
+                    long end = entry.offset() + entry.length();
+                    while (position < end) {
+                        buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+                        readFully(channel, buffer, position);
+                        position += buffer.remaining();
+                        digest.update(buffer.duplicate());
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                    }
+                }
+                if (!HexFormat.of().formatHex(digest.digest()).equals(entry.hash())) {
+                    throw new IOException("pack entry corrupted: " + entry.hash());
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * 压缩打包文件：只保留满足条件的条目
+     *
+     * 保留的条目依次复制到同目录下的临时文件，写好索引后替换原文件；失败时原文件不变。
+     *
+     * @param keep 要保留的条目
+     * @return 释放的字节数
+     */
+    public static long compact(Path file, Predicate<Entry> keep) throws IOException {
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "compact", ".tmp");
+        try {
+            long before;
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                before = in.size();
+                List<Entry> kept = new ArrayList<>();
+                long position = out.write(ByteBuffer.wrap(MAGIC), 0);
+                for (Entry entry : readIndex(in).entries()) {
+                    if (!keep.test(entry)) {
+                        continue;
+                    }
+                    out.position(position);
+                    for (long copied = 0; copied < entry.length(); ) {
+                        copied += in.transferTo(entry.offset() + copied, entry.length() - copied, out);
+                    }
+                    kept.add(new Entry(entry.hash(), position, entry.length(), entry.metadata()));
+                    position += entry.length();
+                }
+                writeTail(out, position, encodeIndex(kept), kept.size());
+                out.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return before - Files.size(file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @param end     尾部的结束位置
+     * @param entries 条目
+     */
+    private record Index(long end, List<Entry> entries) {
+    }
+
+    /**
+     * 读取最后一次提交的索引
+     *
+     * 文件末尾不是完整的尾部时（追加被中断），向前查找尾部标记，取第一个校验通过的索引。
+     */
+    private static Index readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+        if (size < MAGIC.length + FOOTER_SIZE || !Arrays.equals(readFully(channel, header, 0).array(), MAGIC)) {
+            throw new IOException("not a replay pack");
+        }
+        Index index = readIndexEndingAt(channel, size);
+        if (index != null) {
+            return index;
+        }
+
+        ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+        long chunkEnd = size;
+        while (chunkEnd >= MAGIC.length + FOOTER_SIZE) {
+            long chunkStart = Math.max(MAGIC.length, chunkEnd - BUFFER_SIZE);
+            chunk.clear().limit((int) (chunkEnd - chunkStart));
+            readFully(channel, chunk, chunkStart);
+            for (int i = chunk.limit() - FOOTER_MAGIC.length; i >= 0; i--) {
+                if (chunk.get(i) == FOOTER_MAGIC[0]
+                        && chunk.slice(i, FOOTER_MAGIC.length).equals(ByteBuffer.wrap(FOOTER_MAGIC))) {
+                    index = readIndexEndingAt(channel, chunkStart + i + FOOTER_MAGIC.length);
+                    if (index != null) {
+                        return index;
+                    }
+                }
+            }
+            if (chunkStart == MAGIC.length) {
+                break;
+            }
+            // 与上一块重叠，跨块的尾部标记也能找到
+            chunkEnd = chunkStart + FOOTER_MAGIC.length - 1;
+        }
+        throw new IOException("replay pack index corrupted");
+    }
+
+    /**
+     * @param end 尾部的结束位置
+     * @return 校验不通过时返回null
+     */
+    private static Index readIndexEndingAt(FileChannel channel, long end) throws IOException {
+        if (end < MAGIC.length + FOOTER_SIZE) {
+            return null;
+        }
+        ByteBuffer footer = readFully(channel, ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN),
+                end - FOOTER_SIZE);
+        long indexOffset = footer.getLong();
+        int count = footer.getInt();
+        int crc = footer.getInt();
+        byte[] magic = new byte[FOOTER_MAGIC.length];
+        footer.get(magic);
+        long indexLength = end - FOOTER_SIZE - indexOffset;
+        if (!Arrays.equals(magic, FOOTER_MAGIC) || indexOffset < MAGIC.length || indexLength < 0
+                || indexLength > Integer.MAX_VALUE || count < 0) {
+            return null;
+        }
+
+        ByteBuffer index = readFully(channel, ByteBuffer.allocate((int) indexLength).order(ByteOrder.LITTLE_ENDIAN),
+                indexOffset);
+        CRC32 actual = new CRC32();
+        actual.update(index.duplicate());
+        if ((int) actual.getValue() != crc) {
+            return null;
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(count, (int) indexLength / (HASH_SIZE + 18)));
+        byte[] hash = new byte[HASH_SIZE];
+        try {
+            for (int i = 0; i < count; i++) {
+                index.get(hash);
+                long offset = index.getLong();
+                long length = index.getLong();
+                byte[] metadata = new byte[Short.toUnsignedInt(index.getShort())];
+                index.get(metadata);
+                if (offset < MAGIC.length || length < 0 || offset + length > indexOffset) {
+                    return null;
+                }
+                entries.add(new Entry(HexFormat.of().formatHex(hash), offset, length,
+                        new String(metadata, StandardCharsets.UTF_8)));
+            }
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+        return new Index(end, List.copyOf(entries));
+    }
+
+    private static ByteBuffer encodeIndex(List<Entry> entries) {
+        int size = 0;
+        List<byte[]> metadata = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            byte[] bytes = entry.metadata().getBytes(StandardCharsets.UTF_8);
+            metadata.add(bytes);
+            size += HASH_SIZE + 8 + 8 + 2 + bytes.length;
+        }
+        ByteBuffer index = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            index.put(HexFormat.of().parseHex(entry.hash()))
+                    .putLong(entry.offset())
+                    .putLong(entry.length())
+                    .putShort((short) metadata.get(i).length)
+                    .put(metadata.get(i));
+        }
+        return index.flip();
+    }
+
+    private static void writeTail(FileChannel channel, long indexOffset, ByteBuffer index, int count)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(index.duplicate());
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        footer.putLong(indexOffset).putInt(count).putInt((int) crc.getValue()).put(FOOTER_MAGIC).flip();
+        long position = indexOffset;
+        while (index.hasRemaining()) {
+            position += channel.write(index, position);
+        }
+        while (footer.hasRemaining()) {
+            position += channel.write(footer, position);
+        }
+        channel.truncate(position);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("unexpected end of replay pack");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.thmanager.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 分数分布的 t-digest 摘要（合并式实现，k1 尺度函数）
+ *
+ * 用有限个质心（均值 + 权重）近似一组分数的分布，可增量加入新分数、与其他摘要合并，
+ * 并估计分位数（中位数、p90）与某个分数所处的百分位。两端质心更细，极值附近误差最小；
+ * 最小值与最大值单独精确记录。压缩参数为100时编码后不超过约2.5KB，与分数数量无关。
+ *
+ * 非线程安全，由调用方同步。
+ */
+public final class ScoreDigest {
+
+    /**
+     * 默认压缩参数，质心数量约为其2倍以内
+     */
+    public static final int DEFAULT_COMPRESSION = 100;
+
+    private static final byte FORMAT_V1 = 1;
+    private static final int HEADER_BYTES = 1 + Short.BYTES + Integer.BYTES + 2 * Double.BYTES;
+    private static final int CENTROID_BYTES = Double.BYTES + Integer.BYTES;
+
+    private final int compression;
+    private double[] means;
+    private int[] weights;
+    private int centroids;
+    private long totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private final double[] buffer;
+    private int buffered;
+
+    public ScoreDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public ScoreDigest(int compression) {
+        this.compression = compression;
+        this.means = new double[2 * compression + 8];
+        this.weights = new int[means.length];
+        this.buffer = new double[5 * compression];
+    }
+
+    /**
+     * 加入一个分数
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        buffer[buffered++] = value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (buffered == buffer.length) {
+            compress();
+        }
+    }
+
+    /**
+     * 合并另一个摘要（对方不受影响）
+     */
+    public void merge(ScoreDigest other) {
+        other.compress();
+        if (other.totalWeight == 0) {
+            return;
+        }
+        compress();
+        int n = centroids + other.centroids;
+        double[] m = Arrays.copyOf(means, n);
+        int[] w = Arrays.copyOf(weights, n);
+        System.arraycopy(other.means, 0, m, centroids, other.centroids);
+        System.arraycopy(other.weights, 0, w, centroids, other.centroids);
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        mergeCentroids(m, w, n, totalWeight + other.totalWeight);
+    }
+
+    /**
+     * @return 加入的分数总数
+     */
+    public long size() {
+        return totalWeight + buffered;
+    }
+
+    public double min() {
+        return size() == 0 ? Double.NaN : min;
+    }
+
+    public double max() {
+        return size() == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * 估计分位数
+     *
+     * @param q 分位（0~1）
+     * @return 分位数，没有数据时返回NaN
+     */
+    public double quantile(double q) {
+        compress();
+        if (totalWeight == 0) {
+            return Double.NaN;
+        }
+        if (centroids == 1 || q <= 0) {
+            return q <= 0 ? min : means[0];
+        }
+        if (q >= 1) {
+            return max;
+        }
+        // 以 (min, 0)、(质心均值, 质心中点累计权重)、(max, 总权重) 为折线节点做线性插值
+        double target = q * totalWeight;
+        double prevX = min;
+        double prevCum = 0;
+        double cum = 0;
+        for (int i = 0; i < centroids; i++) {
+            double center = cum + weights[i] / 2.0;
+            if (target < center) {
+                return interpolate(target, prevCum, center, prevX, means[i]);
+            }
+            prevX = means[i];
+            prevCum = center;
+            cum += weights[i];
+        }
+        return interpolate(target, prevCum, totalWeight, prevX, max);
+    }
+
+    /**
+     * 估计小于给定分数的比例（百分位排名）
+     *
+     * @param value 分数
+     * @return 0~1，没有数据时返回NaN；大于所有已有分数时为1
+     */
+    public double cdf(double value) {
+        compress();
+        if (totalWeight == 0) {
+            return Double.NaN;
+        }
+        if (value < min) {
+            return 0;
+        }
+        if (value > max) {
+            return 1;
+        }
+        if (max == min) {
+            return 0.5;
+        }
+        double prevX = min;
+        double prevCum = 0;
+        double cum = 0;
+        for (int i = 0; i < centroids; i++) {
+            double center = cum + weights[i] / 2.0;
+            if (value < means[i]) {
+                return interpolate(value, prevX, means[i], prevCum, center) / totalWeight;
+            }
+            prevX = means[i];
+            prevCum = center;
+            cum += weights[i];
+        }
+        return interpolate(value, prevX, max, prevCum, totalWeight) / totalWeight;
+    }
+
+    /**
+     * 编码为紧凑的二进制格式：版本、压缩参数、质心数、最小值、最大值，之后每个质心为 double 均值 + int 权重
+     */
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + centroids * CENTROID_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(FORMAT_V1);
+        out.putShort((short) compression);
+        out.putInt(centroids);
+        out.putDouble(min);
+        out.putDouble(max);
+        for (int i = 0; i < centroids; i++) {
+            out.putDouble(means[i]);
+            out.putInt(weights[i]);
+        }
+        return out.array();
+    }
+
+    /**
+     * 从 {@link #toBytes()} 的结果还原
+     *
+     * @throws IllegalArgumentException 数据格式不正确
+     */
+    public static ScoreDigest fromBytes(byte[] data) {
+        if (data == null || data.length < HEADER_BYTES || data[0] != FORMAT_V1) {
+            throw new IllegalArgumentException("unsupported score digest format");
+        }
+        ByteBuffer in = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        in.get();
+        ScoreDigest digest = new ScoreDigest(in.getShort());
+        int n = in.getInt();
+        if (data.length != HEADER_BYTES + n * CENTROID_BYTES) {
+            throw new IllegalArgumentException("truncated score digest");
+        }
+        digest.min = in.getDouble();
+        digest.max = in.getDouble();
+        digest.ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            digest.means[i] = in.getDouble();
+            digest.weights[i] = in.getInt();
+            digest.totalWeight += digest.weights[i];
+        }
+        digest.centroids = n;
+        return digest;
+    }
+
+    /**
+     * 把缓冲区中的分数并入质心
+     */
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int n = centroids + buffered;
+        double[] m = Arrays.copyOf(means, n);
+        int[] w = Arrays.copyOf(weights, n);
+        System.arraycopy(buffer, 0, m, centroids, buffered);
+        Arrays.fill(w, centroids, n, 1);
+        long total = totalWeight + buffered;
+        buffered = 0;
+        mergeCentroids(m, w, n, total);
+    }
+
+    /**
+     * 按均值排序后从左到右贪心合并，质心权重不超过 k1 尺度函数相邻整数间对应的分位宽度
+     */
+    private void mergeCentroids(double[] m, int[] w, int n, long total) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(m[a], m[b]));
+
+        ensureCapacity(n);
+        int count = 0;
+        double curMean = m[order[0]];
+        long curWeight = w[order[0]];
+        long weightSoFar = 0;
+        double limit = total * kToQ(qToK(0) + 1);
+        for (int j = 1; j < n; j++) {
+            int i = order[j];
+            if (weightSoFar + curWeight + w[i] <= limit) {
+                curWeight += w[i];
+                curMean += (m[i] - curMean) * w[i] / curWeight;
+            } else {
+                means[count] = curMean;
+                weights[count] = (int) curWeight;
+                count++;
+                weightSoFar += curWeight;
+                limit = total * kToQ(qToK((double) weightSoFar / total) + 1);
+                curMean = m[i];
+                curWeight = w[i];
+            }
+        }
+        means[count] = curMean;
+        weights[count] = (int) curWeight;
+        centroids = count + 1;
+        totalWeight = total;
+    }
+
+    private double qToK(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+    }
+
+    private double kToQ(double k) {
+        double radians = k * 2 * Math.PI / compression;
+        return radians >= Math.PI / 2 ? 1 : (Math.sin(radians) + 1) / 2;
+    }
+
+    private void ensureCapacity(int n) {
+        if (means.length < n) {
+            means = Arrays.copyOf(means, n);
+            weights = Arrays.copyOf(weights, n);
+        }
+    }
+
+    private static double interpolate(double x, double x0, double x1, double y0, double y1) {
+        return x1 == x0 ? (y0 + y1) / 2 : y0 + (x - x0) * (y1 - y0) / (x1 - x0);
+    }
+}
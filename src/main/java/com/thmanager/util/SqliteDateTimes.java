@@ -0,0 +1,61 @@
+package com.thmanager.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * SQLite 中时间列的文本解析
+ *
+ * 列表查询按原始文本读取时间列，只在真正访问时才解析成 {@link LocalDateTime}，
+ * 省去 JDBC 驱动逐行解析日期的开销。需要兼容的存储格式：
+ * <ul>
+ *     <li>应用写入的 ISO 格式：2024-05-06T07:08:09.123</li>
+ *     <li>CURRENT_TIMESTAMP 默认值：2024-05-06 07:08:09</li>
+ *     <li>JDBC 时间戳写入的毫秒整数（按本地时区解释，与驱动行为一致）</li>
+ * </ul>
+ */
+public final class SqliteDateTimes {
+
+    private static final Logger log = LoggerFactory.getLogger(SqliteDateTimes.class);
+
+    private SqliteDateTimes() {
+    }
+
+    /**
+     * 解析时间列文本
+     *
+     * @param text 列的原始文本，可为null
+     * @return 解析结果，为null或格式无法识别时返回null
+     */
+    public static LocalDateTime parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        if (isDigits(text)) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(text)), ZoneId.systemDefault());
+        }
+        try {
+            return LocalDateTime.parse(text.length() > 10 && text.charAt(10) == ' '
+                    ? text.substring(0, 10) + 'T' + text.substring(11)
+                    : text);
+        } catch (DateTimeParseException e) {
+            log.warn("无法解析时间: {}", text);
+            return null;
+        }
+    }
+
+    private static boolean isDigits(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
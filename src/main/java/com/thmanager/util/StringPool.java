@@ -0,0 +1,62 @@
+package com.thmanager.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 低基数字符串的共享池
+ *
+ * 角色、自机类型、难度、关卡、游戏标题等字段在上万条Replay中只有几十种取值，
+ * 从数据库逐行读出时每行都是一个新的String。经过本池后相同内容只保留一个实例，
+ * 大列表常驻内存时可以省去这些重复对象。池的大小有上限，超出后直接返回原字符串，
+ * 避免异常数据把池撑大。命中与未命中次数供运行指标读取。
+ */
+public final class StringPool {
+
+    /**
+     * 池中最多保留的字符串数量
+     */
+    private static final int MAX_SIZE = 4096;
+
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private StringPool() {
+    }
+
+    /**
+     * 获取与参数内容相同的共享实例
+     *
+     * @param value 字符串，可为null
+     * @return 共享实例；池已满且内容未入池时返回参数本身
+     */
+    public static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String shared = POOL.get(value);
+        if (shared != null) {
+            HITS.increment();
+            return shared;
+        }
+        MISSES.increment();
+        if (POOL.size() >= MAX_SIZE) {
+            return value;
+        }
+        shared = POOL.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    public static long hits() {
+        return HITS.sum();
+    }
+
+    public static long misses() {
+        return MISSES.sum();
+    }
+
+    public static int size() {
+        return POOL.size();
+    }
+}
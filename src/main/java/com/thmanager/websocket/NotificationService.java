@@ -0,0 +1,283 @@
+package com.thmanager.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thmanager.event.*;
+import com.thmanager.model.Game;
+import com.thmanager.model.Replay;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 事件推送服务（/ws/events）
+ *
+ * 监听应用内的导入、扫描进度、游戏启动/结束和倒计时事件，推送给所有已连接的前端。
+ * 事件先进入队列，每 {@value #FLUSH_INTERVAL_MS} 毫秒合并为一帧发送：
+ * 扫描进度和倒计时只保留最新一条，批量导入超过 {@value #MAX_IMPORTS_PER_FRAME} 条时
+ * 合并为一条 replays-changed 事件，由前端重新拉取列表。
+ *
+ * 每个连接都包装为 {@link ConcurrentWebSocketSessionDecorator}：发送慢的客户端
+ * 只会积压自己的缓冲区，超出上限时丢弃最旧的帧，发送超时则断开该连接，不影响其他客户端。
+ *
+ * 帧格式：{"seq": 12, "events": [{"type": "replay-imported", ...}, ...]}
+ */
+@Service
+public class NotificationService extends TextWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
+
+    /**
+     * 合并发送的间隔（毫秒）
+     */
+    private static final long FLUSH_INTERVAL_MS = 100;
+
+    /**
+     * 单帧最多逐条携带的导入事件数量
+     */
+    private static final int MAX_IMPORTS_PER_FRAME = 100;
+
+    /**
+     * 单个连接一次发送的最长耗时（毫秒），超时视为客户端失效
+     */
+    private static final int SEND_TIME_LIMIT_MS = 5000;
+
+    /**
+     * 单个连接允许积压的字节数，超出后丢弃最旧的帧
+     */
+    private static final int BUFFER_SIZE_LIMIT = 256 * 1024;
+
+    private static final String TYPE_REPLAY_IMPORTED = "replay-imported";
+    private static final String TYPE_REPLAYS_CHANGED = "replays-changed";
+    private static final String TYPE_SCAN_PROGRESS = "scan-progress";
+    private static final String TYPE_GAME_START = "game-start";
+    private static final String TYPE_GAME_END = "game-end";
+    private static final String TYPE_COUNTDOWN = "countdown";
+
+    /**
+     * 同一帧内只保留最新一条的事件类型
+     */
+    private static final Set<String> LATEST_ONLY_TYPES = Set.of(TYPE_SCAN_PROGRESS, TYPE_COUNTDOWN);
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final Queue<Map<String, Object>> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+    private long sequence;
+
+    public NotificationService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Notification");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // ==================== 连接管理 ====================
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        sessions.put(session.getId(),
+                new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, BUFFER_SIZE_LIMIT,
+                        ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP));
+        log.info("客户端已连接: {} (当前 {} 个)", session.getId(), sessions.size());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+        log.info("客户端已断开: {} {}", session.getId(), status);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.warn("连接异常: {} - {}", session.getId(), exception.getMessage());
+        closeQuietly(sessions.remove(session.getId()));
+    }
+
+    // ==================== 事件监听 ====================
+
+    @EventListener
+    public void onReplayImported(ReplayImportedEvent event) {
+        Replay replay = event.replay();
+        Map<String, Object> data = newEvent(TYPE_REPLAY_IMPORTED);
+        if (data == null) {
+            return;
+        }
+        data.put("id", replay.getId());
+        data.put("gameId", replay.getGameId());
+        data.put("gameTitle", replay.getGameTitle());
+        data.put("fileName", replay.getFileName());
+        data.put("shotType", replay.getFullShotType());
+        data.put("difficulty", replay.getDifficulty());
+        data.put("stage", replay.getStage());
+        data.put("cleared", replay.isCleared());
+        data.put("totalScore", replay.getTotalScore());
+        data.put("updated", event.updated());
+        pending.add(data);
+    }
+
+    @EventListener
+    public void onScanProgress(ScanProgressEvent event) {
+        Map<String, Object> data = newEvent(TYPE_SCAN_PROGRESS);
+        if (data == null) {
+            return;
+        }
+        data.put("message", event.message());
+        pending.add(data);
+    }
+
+    @EventListener
+    public void onGameStarted(GameStartedEvent event) {
+        Map<String, Object> data = newGameEvent(TYPE_GAME_START, event.game());
+        if (data == null) {
+            return;
+        }
+        data.put("sessionId", event.sessionId());
+        pending.add(data);
+    }
+
+    @EventListener
+    public void onGameEnded(GameEndedEvent event) {
+        Map<String, Object> data = newGameEvent(TYPE_GAME_END, event.game());
+        if (data == null) {
+            return;
+        }
+        data.put("durationSeconds", event.durationSeconds());
+        pending.add(data);
+    }
+
+    @EventListener
+    public void onCountdown(GameCountdownEvent event) {
+        Map<String, Object> data = newGameEvent(TYPE_COUNTDOWN, event.game());
+        if (data == null) {
+            return;
+        }
+        data.put("secondsLeft", event.secondsLeft());
+        pending.add(data);
+    }
+
+    /**
+     * @return 当前连接的客户端数量
+     */
+    public int getClientCount() {
+        return sessions.size();
+    }
+
+    // ==================== 合并发送 ====================
+
+    /**
+     * 没有客户端连接时返回null，事件直接丢弃，避免队列无限增长
+     */
+    private Map<String, Object> newEvent(String type) {
+        if (sessions.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("type", type);
+        return data;
+    }
+
+    private Map<String, Object> newGameEvent(String type, Game game) {
+        Map<String, Object> data = newEvent(type);
+        if (data != null && game != null) {
+            data.put("gameId", game.getId());
+            data.put("gameTitle", game.getDisplayName());
+        }
+        return data;
+    }
+
+    private void flush() {
+        try {
+            List<Map<String, Object>> events = drainAndCoalesce();
+            if (events.isEmpty() || sessions.isEmpty()) {
+                return;
+            }
+
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("seq", ++sequence);
+            frame.put("events", events);
+            TextMessage message = new TextMessage(objectMapper.writeValueAsString(frame));
+
+            for (WebSocketSession session : sessions.values()) {
+                try {
+                    session.sendMessage(message);
+                } catch (Exception e) {
+                    // 发送超时或连接已失效：移除该客户端，不影响其他连接
+                    log.warn("推送失败，断开客户端: {} - {}", session.getId(), e.getMessage());
+                    sessions.remove(session.getId());
+                    closeQuietly(session);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("事件序列化失败: {}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("推送异常: {}", e.getMessage());
+        }
+    }
+
+    private List<Map<String, Object>> drainAndCoalesce() {
+        List<Map<String, Object>> events = new ArrayList<>();
+        Map<String, Integer> latestIndex = new HashMap<>();
+        int imports = 0;
+
+        Map<String, Object> event;
+        while ((event = pending.poll()) != null) {
+            String type = (String) event.get("type");
+            if (LATEST_ONLY_TYPES.contains(type)) {
+                Integer previous = latestIndex.put(type, events.size());
+                if (previous != null) {
+                    events.set(previous, null);
+                }
+            } else if (TYPE_REPLAY_IMPORTED.equals(type)) {
+                imports++;
+            }
+            events.add(event);
+        }
+
+        if (imports > MAX_IMPORTS_PER_FRAME) {
+            events.removeIf(e -> e != null && TYPE_REPLAY_IMPORTED.equals(e.get("type")));
+            Map<String, Object> changed = new LinkedHashMap<>();
+            changed.put("type", TYPE_REPLAYS_CHANGED);
+            changed.put("count", imports);
+            events.add(changed);
+        }
+        events.removeIf(Objects::isNull);
+        return events;
+    }
+
+    private void closeQuietly(WebSocketSession session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException ignored) {
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        for (WebSocketSession session : sessions.values()) {
+            try {
+                session.close(CloseStatus.GOING_AWAY);
+            } catch (IOException ignored) {
+            }
+        }
+        sessions.clear();
+    }
+}
@@ -0,0 +1,3 @@
+-- 只出现在炸弹统计中的关卡以前写入了得分0，按关卡计算的得分增量因此为负；
+-- 累计得分不会为0，这些行的得分改为NULL（没有数据）
+UPDATE replay_stages SET score = NULL WHERE score = 0;
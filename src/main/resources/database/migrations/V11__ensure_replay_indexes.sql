@@ -0,0 +1,5 @@
+-- 从最早的 init.sql 升级的数据库已有 file_modified_time 等列，V2/V3/V6 被直接记为已执行而没有建立索引；
+-- 补建这些索引（会话归属的范围更新依赖 idx_replays_game_modified）
+CREATE INDEX IF NOT EXISTS idx_replays_game_modified ON replays(game_id, file_modified_time);
+CREATE INDEX IF NOT EXISTS idx_replays_analysis_pending ON replays(id) WHERE analysis_status = 'header';
+CREATE INDEX IF NOT EXISTS idx_replays_archive_hash ON replays(archive_hash) WHERE archive_hash IS NOT NULL;
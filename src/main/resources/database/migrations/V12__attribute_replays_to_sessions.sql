@@ -0,0 +1,12 @@
+-- 把历史Replay按文件修改时间归入已结束的游玩会话，只执行一次；此后的Replay在导入时由 SessionAttributionService 归属
+-- 会话时间是本地时间文本，换算为毫秒时间戳（'utc' 按系统时区换算，与应用相同）后，
+-- 逐个会话按 (game_id, file_modified_time) 索引做范围更新
+UPDATE replays SET session_id = s.id
+FROM (SELECT id, game_id,
+             CAST((julianday(start_time, 'utc') - 2440587.5) * 86400000 AS INTEGER) AS from_millis,
+             CAST((julianday(end_time, 'utc') - 2440587.5) * 86400000 AS INTEGER) AS to_millis
+      FROM play_sessions
+      WHERE end_time IS NOT NULL) AS s
+WHERE replays.session_id IS NULL
+  AND replays.game_id = s.game_id
+  AND replays.file_modified_time BETWEEN s.from_millis AND s.to_millis;
@@ -0,0 +1,6 @@
+-- 难度按不区分大小写比较（difficulty = ? COLLATE NOCASE）；BINARY 索引只能按 game_id 定位，
+-- 取最高分还要额外排序。按 NOCASE 重建难度相关的索引
+DROP INDEX IF EXISTS idx_replays_game_difficulty;
+DROP INDEX IF EXISTS idx_replays_score;
+CREATE INDEX IF NOT EXISTS idx_replays_game_difficulty ON replays(game_id, difficulty COLLATE NOCASE);
+CREATE INDEX IF NOT EXISTS idx_replays_score ON replays(game_id, difficulty COLLATE NOCASE, total_score DESC);
@@ -0,0 +1,29 @@
+-- UPDATE OF 只看列是否出现在 SET 中：GameMapper.updateGame 与 ReplayMapper.updateReplay 总是写全部列，
+-- 每次游戏结束都会重写该游戏全部Replay的全文索引行。只在值确实变化时才重建
+DROP TRIGGER IF EXISTS replays_fts_update;
+DROP TRIGGER IF EXISTS replays_fts_game_title;
+
+CREATE TRIGGER IF NOT EXISTS replays_fts_update
+    AFTER UPDATE OF game_id, file_name, character, shot_type, player_name ON replays
+    WHEN old.game_id IS NOT new.game_id OR old.file_name IS NOT new.file_name
+        OR old.character IS NOT new.character OR old.shot_type IS NOT new.shot_type
+        OR old.player_name IS NOT new.player_name
+BEGIN
+    DELETE FROM replays_fts WHERE rowid = old.id;
+    INSERT INTO replays_fts (rowid, player_name, character, shot_type, file_name, game_title)
+    SELECT new.id, new.player_name, new.character, new.shot_type, new.file_name,
+           COALESCE(g.title_zh, '') || ' ' || COALESCE(g.title_ja, '') || ' ' || COALESCE(g.title_en, '') ||
+           ' th' || printf('%02d', g.game_number)
+    FROM games g WHERE g.id = new.game_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS replays_fts_game_title
+    AFTER UPDATE OF title_zh, title_ja, title_en, game_number ON games
+    WHEN old.title_zh IS NOT new.title_zh OR old.title_ja IS NOT new.title_ja
+        OR old.title_en IS NOT new.title_en OR old.game_number IS NOT new.game_number
+BEGIN
+    UPDATE replays_fts
+    SET game_title = COALESCE(new.title_zh, '') || ' ' || COALESCE(new.title_ja, '') || ' ' ||
+                     COALESCE(new.title_en, '') || ' th' || printf('%02d', new.game_number)
+    WHERE rowid IN (SELECT id FROM replays WHERE game_id = new.id);
+END;
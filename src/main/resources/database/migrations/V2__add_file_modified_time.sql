@@ -0,0 +1,3 @@
+-- 记录Replay文件修改时间（毫秒），用于检测覆盖与会话归属
+ALTER TABLE replays ADD COLUMN file_modified_time INTEGER;
+CREATE INDEX IF NOT EXISTS idx_replays_game_modified ON replays(game_id, file_modified_time);
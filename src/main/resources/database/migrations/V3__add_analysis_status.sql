@@ -0,0 +1,3 @@
+-- 两阶段解析：记录每条Replay已完成的解析阶段（旧数据均已完整解析）
+ALTER TABLE replays ADD COLUMN analysis_status TEXT DEFAULT 'full';
+CREATE INDEX IF NOT EXISTS idx_replays_analysis_pending ON replays(id) WHERE analysis_status = 'header';
@@ -0,0 +1,2 @@
+-- 原始解析JSON改为压缩存储，旧数据由 ReplayStorageMigrations 压缩后清空 raw_json
+ALTER TABLE replays ADD COLUMN raw_json_compressed BLOB;
@@ -0,0 +1,3 @@
+-- 各关卡得分与炸弹统计改为定长二进制编码，旧JSON由 ReplayStorageMigrations 转换后清空
+ALTER TABLE replays ADD COLUMN stage_scores_bin BLOB;
+ALTER TABLE replays ADD COLUMN bomb_stats_bin BLOB;
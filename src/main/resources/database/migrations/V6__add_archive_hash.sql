@@ -0,0 +1,3 @@
+-- 记录Replay归档副本的内容哈希，同名槽位被游戏覆盖后旧记录仍可回放
+ALTER TABLE replays ADD COLUMN archive_hash TEXT;
+CREATE INDEX IF NOT EXISTS idx_replays_archive_hash ON replays(archive_hash) WHERE archive_hash IS NOT NULL;
@@ -0,0 +1,42 @@
+-- Replay全文索引：rowid 与 replays.id 相同，游戏标题列为中文、日文、英文缩写与 thXX 编号
+-- trigram 分词，中文标题与文件名都可按子串匹配；索引由下面的触发器维护
+CREATE VIRTUAL TABLE IF NOT EXISTS replays_fts USING fts5(
+    player_name, character, shot_type, file_name, game_title, tokenize = 'trigram'
+);
+
+DELETE FROM replays_fts;
+INSERT INTO replays_fts (rowid, player_name, character, shot_type, file_name, game_title)
+SELECT r.id, r.player_name, r.character, r.shot_type, r.file_name,
+       COALESCE(g.title_zh, '') || ' ' || COALESCE(g.title_ja, '') || ' ' || COALESCE(g.title_en, '') ||
+       ' th' || printf('%02d', g.game_number)
+FROM replays r JOIN games g ON r.game_id = g.id;
+
+CREATE TRIGGER IF NOT EXISTS replays_fts_insert AFTER INSERT ON replays BEGIN
+    INSERT INTO replays_fts (rowid, player_name, character, shot_type, file_name, game_title)
+    SELECT new.id, new.player_name, new.character, new.shot_type, new.file_name,
+           COALESCE(g.title_zh, '') || ' ' || COALESCE(g.title_ja, '') || ' ' || COALESCE(g.title_en, '') ||
+           ' th' || printf('%02d', g.game_number)
+    FROM games g WHERE g.id = new.game_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS replays_fts_update
+    AFTER UPDATE OF game_id, file_name, character, shot_type, player_name ON replays BEGIN
+    DELETE FROM replays_fts WHERE rowid = old.id;
+    INSERT INTO replays_fts (rowid, player_name, character, shot_type, file_name, game_title)
+    SELECT new.id, new.player_name, new.character, new.shot_type, new.file_name,
+           COALESCE(g.title_zh, '') || ' ' || COALESCE(g.title_ja, '') || ' ' || COALESCE(g.title_en, '') ||
+           ' th' || printf('%02d', g.game_number)
+    FROM games g WHERE g.id = new.game_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS replays_fts_delete AFTER DELETE ON replays BEGIN
+    DELETE FROM replays_fts WHERE rowid = old.id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS replays_fts_game_title
+    AFTER UPDATE OF title_zh, title_ja, title_en, game_number ON games BEGIN
+    UPDATE replays_fts
+    SET game_title = COALESCE(new.title_zh, '') || ' ' || COALESCE(new.title_ja, '') || ' ' ||
+                     COALESCE(new.title_en, '') || ' th' || printf('%02d', new.game_number)
+    WHERE rowid IN (SELECT id FROM replays WHERE game_id = new.id);
+END;
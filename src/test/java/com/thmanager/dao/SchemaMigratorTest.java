@@ -0,0 +1,185 @@
+package com.thmanager.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigratorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void migratesFreshDatabase() throws Exception {
+        try (Connection conn = open("fresh.db")) {
+            SchemaMigrator.migrate(conn);
+
+            assertTrue(hasIndex(conn, "idx_replays_game_modified"));
+            assertTrue(hasTable(conn, "replay_stages"));
+            assertTrue(hasTable(conn, "replays_fts"));
+            assertEquals(versions(conn).size(), queryInt(conn, "SELECT MAX(version) FROM schema_version"));
+        }
+    }
+
+    @Test
+    void upgradesBaselineDatabase() throws Exception {
+        int latest;
+        try (Connection conn = open("fresh.db")) {
+            SchemaMigrator.migrate(conn);
+            latest = queryInt(conn, "SELECT MAX(version) FROM schema_version");
+        }
+
+        try (Connection conn = open("baseline.db")) {
+            try (Statement s = conn.createStatement()) {
+                for (String sql : SqlScript.split(resource("database/baseline-init.sql"))) {
+                    s.execute(sql);
+                }
+                s.execute("INSERT INTO replays (game_id, file_name, file_path, file_modified_time, difficulty, " +
+                        "total_score, stage_scores_json, bomb_stats_json, raw_json) VALUES (1, 'th6_01.rpy', " +
+                        "'/r/th6_01.rpy', 1700000000000, 'Lunatic', 300, '[100, 300]', " +
+                        "'[{\"stage\": 1, \"z_count\": 1, \"x_count\": 2, \"start_frame\": 0, \"end_frame\": 90}, " +
+                        "{\"stage\": 2, \"z_count\": 0, \"x_count\": 1, \"start_frame\": 100, \"end_frame\": 190}]', " +
+                        "'{\"player\": \"P\"}')");
+            }
+            assertFalse(hasIndex(conn, "idx_replays_game_modified"));
+
+            SchemaMigrator.migrate(conn);
+
+            assertEquals(latest, queryInt(conn, "SELECT MAX(version) FROM schema_version"));
+            assertEquals(latest, versions(conn).size());
+            // 列已存在而被直接记为已执行的迁移仍要建立索引
+            assertTrue(hasIndex(conn, "idx_replays_game_modified"));
+            assertTrue(hasIndex(conn, "idx_replays_analysis_pending"));
+
+            try (Statement s = conn.createStatement();
+                 ResultSet rs = s.executeQuery("SELECT raw_json, raw_json_compressed, stage_scores_json, " +
+                         "stage_scores_bin, analysis_status FROM replays")) {
+                assertTrue(rs.next());
+                assertNull(rs.getString(1));
+                assertNotNull(rs.getBytes(2));
+                assertNull(rs.getString(3));
+                assertNotNull(rs.getBytes(4));
+                assertEquals("full", rs.getString(5));
+            }
+            assertEquals(2, queryInt(conn, "SELECT COUNT(*) FROM replay_stages"));
+            assertEquals(300, queryInt(conn, "SELECT score FROM replay_stages WHERE stage_num = 2"));
+            assertEquals(1, queryInt(conn, "SELECT COUNT(*) FROM replays_fts WHERE replays_fts MATCH '\"th6_01\"'"));
+        }
+    }
+
+    @Test
+    void secondRunIsNoOp() throws Exception {
+        try (Connection conn = open("twice.db")) {
+            SchemaMigrator.migrate(conn);
+            List<Integer> first = versions(conn);
+
+            SchemaMigrator.migrate(conn);
+
+            assertEquals(first, versions(conn));
+        }
+    }
+
+    @Test
+    void difficultyLookupsUseIndexes() throws Exception {
+        try (Connection conn = open("plan.db")) {
+            SchemaMigrator.migrate(conn);
+
+            // 与 ReplayMapper.findBestByDifficultyWithGameTitle 相同的条件：按难度定位并直接按索引顺序取最高分
+            String best = plan(conn, "SELECT r.id FROM replays r JOIN games g ON r.game_id = g.id " +
+                    "WHERE r.game_id = 1 AND r.difficulty = 'lunatic' COLLATE NOCASE " +
+                    "ORDER BY r.total_score DESC LIMIT 1");
+            assertTrue(best.contains("idx_replays_score (game_id=? AND difficulty=?)"), best);
+            assertFalse(best.contains("TEMP B-TREE"), best);
+
+            // 与 ReplayStageMapper.averageStageScoreGain 相同的条件
+            String stages = plan(conn, "SELECT AVG(s.score) FROM replays r " +
+                    "JOIN replay_stages s ON s.replay_id = r.id AND s.stage_num = 2 " +
+                    "WHERE r.game_id = 1 AND r.difficulty = 'Lunatic' COLLATE NOCASE");
+            assertTrue(stages.contains("(game_id=? AND difficulty=?)"), stages);
+        }
+    }
+
+    @Test
+    void searchIndexTriggersSkipUnchangedValues() throws Exception {
+        try (Connection conn = open("fts.db")) {
+            SchemaMigrator.migrate(conn);
+            try (Statement s = conn.createStatement()) {
+                s.execute("INSERT INTO replays (game_id, file_name, file_path, difficulty, total_score) " +
+                        "VALUES (1, 'th6_01.rpy', '/r/th6_01.rpy', 'Normal', 100)");
+                s.execute("INSERT INTO replays (game_id, file_name, file_path, difficulty, total_score) " +
+                        "VALUES (1, 'th6_02.rpy', '/r/th6_02.rpy', 'Normal', 200)");
+
+                // 与 GameMapper.updateGame 一样写入全部标题列但值不变：只改动 games 这一行
+                int before = queryInt(conn, "SELECT total_changes()");
+                s.execute("UPDATE games SET title_zh = title_zh, title_ja = title_ja, title_en = title_en, " +
+                        "game_number = game_number WHERE id = 1");
+                assertEquals(1, queryInt(conn, "SELECT total_changes()") - before);
+
+                before = queryInt(conn, "SELECT total_changes()");
+                s.execute("UPDATE replays SET file_name = file_name, player_name = player_name WHERE game_id = 1");
+                assertEquals(2, queryInt(conn, "SELECT total_changes()") - before);
+
+                s.execute("UPDATE games SET title_en = 'EoSDX' WHERE id = 1");
+                assertEquals(2, queryInt(conn, "SELECT COUNT(*) FROM replays_fts WHERE replays_fts MATCH 'EoSDX'"));
+                s.execute("UPDATE replays SET file_name = 'renamed.rpy' WHERE file_name = 'th6_01.rpy'");
+                assertEquals(1, queryInt(conn, "SELECT COUNT(*) FROM replays_fts WHERE replays_fts MATCH 'renamed'"));
+            }
+        }
+    }
+
+    private Connection open(String name) throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + dir.resolve(name));
+    }
+
+    private static String resource(String path) throws Exception {
+        try (InputStream in = SchemaMigratorTest.class.getClassLoader().getResourceAsStream(path)) {
+            assertNotNull(in, path);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<Integer> versions(Connection conn) throws SQLException {
+        List<Integer> versions = new ArrayList<>();
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery("SELECT version FROM schema_version ORDER BY version")) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    private static String plan(Connection conn, String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                plan.append(rs.getString("detail")).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private static boolean hasIndex(Connection conn, String name) throws SQLException {
+        return queryInt(conn, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = '" + name + "'") == 1;
+    }
+
+    private static boolean hasTable(Connection conn, String name) throws SQLException {
+        return queryInt(conn, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = '" + name + "'") == 1;
+    }
+
+    private static int queryInt(Connection conn, String sql) throws SQLException {
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.thmanager.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlScriptTest {
+
+    @Test
+    void splitsOnSemicolonsAndDropsEmptyStatements() {
+        List<String> statements = SqlScript.split("CREATE TABLE a (x INTEGER);;\n  INSERT INTO a VALUES (1) ;\n");
+
+        assertEquals(List.of("CREATE TABLE a (x INTEGER)", "INSERT INTO a VALUES (1)"), statements);
+    }
+
+    @Test
+    void keepsLastStatementWithoutSemicolon() {
+        assertEquals(List.of("SELECT 1", "SELECT 2"), SqlScript.split("SELECT 1; SELECT 2"));
+    }
+
+    @Test
+    void ignoresSemicolonsInQuotes() {
+        String script = "INSERT INTO games (description) VALUES ('弾幕; シューティング');\n"
+                + "INSERT INTO games (description) VALUES ('it''s; fine');\n"
+                + "SELECT \"a;b\", `c;d`, [e;f] FROM t;";
+
+        List<String> statements = SqlScript.split(script);
+
+        assertEquals(3, statements.size());
+        assertEquals("INSERT INTO games (description) VALUES ('弾幕; シューティング')", statements.get(0));
+        assertEquals("INSERT INTO games (description) VALUES ('it''s; fine')", statements.get(1));
+        assertEquals("SELECT \"a;b\", `c;d`, [e;f] FROM t", statements.get(2));
+    }
+
+    @Test
+    void removesComments() {
+        String script = "-- 注释; 不是语句\nSELECT 1; /* 块注释; */ SELECT 2 -- 行尾; 注释\n;";
+
+        assertEquals(List.of("SELECT 1", "SELECT 2"), SqlScript.split(script));
+    }
+
+    @Test
+    void keepsTriggerBodyTogether() {
+        String script = "CREATE TRIGGER IF NOT EXISTS t_ai AFTER INSERT ON replays BEGIN\n"
+                + "  INSERT INTO log (kind) VALUES (CASE WHEN new.cleared THEN 'clear' ELSE 'miss' END);\n"
+                + "  DELETE FROM log WHERE id < new.id - 100;\n"
+                + "END;\n"
+                + "CREATE TEMP TRIGGER t_ad AFTER DELETE ON replays BEGIN DELETE FROM log; END;\n"
+                + "SELECT 1;";
+
+        List<String> statements = SqlScript.split(script);
+
+        assertEquals(3, statements.size());
+        assertTrue(statements.get(0).startsWith("CREATE TRIGGER"));
+        assertTrue(statements.get(0).endsWith("END"));
+        assertTrue(statements.get(0).contains("DELETE FROM log WHERE id < new.id - 100;"));
+        assertEquals("CREATE TEMP TRIGGER t_ad AFTER DELETE ON replays BEGIN DELETE FROM log; END", statements.get(1));
+        assertEquals("SELECT 1", statements.get(2));
+    }
+
+    @Test
+    void keywordsInsideIdentifiersDoNotCount() {
+        String script = "CREATE TABLE trigger_log (begin_frame INTEGER, end_frame INTEGER); SELECT 'BEGIN'; SELECT 2;";
+
+        assertEquals(3, SqlScript.split(script).size());
+    }
+}
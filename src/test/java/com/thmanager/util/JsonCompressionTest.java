@@ -0,0 +1,55 @@
+package com.thmanager.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonCompressionTest {
+
+    private static final String JSON = "{\"player\":\"霊夢\",\"date\":\"2024/05/06 07:08\",\"slowRate\":0.5,"
+            + "\"cleared\":true,\"frameCount\":100000,\"baseInfoDic\":{\"character\":\"Reimu\",\"shottype\":\"A\","
+            + "\"rank\":\"Lunatic\",\"stage\":\"All Clear\"},\"stageScore\":[1000,2000,3000,4000,5000,6000]}";
+
+    @Test
+    void roundTrip() {
+        byte[] compressed = JsonCompression.compress(JSON);
+
+        assertTrue(compressed.length < JSON.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(JSON, JsonCompression.decompress(compressed));
+    }
+
+    @Test
+    void roundTripLargerThanBuffer() {
+        String json = "[" + "\"Stage 6\",".repeat(5000) + "0]";
+
+        assertEquals(json, JsonCompression.decompress(JsonCompression.compress(json)));
+    }
+
+    @Test
+    void truncatedInputReturnsNull() {
+        byte[] compressed = JsonCompression.compress(JSON);
+
+        for (int length = 1; length < compressed.length; length++) {
+            assertNull(JsonCompression.decompress(Arrays.copyOf(compressed, length)), "length " + length);
+        }
+    }
+
+    @Test
+    void corruptInputReturnsNull() {
+        byte[] compressed = JsonCompression.compress(JSON);
+        compressed[compressed.length / 2] ^= (byte) 0xFF;
+
+        assertNull(JsonCompression.decompress(compressed));
+    }
+
+    @Test
+    void unknownFormatOrNullReturnsNull() {
+        assertNull(JsonCompression.compress(null));
+        assertNull(JsonCompression.decompress(null));
+        assertNull(JsonCompression.decompress(new byte[0]));
+        assertNull(JsonCompression.decompress(new byte[]{99, 1, 2}));
+    }
+}
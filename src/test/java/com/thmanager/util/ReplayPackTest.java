@@ -0,0 +1,241 @@
+package com.thmanager.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayPackTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeReadExtractRoundTrip() throws IOException {
+        Path pack = dir.resolve("a.thpack");
+        Path small = file("th6_01.rpy", "replay one".getBytes(StandardCharsets.UTF_8));
+        // 大于读写缓冲区，跨多次读取
+        Path large = file("th7_01.rpy", random(200_000, 1));
+        Path empty = file("empty.rpy", new byte[0]);
+
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            writer.add(small, "replay");
+            writer.add(large, "replay");
+            writer.add(empty, "数据库 database");
+            writer.commit();
+        }
+
+        try (ReplayPack.Reader reader = ReplayPack.open(pack)) {
+            assertEquals(3, reader.entries().size());
+            assertEquals("数据库 database", reader.entries().get(2).metadata());
+            Path[] sources = {small, large, empty};
+            for (int i = 0; i < sources.length; i++) {
+                Path target = dir.resolve("out" + i);
+                reader.extract(reader.entries().get(i), target);
+                assertArrayEquals(Files.readAllBytes(sources[i]), Files.readAllBytes(target));
+            }
+        }
+    }
+
+    @Test
+    void appendKeepsOldEntriesAndDeduplicates() throws IOException {
+        Path pack = dir.resolve("a.thpack");
+        Path first = file("1.rpy", random(5000, 2));
+        Path second = file("2.rpy", random(5000, 3));
+        Path copy = file("copy.rpy", Files.readAllBytes(first));
+
+        ReplayPack.Entry original;
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            original = writer.add(first, "replay");
+            writer.commit();
+        }
+        long size = Files.size(pack);
+
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            assertTrue(writer.contains(original.hash()));
+            assertEquals(original, writer.add(copy, "replay"));
+            writer.commit();
+        }
+        assertEquals(size, Files.size(pack));
+
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            writer.add(second, "replay");
+            writer.add(copy, "copy");
+            writer.commit();
+        }
+
+        try (ReplayPack.Reader reader = ReplayPack.open(pack)) {
+            // 重复内容不再写入，已有条目移到最后并换上新元数据
+            assertEquals(2, reader.entries().size());
+            assertEquals(new ReplayPack.Entry(original.hash(), original.offset(), original.length(), "copy"),
+                    reader.entries().get(1));
+            reader.extract(reader.entries().get(0), dir.resolve("out"));
+            assertArrayEquals(Files.readAllBytes(second), Files.readAllBytes(dir.resolve("out")));
+            reader.extract(reader.entries().get(1), dir.resolve("out"));
+            assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(dir.resolve("out")));
+        }
+    }
+
+    @Test
+    void corruptedEntryIsNotExtracted() throws IOException {
+        Path pack = dir.resolve("a.thpack");
+        ReplayPack.Entry entry;
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            entry = writer.add(file("1.rpy", random(1000, 4)), "replay");
+            writer.commit();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(pack.toFile(), "rw")) {
+            raf.seek(entry.offset() + 10);
+            int b = raf.read();
+            raf.seek(entry.offset() + 10);
+            raf.write(b ^ 0xFF);
+        }
+
+        Path target = dir.resolve("out");
+        try (ReplayPack.Reader reader = ReplayPack.open(pack)) {
+            assertThrows(IOException.class, () -> reader.extract(reader.entries().get(0), target));
+        }
+        assertFalse(Files.exists(target));
+        try (var files = Files.list(dir)) {
+            assertTrue(files.noneMatch(path -> path.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void uncommittedWriteRollsBack() throws IOException {
+        Path pack = dir.resolve("a.thpack");
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            writer.add(file("1.rpy", random(3000, 5)), "replay");
+            writer.commit();
+        }
+        byte[] committed = Files.readAllBytes(pack);
+
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            writer.add(file("2.rpy", random(100_000, 6)), "replay");
+        }
+        assertArrayEquals(committed, Files.readAllBytes(pack));
+
+        Path created = dir.resolve("new.thpack");
+        try (ReplayPack.Writer writer = ReplayPack.append(created)) {
+            writer.add(file("3.rpy", random(100, 7)), "replay");
+        }
+        assertFalse(Files.exists(created));
+    }
+
+    @Test
+    void interruptedAppendKeepsCommittedEntries() throws IOException {
+        Path pack = dir.resolve("a.thpack");
+        Path first = file("1.rpy", random(3000, 13));
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            writer.add(first, "replay");
+            writer.commit();
+        }
+        byte[] committed = Files.readAllBytes(pack);
+        long committedSize = committed.length;
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            writer.add(file("2.rpy", random(100_000, 14)), "replay");
+            writer.commit();
+        }
+        byte[] full = Files.readAllBytes(pack);
+        // 新的提交追加在后面，上一次的索引与尾部原样保留
+        assertArrayEquals(committed, Arrays.copyOf(full, committed.length));
+
+        // 在写入新数据、索引、尾部的各个阶段截断，模拟进程被结束
+        for (long length : new long[]{committedSize + 1, committedSize + 70_000, full.length - 100,
+                full.length - 30, full.length - 1}) {
+            Path truncated = dir.resolve("t.thpack");
+            Files.write(truncated, Arrays.copyOf(full, (int) length));
+
+            try (ReplayPack.Reader reader = ReplayPack.open(truncated)) {
+                assertEquals(1, reader.entries().size(), "length " + length);
+                reader.extract(reader.entries().get(0), dir.resolve("out"));
+                assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(dir.resolve("out")));
+            }
+
+            // 继续追加时覆盖残留数据
+            try (ReplayPack.Writer writer = ReplayPack.append(truncated)) {
+                writer.add(file("3.rpy", random(500, 15)), "replay");
+                writer.commit();
+            }
+            try (ReplayPack.Reader reader = ReplayPack.open(truncated)) {
+                assertEquals(2, reader.entries().size());
+            }
+            // 索引条目：哈希32 + 偏移8 + 长度8 + 元数据长度2 + 元数据6
+            assertEquals(committedSize + 500 + 2 * 56 + 24, Files.size(truncated));
+        }
+    }
+
+    @Test
+    void compactDropsEntriesAndKeepsOthersReadable() throws IOException {
+        Path pack = dir.resolve("a.thpack");
+        Path replay = file("1.rpy", random(4000, 10));
+        Path oldDatabase = file("old.db", random(50_000, 11));
+        Path newDatabase = file("new.db", random(20_000, 12));
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            writer.add(oldDatabase, "database 1");
+            writer.add(replay, "replay");
+            writer.add(newDatabase, "database 2");
+            writer.commit();
+        }
+        long size = Files.size(pack);
+
+        long freed = ReplayPack.compact(pack, entry -> !entry.metadata().equals("database 1"));
+
+        // 内容加上索引条目：哈希32 + 偏移8 + 长度8 + 元数据长度2 + 元数据10
+        assertEquals(50_000 + 60, freed);
+        assertEquals(size - freed, Files.size(pack));
+        try (ReplayPack.Reader reader = ReplayPack.open(pack)) {
+            assertEquals(2, reader.entries().size());
+            reader.extract(reader.entries().get(0), dir.resolve("out1"));
+            reader.extract(reader.entries().get(1), dir.resolve("out2"));
+        }
+        assertArrayEquals(Files.readAllBytes(replay), Files.readAllBytes(dir.resolve("out1")));
+        assertArrayEquals(Files.readAllBytes(newDatabase), Files.readAllBytes(dir.resolve("out2")));
+
+        // 压缩后仍可继续追加，已有内容照常去重
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            assertTrue(writer.contains(writer.entries().get(0).hash()));
+            writer.add(oldDatabase, "database 3");
+            writer.commit();
+        }
+        try (ReplayPack.Reader reader = ReplayPack.open(pack)) {
+            assertEquals(3, reader.entries().size());
+        }
+    }
+
+    @Test
+    void rejectsCorruptedIndex() throws IOException {
+        Path notPack = file("x.thpack", random(100, 8));
+        assertThrows(IOException.class, () -> ReplayPack.open(notPack));
+
+        Path pack = dir.resolve("a.thpack");
+        try (ReplayPack.Writer writer = ReplayPack.append(pack)) {
+            writer.add(file("1.rpy", random(100, 9)), "replay");
+            writer.commit();
+        }
+        byte[] bytes = Files.readAllBytes(pack);
+        // 索引中的第一个字节（哈希）
+        bytes[8 + 100] ^= (byte) 0xFF;
+        Files.write(pack, bytes);
+
+        assertThrows(IOException.class, () -> ReplayPack.open(pack));
+    }
+
+    private Path file(String name, byte[] content) throws IOException {
+        return Files.write(dir.resolve(name), content);
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,132 @@
+package com.thmanager.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreDigestTest {
+
+    private static final int N = 100_000;
+
+    @Test
+    void emptyDigest() {
+        ScoreDigest digest = new ScoreDigest();
+
+        assertEquals(0, digest.size());
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+        assertTrue(Double.isNaN(digest.cdf(1)));
+        assertTrue(Double.isNaN(digest.min()));
+    }
+
+    @Test
+    void quantilesOfUniformScores() {
+        ScoreDigest digest = new ScoreDigest();
+        for (int i = 1; i <= N; i++) {
+            digest.add(i);
+        }
+
+        assertEquals(N, digest.size());
+        assertEquals(1, digest.min());
+        assertEquals(N, digest.max());
+        assertEquals(1, digest.quantile(0));
+        assertEquals(N, digest.quantile(1));
+        for (double q : new double[]{0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99}) {
+            assertEquals(q * N, digest.quantile(q), N * 0.005, "q=" + q);
+            assertEquals(q, digest.cdf(q * N), 0.005, "cdf at q=" + q);
+        }
+        assertEquals(0, digest.cdf(0));
+        assertEquals(1, digest.cdf(N + 1));
+    }
+
+    @Test
+    void tailsOfSkewedScoresAreAccurate() {
+        Random random = new Random(42);
+        double[] scores = new double[N];
+        ScoreDigest digest = new ScoreDigest();
+        for (int i = 0; i < N; i++) {
+            // 对数正态分布，接近真实的分数分布（少数极高分）
+            scores[i] = Math.exp(16 + random.nextGaussian());
+            digest.add(scores[i]);
+        }
+        Arrays.sort(scores);
+
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            double exact = scores[(int) (q * N)];
+            assertEquals(exact, digest.quantile(q), exact * 0.02, "q=" + q);
+        }
+    }
+
+    @Test
+    void mergeMatchesSingleDigest() {
+        Random random = new Random(7);
+        ScoreDigest all = new ScoreDigest();
+        ScoreDigest merged = new ScoreDigest();
+        for (int part = 0; part < 10; part++) {
+            ScoreDigest digest = new ScoreDigest();
+            for (int i = 0; i < N / 10; i++) {
+                double score = random.nextInt(1_000_000_000);
+                digest.add(score);
+                all.add(score);
+            }
+            merged.merge(digest);
+        }
+
+        assertEquals(all.size(), merged.size());
+        assertEquals(all.min(), merged.min());
+        assertEquals(all.max(), merged.max());
+        for (double q : new double[]{0.1, 0.5, 0.9, 0.99}) {
+            assertEquals(all.quantile(q), merged.quantile(q), 1_000_000_000 * 0.005, "q=" + q);
+        }
+    }
+
+    @Test
+    void mergeWithEmptyDigest() {
+        ScoreDigest digest = new ScoreDigest();
+        digest.add(100);
+        digest.add(200);
+
+        digest.merge(new ScoreDigest());
+        ScoreDigest empty = new ScoreDigest();
+        empty.merge(digest);
+
+        assertEquals(2, digest.size());
+        assertEquals(2, empty.size());
+        assertEquals(100, empty.min());
+        assertEquals(200, empty.max());
+    }
+
+    @Test
+    void encodingRoundTrip() {
+        ScoreDigest digest = new ScoreDigest();
+        for (int i = 0; i < N; i++) {
+            digest.add(i * 37L % 1_000_003);
+        }
+
+        byte[] bytes = digest.toBytes();
+        ScoreDigest decoded = ScoreDigest.fromBytes(bytes);
+
+        assertTrue(bytes.length < 4096, "encoded size " + bytes.length);
+        assertEquals(digest.size(), decoded.size());
+        assertEquals(digest.min(), decoded.min());
+        assertEquals(digest.max(), decoded.max());
+        for (double q : new double[]{0.01, 0.5, 0.99}) {
+            assertEquals(digest.quantile(q), decoded.quantile(q));
+        }
+        assertArrayEquals(bytes, decoded.toBytes());
+    }
+
+    @Test
+    void rejectsTruncatedOrUnknownEncoding() {
+        ScoreDigest digest = new ScoreDigest();
+        digest.add(1);
+        digest.add(2);
+        byte[] bytes = digest.toBytes();
+
+        assertThrows(IllegalArgumentException.class, () -> ScoreDigest.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> ScoreDigest.fromBytes(new byte[]{99}));
+        assertThrows(IllegalArgumentException.class, () -> ScoreDigest.fromBytes(null));
+    }
+}
@@ -0,0 +1,109 @@
+// 本地后端事件推送（/ws/events）
+// 后端每 100ms 合并发送一帧：{ seq, events: [{ type, ... }] }
+// 订阅者按事件类型注册，每帧对同一类型只回调一次（参数为该帧内此类型的全部事件）
+
+const listeners = new Map()
+let socket = null
+let retryDelay = 1000
+let reconnectTimer = null
+
+const MAX_RETRY_DELAY = 30000
+
+const eventsUrl = () => {
+  const protocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:'
+  return `${protocol}//${window.location.host}/ws/events`
+}
+
+const emit = (type, events) => {
+  const handlers = listeners.get(type)
+  if (!handlers) return
+  handlers.forEach(handler => {
+    try {
+      handler(events)
+    } catch (error) {
+      console.error(`Event handler for ${type} failed:`, error)
+    }
+  })
+}
+
+const connect = () => {
+  if (socket) return
+  socket = new WebSocket(eventsUrl())
+
+  socket.onopen = () => {
+    retryDelay = 1000
+    // 连接（或重连）后通知订阅者重新同步一次状态，弥补断线期间错过的事件
+    emit('open', [])
+  }
+
+  socket.onmessage = (message) => {
+    let frame
+    try {
+      frame = JSON.parse(message.data)
+    } catch (error) {
+      console.error('Invalid event frame:', error)
+      return
+    }
+    const byType = new Map()
+    for (const event of frame.events || []) {
+      if (!byType.has(event.type)) byType.set(event.type, [])
+      byType.get(event.type).push(event)
+    }
+    byType.forEach((events, type) => emit(type, events))
+  }
+
+  socket.onclose = () => {
+    socket = null
+    if (listeners.size === 0) return
+    reconnectTimer = setTimeout(connect, retryDelay)
+    retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY)
+  }
+
+  socket.onerror = () => {
+    socket?.close()
+  }
+}
+
+/**
+ * 订阅事件，首次订阅时建立连接
+ * @param {string} type 事件类型（replay-imported、replays-changed、scan-progress、game-start、game-end、countdown、open）
+ * @param {(events: object[]) => void} handler 回调
+ * @returns {() => void} 取消订阅
+ */
+export const subscribe = (type, handler) => {
+  if (!listeners.has(type)) listeners.set(type, new Set())
+  listeners.get(type).add(handler)
+  connect()
+
+  return () => {
+    const handlers = listeners.get(type)
+    if (!handlers) return
+    handlers.delete(handler)
+    if (handlers.size === 0) listeners.delete(type)
+    if (listeners.size === 0) {
+      clearTimeout(reconnectTimer)
+      socket?.close()
+    }
+  }
+}
+
+/**
+ * 订阅多个事件类型，连续到达的事件合并为一次回调（在最后一帧之后 delay 毫秒触发）
+ * 适合“有新Replay就重新拉取列表”这类刷新，批量导入时不会每帧都请求一次
+ * @param {string[]} types 事件类型
+ * @param {() => void} handler 回调
+ * @param {number} delay 合并窗口（毫秒）
+ * @returns {() => void} 取消订阅
+ */
+export const subscribeDebounced = (types, handler, delay = 1000) => {
+  let timer = null
+  const schedule = () => {
+    clearTimeout(timer)
+    timer = setTimeout(handler, delay)
+  }
+  const unsubscribers = types.map(type => subscribe(type, schedule))
+  return () => {
+    clearTimeout(timer)
+    unsubscribers.forEach(unsubscribe => unsubscribe())
+  }
+}
@@ -15,3 +15,11 @@ export const getPlayTimeStats = () => {
 export const getScoreStats = () => {
   return localRequest.get('/api/statistics/scores')
 }
+
+export const getPlayTimeRollups = (params) => {
+  return localRequest.get('/api/statistics/playtime/rollups', { params })
+}
+
+export const getScoreDistribution = (gameId, difficulty, params) => {
+  return localRequest.get(`/api/statistics/distribution/${gameId}/${difficulty}`, { params })
+}
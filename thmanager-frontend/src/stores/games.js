@@ -1,6 +1,7 @@
 import { defineStore } from 'pinia'
 import { ref, computed } from 'vue'
 import * as gamesApi from '../api/games'
+import { subscribe } from '../api/events'
 
 export const useGamesStore = defineStore('games', () => {
   // State
@@ -9,6 +10,8 @@ export const useGamesStore = defineStore('games', () => {
   const isRunning = ref(false)
   const countdown = ref(0)
   const loading = ref(false)
+  const statusMessage = ref('系统就绪')
+  let unsubscribers = []
 
   // Getters
   const installedGames = computed(() => 
@@ -67,6 +70,37 @@ export const useGamesStore = defineStore('games', () => {
     }
   }
 
+  // 订阅后端推送的游戏状态，替代轮询 /api/games/status
+  const listenEvents = () => {
+    if (unsubscribers.length) return
+    unsubscribers = [
+      subscribe('open', () => checkStatus()),
+      subscribe('game-start', (events) => {
+        const event = events[events.length - 1]
+        isRunning.value = true
+        currentGame.value = games.value.find(g => g.id === event.gameId) || null
+        countdown.value = 0
+      }),
+      subscribe('game-end', () => {
+        isRunning.value = false
+        currentGame.value = null
+        // 游玩时长和最后游玩时间已更新
+        fetchGames()
+      }),
+      subscribe('countdown', (events) => {
+        countdown.value = events[events.length - 1].secondsLeft
+      }),
+      subscribe('scan-progress', (events) => {
+        statusMessage.value = events[events.length - 1].message
+      })
+    ]
+  }
+
+  const stopListening = () => {
+    unsubscribers.forEach(unsubscribe => unsubscribe())
+    unsubscribers = []
+  }
+
   const updateGamePath = async(gameId,path) => {
     try{
       await gamesApi.updateGame(gameId,{path})
@@ -94,12 +128,15 @@ export const useGamesStore = defineStore('games', () => {
     isRunning,
     countdown,
     loading,
+    statusMessage,
     installedGames,
     totalPlayTime,
     fetchGames,
     launchGame,
     stopGame,
     checkStatus,
+    listenEvents,
+    stopListening,
     updateGamePath,
     clearAllGamePaths
   }
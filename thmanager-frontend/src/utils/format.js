@@ -44,6 +44,15 @@ export function getGameCoverUrl(game) {
   return `/image/cover/${sn}_title.${ext}`
 }
 
+/**
+ * 图片缩略图 URL：/image/cover/th06_title.jpg -> /image/w320/cover/th06_title.jpg
+ * 支持的宽度为 160、320、640、1280，非 /image/ 下的地址（如 svg 占位图）原样返回
+ */
+export function getImageVariantUrl(url, width) {
+  if (!url || !url.startsWith('/image/') || !/\.(jpe?g|png)$/i.test(url)) return url
+  return `/image/w${width}/${url.slice('/image/'.length)}`
+}
+
 export function getDifficultyLabel(difficulty) {
   const map = {
     Easy: 'E', E: 'E',
@@ -33,6 +33,10 @@ const devProxy = {
     target: localApiTarget,
     changeOrigin: true
   },
+  '/ws/events': {
+    target: localWsTarget,
+    ws: true
+  },
   '/ws': {
     target: cloudWsTarget,
     ws: true